@@ -0,0 +1,6 @@
+package ru.nsu.mr;
+
+@FunctionalInterface
+public interface BinaryDeserializer<T> {
+    T deserialize(byte[] input);
+}
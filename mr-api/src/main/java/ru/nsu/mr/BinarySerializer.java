@@ -0,0 +1,6 @@
+package ru.nsu.mr;
+
+@FunctionalInterface
+public interface BinarySerializer<T> {
+    byte[] serialize(T input);
+}
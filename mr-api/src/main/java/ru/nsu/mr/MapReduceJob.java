@@ -13,6 +13,12 @@ public class MapReduceJob<K1, V1, K2, V2> {
     private final Serializer<V2> serializerOutValue;
     private final Comparator<K1> comparator;
     private final KeyHasher<K1> hasher;
+    private BinarySerializer<K1> binarySerializerInterKey;
+    private BinarySerializer<V1> binarySerializerInterValue;
+    private BinaryDeserializer<K1> binaryDeserializerInterKey;
+    private BinaryDeserializer<V1> binaryDeserializerInterValue;
+    private Reducer<K1, V1, K1, V1> combiner;
+    private RawComparator rawComparator;
 
     public MapReduceJob(
             Mapper<String, String, K1, V1> mapper,
@@ -37,6 +43,42 @@ public class MapReduceJob<K1, V1, K2, V2> {
         this.hasher = hasher;
     }
 
+    /**
+     * Переключает промежуточные данные (сбросы и выходы маппера, входы редьюсера) на бинарный
+     * формат с префиксом длины. Без этого вызова используется текстовый формат "key value".
+     */
+    public MapReduceJob<K1, V1, K2, V2> setBinaryInterSerialization(
+            BinarySerializer<K1> binarySerializerInterKey,
+            BinarySerializer<V1> binarySerializerInterValue,
+            BinaryDeserializer<K1> binaryDeserializerInterKey,
+            BinaryDeserializer<V1> binaryDeserializerInterValue) {
+        this.binarySerializerInterKey = binarySerializerInterKey;
+        this.binarySerializerInterValue = binarySerializerInterValue;
+        this.binaryDeserializerInterKey = binaryDeserializerInterKey;
+        this.binaryDeserializerInterValue = binaryDeserializerInterValue;
+        return this;
+    }
+
+    /**
+     * Задаёт combiner, который агрегирует отсортированный выход маппера при каждом сбросе и при
+     * финальном слиянии. Может вызываться для ключа любое число раз, поэтому должен быть
+     * ассоциативным и коммутативным.
+     */
+    public MapReduceJob<K1, V1, K2, V2> setCombiner(Reducer<K1, V1, K1, V1> combiner) {
+        this.combiner = combiner;
+        return this;
+    }
+
+    /**
+     * Задаёт сравнение ключей по сериализованным байтам. Тогда буфер маппера сортируется, а
+     * промежуточные файлы сливаются без десериализации ключей; записи декодируются, только когда
+     * их нужно передать combiner'у или редьюсеру. Порядок обязан совпадать с компаратором задачи.
+     */
+    public MapReduceJob<K1, V1, K2, V2> setRawComparator(RawComparator rawComparator) {
+        this.rawComparator = rawComparator;
+        return this;
+    }
+
     public Mapper<String, String, K1, V1> getMapper() {
         return mapper;
     }
@@ -76,4 +118,35 @@ public class MapReduceJob<K1, V1, K2, V2> {
     public KeyHasher<K1> getHasher() {
         return hasher;
     }
+
+    public Reducer<K1, V1, K1, V1> getCombiner() {
+        return combiner;
+    }
+
+    public RawComparator getRawComparator() {
+        return rawComparator;
+    }
+
+    public boolean hasBinaryInterSerialization() {
+        return binarySerializerInterKey != null
+                && binarySerializerInterValue != null
+                && binaryDeserializerInterKey != null
+                && binaryDeserializerInterValue != null;
+    }
+
+    public BinarySerializer<K1> getBinarySerializerInterKey() {
+        return binarySerializerInterKey;
+    }
+
+    public BinarySerializer<V1> getBinarySerializerInterValue() {
+        return binarySerializerInterValue;
+    }
+
+    public BinaryDeserializer<K1> getBinaryDeserializerInterKey() {
+        return binaryDeserializerInterKey;
+    }
+
+    public BinaryDeserializer<V1> getBinaryDeserializerInterValue() {
+        return binaryDeserializerInterValue;
+    }
 }
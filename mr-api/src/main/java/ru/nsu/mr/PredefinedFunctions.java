@@ -1,5 +1,8 @@
 package ru.nsu.mr;
 
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.Comparator;
 import java.util.List;
 
@@ -11,6 +14,58 @@ public class PredefinedFunctions {
     public static Comparator<String> STRING_KEY_COMPARATOR = String::compareTo;
     public static KeyHasher<String> STRING_KEY_HASH = String::hashCode;
 
+    public static BinarySerializer<String> STRING_BINARY_SERIALIZER =
+            x -> x.getBytes(StandardCharsets.UTF_8);
+    public static BinaryDeserializer<String> STRING_BINARY_DESERIALIZER =
+            x -> new String(x, StandardCharsets.UTF_8);
+    public static BinarySerializer<Integer> INTEGER_BINARY_SERIALIZER =
+            x -> ByteBuffer.allocate(Integer.BYTES).putInt(x).array();
+    public static BinaryDeserializer<Integer> INTEGER_BINARY_DESERIALIZER =
+            x -> ByteBuffer.wrap(x).getInt();
+
+    /**
+     * Порядок {@link #STRING_KEY_COMPARATOR} для строк в UTF-8. Байты сравниваются как беззнаковые,
+     * кроме одного случая: символы вне BMP в {@link String#compareTo} идут раньше символов
+     * U+E000..U+FFFF, потому что сравниваются суррогатами UTF-16.
+     */
+    public static RawComparator STRING_RAW_COMPARATOR = (b1, s1, l1, b2, s2, l2) -> {
+        int length = Math.min(l1, l2);
+        for (int i = 0; i < length; i++) {
+            int a = b1[s1 + i] & 0xFF;
+            int b = b2[s2 + i] & 0xFF;
+            if (a != b) {
+                // Первый различающийся байт — ведущий байт символа, если равны все предыдущие.
+                if (a >= 0xF0 && (b == 0xEE || b == 0xEF)) {
+                    return -1;
+                }
+                if (b >= 0xF0 && (a == 0xEE || a == 0xEF)) {
+                    return 1;
+                }
+                return a - b;
+            }
+        }
+        return l1 - l2;
+    };
+
+    /** Порядок {@code Integer::compareTo} для {@link #INTEGER_BINARY_SERIALIZER}. */
+    public static RawComparator INTEGER_RAW_COMPARATOR = (b1, s1, l1, b2, s2, l2) ->
+            Integer.compare(
+                    ByteBuffer.wrap(b1, s1, l1).getInt(), ByteBuffer.wrap(b2, s2, l2).getInt());
+
+    /** Порядок {@code Integer::compareTo} для {@link #INTEGER_SERIALIZER}: десятичная запись. */
+    public static RawComparator INTEGER_TEXT_RAW_COMPARATOR = (b1, s1, l1, b2, s2, l2) -> {
+        boolean negative1 = l1 > 0 && b1[s1] == '-';
+        boolean negative2 = l2 > 0 && b2[s2] == '-';
+        if (negative1 != negative2) {
+            return negative1 ? -1 : 1;
+        }
+        // Без ведущих нулей более длинное число больше по модулю.
+        int cmp = l1 != l2
+                ? Integer.compare(l1, l2)
+                : Arrays.compare(b1, s1, s1 + l1, b2, s2, s2 + l2);
+        return negative1 ? -cmp : cmp;
+    };
+
     public static Serializer<List<String>> LIST_SERIALIZER = list ->
             String.join(",", list); // Преобразуем список в строку через запятую
 
@@ -0,0 +1,12 @@
+package ru.nsu.mr;
+
+/**
+ * Сравнение сериализованных ключей прямо в буфере, без построения объектов. Порядок должен
+ * совпадать с {@link java.util.Comparator} задачи: байты — это ключ в том виде, в каком его пишет
+ * промежуточный формат (строка {@link Serializer} в UTF-8 для текстового формата или результат
+ * {@link BinarySerializer} для бинарного).
+ */
+@FunctionalInterface
+public interface RawComparator {
+    int compare(byte[] b1, int s1, int l1, byte[] b2, int s2, int l2);
+}
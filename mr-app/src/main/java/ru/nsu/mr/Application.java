@@ -1,5 +1,8 @@
 package ru.nsu.mr;
 
+import ru.nsu.mr.endpoints.HttpServerSettings;
+import ru.nsu.mr.storages.ObjectCache;
+
 import java.io.IOException;
 import java.net.Inet4Address;
 import java.net.InetAddress;
@@ -53,20 +56,39 @@ public class Application {
 
     public static void main(String[] args) {
         String logsDestination = "./logs";
+        int slots = 1;
+        String httpExecutor = HttpServerSettings.VIRTUAL;
+        int httpBacklog = 0;
+        long cacheBytes = ObjectCache.DEFAULT_CAPACITY_BYTES;
+        int maxRunningJobs = Coordinator.DEFAULT_MAX_RUNNING_JOBS;
         int index = 0;
 
-        if (args.length >= 2 && args[0].equals("--logs")) {
-            logsDestination = args[1];
-            index = 2;
+        while (args.length - index >= 2 && args[index].startsWith("--")) {
+            switch (args[index]) {
+                case "--logs" -> logsDestination = args[index + 1];
+                case "--slots" -> slots = Integer.parseInt(args[index + 1]);
+                case "--http-executor" -> httpExecutor = args[index + 1];
+                case "--http-backlog" -> httpBacklog = Integer.parseInt(args[index + 1]);
+                case "--cache-size" -> cacheBytes = Long.parseLong(args[index + 1]);
+                case "--max-jobs" -> maxRunningJobs = Integer.parseInt(args[index + 1]);
+                default -> {
+                    System.err.println("Unknown option: " + args[index]);
+                    System.exit(1);
+                }
+            }
+            index += 2;
         }
 
         if (args.length - index < 1) {
-            System.err.println("Usage: java -jar app.jar <mode> [other args]");
+            System.err.println("Usage: java -jar app.jar [--logs <path>] [--slots <count>]"
+                    + " [--http-executor <virtual|dispatcher|threads>] [--http-backlog <count>]"
+                    + " [--cache-size <bytes>] [--max-jobs <count>] <mode> [other args]");
             System.exit(1);
         }
 
         String mode = args[index];
         try {
+            HttpServerSettings httpSettings = new HttpServerSettings(httpExecutor, httpBacklog);
             if ("coordinator".equalsIgnoreCase(mode)) {
                 Coordinator coordinator;
                 String configFile = null;
@@ -86,7 +108,7 @@ public class Application {
                     baseUrl = args[index + 2];
                 }
 
-                coordinator = new Coordinator(baseUrl, logsDestination);
+                coordinator = new Coordinator(baseUrl, logsDestination, httpSettings, maxRunningJobs);
                 if (configFile != null) {
                     coordinator.setJobConfiguration(configFile);
                 }
@@ -107,8 +129,10 @@ public class Application {
                     workerBaseUrl = autoAssignBaseUrl();
                 }
 
-                Worker worker = new Worker(coordinatorBaseUrl, workerBaseUrl, logsDestination);
-                System.out.println("Worker started at " + workerBaseUrl + " connecting to coordinator at " + coordinatorBaseUrl);
+                Worker worker = new Worker(
+                        coordinatorBaseUrl, workerBaseUrl, logsDestination, slots, httpSettings, cacheBytes);
+                System.out.println("Worker started at " + workerBaseUrl + " with " + slots
+                        + " task slots, connecting to coordinator at " + coordinatorBaseUrl);
                 worker.start();
             } else {
                 System.err.println("Unknown mode: " + mode);
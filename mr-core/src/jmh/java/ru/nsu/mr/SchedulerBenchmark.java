@@ -0,0 +1,189 @@
+package ru.nsu.mr;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Раздача коротких задач воркерам в цикле событий, как в {@code Coordinator}: воркеры сразу
+ * завершают полученную задачу, отчёты приходят из нескольких потоков (как из обработчиков HTTP)
+ * и ставятся в очередь однопоточного цикла, который отдаёт освободившийся слот следующей задаче.
+ * Измеряется время, за которое выполнены все задачи. {@code indexed} ищет воркер через
+ * {@link WorkerSlots}, {@code scan} — прежним проходом по всем воркерам.
+ *
+ * <p>Запуск: {@code ./gradlew :mr-core:jmh -Pjmh.includes=SchedulerBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class SchedulerBenchmark {
+    private static final int REPORTING_THREADS = 8;
+
+    @Param({"indexed", "scan"})
+    public String scheduler;
+
+    @Param({"1000"})
+    public int workersCount;
+
+    @Param({"4"})
+    public int slotsPerWorker;
+
+    @Param({"100000"})
+    public int tasksCount;
+
+    private ExecutorService events;
+    private ExecutorService reporters;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        events = Executors.newSingleThreadExecutor();
+        reporters = Executors.newFixedThreadPool(REPORTING_THREADS);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        events.shutdownNow();
+        reporters.shutdownNow();
+    }
+
+    @Benchmark
+    public int dispatchAllTasks() throws InterruptedException {
+        Simulation simulation = "indexed".equals(scheduler) ? new IndexedSimulation() : new ScanSimulation();
+        events.execute(simulation::start);
+        simulation.done.await();
+        return simulation.completed;
+    }
+
+    private static final class SimulatedWorker {
+        final Set<Integer> running = new HashSet<>();
+        int free;
+
+        SimulatedWorker(int slots) {
+            this.free = slots;
+        }
+    }
+
+    /** Состояние меняется только в потоке цикла событий. */
+    private abstract class Simulation {
+        final Queue<Integer> pending = new ArrayDeque<>();
+        final CountDownLatch done = new CountDownLatch(1);
+        int completed = 0;
+
+        void start() {
+            for (int i = 0; i < workersCount; i++) {
+                addWorker(new SimulatedWorker(slotsPerWorker));
+            }
+            for (int i = 0; i < tasksCount; i++) {
+                pending.add(i);
+            }
+            dispatch();
+        }
+
+        void dispatch() {
+            while (!pending.isEmpty()) {
+                int taskId = pending.element();
+                SimulatedWorker worker = acquire(taskId);
+                if (worker == null) {
+                    return;
+                }
+                pending.poll();
+                worker.running.add(taskId);
+                reporters.execute(() -> events.execute(() -> onCompleted(worker, taskId)));
+            }
+        }
+
+        void onCompleted(SimulatedWorker worker, int taskId) {
+            worker.running.remove(taskId);
+            release(worker);
+            if (++completed == tasksCount) {
+                done.countDown();
+            } else {
+                dispatch();
+            }
+        }
+
+        abstract void addWorker(SimulatedWorker worker);
+
+        /** Занимает слот у воркера с наибольшим числом свободных слотов, на котором задача не идёт. */
+        abstract SimulatedWorker acquire(int taskId);
+
+        abstract void release(SimulatedWorker worker);
+    }
+
+    private final class IndexedSimulation extends Simulation {
+        private final WorkerSlots<SimulatedWorker> slots = new WorkerSlots<>();
+
+        @Override
+        void addWorker(SimulatedWorker worker) {
+            slots.add(worker, worker.free);
+        }
+
+        @Override
+        SimulatedWorker acquire(int taskId) {
+            if (slots.freeSlots() == 0) {
+                return null;
+            }
+            return slots.acquire(worker -> !worker.running.contains(taskId));
+        }
+
+        @Override
+        void release(SimulatedWorker worker) {
+            slots.release(worker);
+        }
+    }
+
+    private final class ScanSimulation extends Simulation {
+        private final List<SimulatedWorker> workers = new ArrayList<>();
+
+        @Override
+        void addWorker(SimulatedWorker worker) {
+            workers.add(worker);
+        }
+
+        @Override
+        SimulatedWorker acquire(int taskId) {
+            int freeSlots = workers.stream().mapToInt(worker -> worker.free).sum();
+            if (freeSlots == 0) {
+                return null;
+            }
+            SimulatedWorker chosen = workers.stream()
+                    .filter(worker -> worker.free > 0 && !worker.running.contains(taskId))
+                    .max(Comparator.comparingInt(worker -> worker.free))
+                    .orElse(null);
+            if (chosen != null) {
+                chosen.free--;
+            }
+            return chosen;
+        }
+
+        @Override
+        void release(SimulatedWorker worker) {
+            worker.free++;
+        }
+    }
+}
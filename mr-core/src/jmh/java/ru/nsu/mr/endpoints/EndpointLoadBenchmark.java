@@ -0,0 +1,131 @@
+package ru.nsu.mr.endpoints;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.nsu.mr.endpoints.dto.TaskDetails;
+import ru.nsu.mr.endpoints.dto.TaskInformation;
+import ru.nsu.mr.endpoints.dto.TaskType;
+import ru.nsu.mr.gateway.CoordinatorGateway;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Задержка запроса интерфейса к координатору ({@code GET /workers/count}), пока сотни воркеров
+ * одновременно шлют {@code /notifyTask}. Обработчик уведомления, как и в {@code Coordinator},
+ * держит общий монитор.
+ *
+ * <p>Запуск: {@code ./gradlew :mr-core:jmh}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 10)
+@Fork(1)
+public class EndpointLoadBenchmark {
+    private static final long NOTIFY_HANDLING_MS = 2;
+    private static final long WORKER_REPORT_PERIOD_MS = 50;
+
+    @Param({HttpServerSettings.DISPATCHER, HttpServerSettings.VIRTUAL, "64"})
+    public String executor;
+
+    @Param({"100", "500"})
+    public int workers;
+
+    private final Object coordinatorMonitor = new Object();
+    private final List<Thread> workerThreads = new ArrayList<>();
+    private volatile boolean stopped;
+    private CoordinatorEndpoint endpoint;
+    private HttpClient uiClient;
+    private HttpRequest uiRequest;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        String baseUrl = "http://127.0.0.1:" + freePort();
+        endpoint = new CoordinatorEndpoint(
+                baseUrl,
+                registration -> {},
+                this::handleNotification,
+                config -> {},
+                List::of,
+                idx -> null,
+                idx -> {},
+                idx -> null,
+                () -> workers,
+                jobId -> null,
+                details -> true,
+                new HttpServerSettings(executor, 0));
+        endpoint.startServer();
+
+        TaskDetails report = new TaskDetails(
+                1, new TaskInformation(0, 0, TaskType.MAP, List.of(), List.of(), "", ""), "SUCCEED");
+        stopped = false;
+        for (int i = 0; i < workers; i++) {
+            workerThreads.add(Thread.ofVirtual().start(() -> {
+                CoordinatorGateway gateway = new CoordinatorGateway(baseUrl);
+                while (!stopped) {
+                    try {
+                        gateway.notifyTask(report);
+                        Thread.sleep(WORKER_REPORT_PERIOD_MS);
+                    } catch (InterruptedException e) {
+                        return;
+                    } catch (IOException ignored) {
+                    }
+                }
+            }));
+        }
+        uiClient = HttpClient.newHttpClient();
+        uiRequest = HttpRequest.newBuilder(URI.create(baseUrl + "/workers/count")).GET().build();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws InterruptedException {
+        stopped = true;
+        for (Thread thread : workerThreads) {
+            thread.interrupt();
+            thread.join();
+        }
+        workerThreads.clear();
+        endpoint.stopServer();
+    }
+
+    @Benchmark
+    public String uiPollLatency() throws IOException, InterruptedException {
+        return uiClient.send(uiRequest, HttpResponse.BodyHandlers.ofString()).body();
+    }
+
+    private void handleNotification(TaskDetails details) {
+        synchronized (coordinatorMonitor) {
+            try {
+                Thread.sleep(NOTIFY_HANDLING_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package ru.nsu.mr.sources;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import ru.nsu.mr.Pair;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Слияние {@code sources} отсортированных источников деревом проигравших и прежней кучей.
+ * Аллокации видны с профайлером: {@code ./gradlew :mr-core:jmh -Pjmh.profilers=gc}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MergeBenchmark {
+    private static final int RECORDS_COUNT = 1_000_000;
+    private static final Comparator<String> COMPARATOR = String::compareTo;
+
+    @Param({"8", "64", "500"})
+    public int sources;
+
+    private List<List<Pair<String, Integer>>> sortedSources;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        sortedSources = new ArrayList<>();
+        for (int i = 0; i < sources; i++) {
+            sortedSources.add(new ArrayList<>());
+        }
+        for (int i = 0; i < RECORDS_COUNT; i++) {
+            sortedSources.get(random.nextInt(sources)).add(new Pair<>("key-" + random.nextInt(RECORDS_COUNT), i));
+        }
+        for (List<Pair<String, Integer>> source : sortedSources) {
+            source.sort(Comparator.comparing(Pair::key, COMPARATOR));
+        }
+    }
+
+    @Benchmark
+    public void loserTree(Blackhole blackhole) {
+        drain(new MergedKeyValueIterator<>(iterators(), COMPARATOR), blackhole);
+    }
+
+    @Benchmark
+    public void priorityQueue(Blackhole blackhole) {
+        drain(new HeapMergedKeyValueIterator<>(iterators(), COMPARATOR), blackhole);
+    }
+
+    private List<Iterator<Pair<String, Integer>>> iterators() {
+        List<Iterator<Pair<String, Integer>>> iterators = new ArrayList<>();
+        for (List<Pair<String, Integer>> source : sortedSources) {
+            iterators.add(source.iterator());
+        }
+        return iterators;
+    }
+
+    private static void drain(Iterator<Pair<String, Integer>> merged, Blackhole blackhole) {
+        while (merged.hasNext()) {
+            blackhole.consume(merged.next());
+        }
+    }
+}
@@ -24,7 +24,19 @@ public class ConfigurationLoader {
         public String dataStorageConnectionString;
         public Integer mappersCount;
         public Integer reducersCount;
+        public Boolean mapOutputsUpload;
         public Integer sorterInMemoryRecords;
+        public Integer sorterInMemoryBytes;
+        public Double reduceSlowStart;
+        public Boolean speculativeExecution;
+        public Double speculativeSlowdown;
+        public Integer sortMergeFactor;
+        public Integer transferConcurrency;
+        public Integer transferRetries;
+        public Integer weight;
+        public Integer priority;
+        public Integer priorityAgingSeconds;
+        public Integer deadlineSeconds;
     }
 
     public ConfigurationLoader(String filePath) throws IOException {
@@ -47,7 +59,19 @@ public class ConfigurationLoader {
                 .set(ConfigurationOption.DATA_STORAGE_CONNECTION_STRING, config.dataStorageConnectionString)
                 .set(ConfigurationOption.MAPPERS_COUNT, config.mappersCount)
                 .set(ConfigurationOption.REDUCERS_COUNT, config.reducersCount)
-                .set(ConfigurationOption.SORTER_IN_MEMORY_RECORDS, config.sorterInMemoryRecords);
+                .set(ConfigurationOption.MAP_OUTPUTS_UPLOAD, config.mapOutputsUpload)
+                .set(ConfigurationOption.SORTER_IN_MEMORY_RECORDS, config.sorterInMemoryRecords)
+                .set(ConfigurationOption.SORTER_IN_MEMORY_BYTES, config.sorterInMemoryBytes)
+                .set(ConfigurationOption.REDUCE_SLOW_START, config.reduceSlowStart)
+                .set(ConfigurationOption.SPECULATIVE_EXECUTION, config.speculativeExecution)
+                .set(ConfigurationOption.SPECULATIVE_SLOWDOWN, config.speculativeSlowdown)
+                .set(ConfigurationOption.SORT_MERGE_FACTOR, config.sortMergeFactor)
+                .set(ConfigurationOption.TRANSFER_CONCURRENCY, config.transferConcurrency)
+                .set(ConfigurationOption.TRANSFER_RETRIES, config.transferRetries)
+                .set(ConfigurationOption.JOB_WEIGHT, config.weight)
+                .set(ConfigurationOption.JOB_PRIORITY, config.priority)
+                .set(ConfigurationOption.JOB_PRIORITY_AGING_SECONDS, config.priorityAgingSeconds)
+                .set(ConfigurationOption.JOB_DEADLINE_SECONDS, config.deadlineSeconds);
     }
 
     public Configuration getConfig() {
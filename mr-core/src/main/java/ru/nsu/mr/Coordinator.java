@@ -5,6 +5,9 @@ import org.apache.logging.log4j.core.layout.JsonLayout;
 import ru.nsu.mr.config.Configuration;
 import ru.nsu.mr.config.ConfigurationOption;
 import ru.nsu.mr.endpoints.CoordinatorEndpoint;
+import ru.nsu.mr.endpoints.HttpServerSettings;
+import ru.nsu.mr.endpoints.dto.FinishedMappersInfo;
+import ru.nsu.mr.endpoints.dto.InputSplit;
 import ru.nsu.mr.endpoints.dto.JobInformation;
 import ru.nsu.mr.endpoints.dto.JobDetailInfo;
 import ru.nsu.mr.endpoints.dto.JobQueueInfo;
@@ -14,7 +17,11 @@ import ru.nsu.mr.endpoints.dto.TaskInformation;
 import ru.nsu.mr.endpoints.dto.TaskType;
 import ru.nsu.mr.endpoints.dto.PhaseDuration;
 import ru.nsu.mr.endpoints.dto.JobProgressInfo;
+import ru.nsu.mr.endpoints.dto.MapOutputLocation;
+import ru.nsu.mr.endpoints.dto.WorkerRegistration;
+import ru.nsu.mr.gateway.RequestRejectedException;
 import ru.nsu.mr.gateway.WorkerGateway;
+import ru.nsu.mr.storages.StorageObject;
 import ru.nsu.mr.storages.StorageProvider;
 import ru.nsu.mr.storages.StorageProviderFactory;
 import org.apache.logging.log4j.LogManager;
@@ -31,43 +38,92 @@ import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.nio.file.*;
+import java.time.Duration;
 import java.time.Instant;
 import java.time.format.DateTimeFormatter;
 import java.time.ZoneId;
 import java.util.*;
 
 import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Future;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 
 public class Coordinator {
 
     private enum JobStatus { WAITING, RUNNING, FINISHED }
-    private enum Phase { MAP, REDUCE }
+    enum Phase { MAP, REDUCE }
     private enum JobTerminationStatus { OK, ABORTED }
 
     private static final DateTimeFormatter TIME_FMT =
             DateTimeFormatter.ofPattern("HH:mm:ss")
                     .withZone(ZoneId.systemDefault());
 
-    private static class JobWrapper {
+    static class JobWrapper {
         final Configuration config;
+        final int jobId;
+        final int weight;
+        final int priority;
+        // За сколько миллисекунд ожидания приоритет задания вырастает на единицу
+        final long priorityAgingMs;
+        // Когда задание должно завершиться; null, если срок не задан
+        final Instant deadline;
         final Instant submissionTime;
         JobStatus status;
         Phase phase;
         int finishedMappers;
+        // Воркер, на диске которого лежит выход маппера; null, если воркер недоступен
+        final Map<Integer, String> finishedMapperLocations = new HashMap<>();
         int finishedReducers;
+        // Map-задачи по номеру, чтобы перезапустить маппер, выход которого потерян
+        final Map<Integer, NewTaskDetails> mapTasks = new HashMap<>();
+        // Задачи задания, ещё не отданные воркерам
+        final Queue<NewTaskDetails> mapTaskQueue = new ArrayDeque<>();
+        final Queue<NewTaskDetails> reduceTaskQueue = new ArrayDeque<>();
+        // Число попыток задания, которые сейчас занимают слоты воркеров
+        int runningTasks;
+        // С какого момента выполняющееся задание ждёт слот: обновляется, когда задание получает
+        // слот или когда ему нечего запускать
+        Instant waitingSince;
+        // Выполняющиеся попытки задач; у отстающей задачи их может быть две
+        final Map<Integer, List<TaskAttempt>> runningAttempts = new HashMap<>();
+        // Попытка, которой разрешено выгрузить результат задачи
+        final Map<Integer, Integer> committingAttempts = new HashMap<>();
+        final Map<Integer, Integer> lastAttemptIds = new HashMap<>();
+        final Set<Integer> succeededTasks = new HashSet<>();
+        final Set<Integer> speculatedTasks = new HashSet<>();
+        final List<Long> mapDurationsMs = new ArrayList<>();
+        final List<Long> reduceDurationsMs = new ArrayList<>();
         JobTerminationStatus terminationStatus;
         Instant jobStartTime;
         Instant mapEndTime;
         Instant jobEndTime;
+        final CountDownLatch finished = new CountDownLatch(1);
 
         JobWrapper(Configuration cfg) {
             this.config = cfg;
+            this.jobId = cfg.get(ConfigurationOption.JOB_ID);
+            this.weight = Math.max(cfg.get(ConfigurationOption.JOB_WEIGHT), 1);
+            this.priority = cfg.get(ConfigurationOption.JOB_PRIORITY);
+            int agingSeconds = cfg.get(ConfigurationOption.JOB_PRIORITY_AGING_SECONDS);
+            if (agingSeconds <= 0) {
+                throw new IllegalStateException("Job priority aging period must be positive: " + agingSeconds);
+            }
+            this.priorityAgingMs = agingSeconds * 1000L;
             this.submissionTime = Instant.now();
+            Integer deadlineSeconds = cfg.get(ConfigurationOption.JOB_DEADLINE_SECONDS);
+            if (deadlineSeconds != null && deadlineSeconds <= 0) {
+                throw new IllegalStateException("Job deadline must be positive: " + deadlineSeconds);
+            }
+            this.deadline = deadlineSeconds == null ? null : submissionTime.plusSeconds(deadlineSeconds);
             this.status = JobStatus.WAITING;
             this.finishedMappers = 0;
             this.finishedReducers = 0;
@@ -85,12 +141,55 @@ public class Coordinator {
             if (phase == Phase.MAP) return finishedMappers;
             else return finishedReducers;
         }
+
+        // Занятые слоты в расчёте на единицу веса: слот получает задание с наименьшей долей
+        double share() {
+            return (double) runningTasks / weight;
+        }
+
+        // Каждые priorityAgingMs ожидания слота поднимают приоритет выполняющегося задания на единицу
+        long effectivePriority(Instant now) {
+            return priority + Duration.between(waitingSince, now).toMillis() / priorityAgingMs;
+        }
+
+        // Задание с приоритетом на единицу выше стоит в очереди так, будто его отправили на
+        // priorityAgingMs раньше. Порядок не меняется со временем, а задание с низким приоритетом
+        // обгоняет отправленные позже более приоритетные, если ждёт достаточно долго.
+        long queueRank() {
+            return submissionTime.toEpochMilli() - priority * priorityAgingMs;
+        }
     }
 
+    private record TaskAttempt(NewTaskDetails task, ConnectedWorker worker, Instant startTime) {}
+
+    public static final int DEFAULT_MAX_RUNNING_JOBS = 4;
+
+    // Задания без срока идут после заданий со сроком
+    private static final Comparator<Instant> DEADLINE_ORDER = Comparator.nullsLast(Comparator.naturalOrder());
+    private static final Comparator<JobWrapper> WAITING_JOBS_ORDER =
+            Comparator.comparingLong(JobWrapper::queueRank)
+                    .thenComparing(w -> w.deadline, DEADLINE_ORDER)
+                    .thenComparing(w -> w.submissionTime);
+    // Через сколько после завершения задания воркерам сообщается, что его классы больше не нужны
+    private static final long JOB_CLEANUP_DELAY_MS = 1000;
+
+    // Состояние планировщика (задания, воркеры, слоты) меняется только в потоке цикла событий:
+    // обработчики HTTP, проверки воркеров и таймеры передают ему события через post и call
+    private final ExecutorService events =
+            Executors.newSingleThreadExecutor(runnable -> new Thread(runnable, "coordinator-events"));
+    // Запросы к воркерам на запуск и отмену попыток идут вне цикла событий
+    private final ExecutorService workerCalls = Executors.newVirtualThreadPerTaskExecutor();
+
     private final List<JobWrapper> allJobs = new ArrayList<>();
-    private final BlockingQueue<JobWrapper> jobQueue = new LinkedBlockingQueue<>();
-    private JobWrapper currentJob;
-    private int executingTasksCount = 0;
+    // Ожидающие задания: сначала с большим приоритетом (с поправкой на ожидание), затем с более
+    // ранним сроком
+    private final BlockingQueue<JobWrapper> jobQueue = new PriorityBlockingQueue<>(11, WAITING_JOBS_ORDER);
+    // Выполняющиеся задания в порядке запуска
+    private final Map<Integer, JobWrapper> runningJobs = new LinkedHashMap<>();
+    private final int maxRunningJobs;
+    // Места для выполняющихся заданий; место освобождается в finishJob
+    private final Semaphore jobSlots;
+    private JobWrapper configuredJob;
 
     private static Logger LOGGER = null;
     private static LoggerContext context;
@@ -99,61 +198,67 @@ public class Coordinator {
 
     private final String coordinatorBaseUrl;
     private final CoordinatorEndpoint endpoint;
-    private final List<ConnectedWorker> workers = new ArrayList<>();
-    private final Queue<NewTaskDetails> mapTaskQueue = new ConcurrentLinkedQueue<>();
-    private final Queue<NewTaskDetails> reduceTaskQueue = new ConcurrentLinkedQueue<>();
+    private final Set<ConnectedWorker> workers = new LinkedHashSet<>();
+    private final WorkerSlots<ConnectedWorker> freeWorkers = new WorkerSlots<>();
+    // Проигравшие попытки, которым отправлена отмена. Воркер считает такую попытку выполняющейся,
+    // пока не сообщит о её завершении, поэтому до этого она занимает его слот
+    private final Map<TaskKey, List<TaskAttempt>> cancellingAttempts = new HashMap<>();
 
   
     private static final long HEARTBEAT_PERIOD_MS = 5000;
+    private static final long SPECULATION_CHECK_PERIOD_MS = 1000;
+    // Через сколько повторить раздачу после того, как воркер отклонил задачу
+    private static final long REJECTED_TASK_RETRY_DELAY_MS = 1000;
     private final ScheduledExecutorService heartbeatScheduler = Executors.newSingleThreadScheduledExecutor();
 
 
-    private static class FileSizePair {
-        final String filename;
-        final long size;
-
-        FileSizePair(String filename, long size) {
-            this.filename = filename;
-            this.size = size;
-        }
-    }
-
+    // Свободные слоты воркера учитывает freeWorkers, а здесь хранится, какие задачи на нём идут
     private static class ConnectedWorker {
         private final String workerBaseUrl;
         private final WorkerGateway gateway;
-        private Integer currentTaskId = null;
-        private NewTaskDetails currentTaskDetails = null;
+        private final Map<TaskKey, NewTaskDetails> runningTasks = new HashMap<>();
 
         public ConnectedWorker(String workerBaseUrl) {
             this.workerBaseUrl = workerBaseUrl;
             this.gateway = new WorkerGateway(workerBaseUrl);
         }
 
-        public synchronized boolean isFree() {
-            return currentTaskId == null;
+        public boolean isRunning(int jobId, int taskId) {
+            return runningTasks.containsKey(new TaskKey(jobId, taskId));
         }
 
-        public synchronized void assignTask(NewTaskDetails task) {
-            this.currentTaskId = task.taskInformation().taskId();
-            this.currentTaskDetails = task;
+        public void assignTask(NewTaskDetails task) {
+            runningTasks.put(
+                    new TaskKey(task.jobInformation().jobId(), task.taskInformation().taskId()), task);
         }
 
-        public synchronized void release() {
-            this.currentTaskId = null;
-            this.currentTaskDetails = null;
+        public void release(int jobId, int taskId) {
+            runningTasks.remove(new TaskKey(jobId, taskId));
         }
 
-        public synchronized NewTaskDetails getCurrentTaskDetails() {
-            return currentTaskDetails;
-        }
-      
-        public synchronized WorkerGateway getGateway() {
+        public WorkerGateway getGateway() {
             return gateway;
         }
     }
 
     public Coordinator(String coordinatorBaseUrl, String logDestination) throws IOException {
+        this(coordinatorBaseUrl, logDestination, HttpServerSettings.defaults());
+    }
+
+    public Coordinator(String coordinatorBaseUrl, String logDestination, HttpServerSettings httpSettings)
+            throws IOException {
+        this(coordinatorBaseUrl, logDestination, httpSettings, DEFAULT_MAX_RUNNING_JOBS);
+    }
+
+    public Coordinator(
+            String coordinatorBaseUrl, String logDestination, HttpServerSettings httpSettings, int maxRunningJobs)
+            throws IOException {
+        if (maxRunningJobs < 1) {
+            throw new IllegalArgumentException("At least one job must be allowed to run: " + maxRunningJobs);
+        }
         this.coordinatorBaseUrl = coordinatorBaseUrl;
+        this.maxRunningJobs = maxRunningJobs;
+        this.jobSlots = new Semaphore(maxRunningJobs);
         try {
             configureLogging(logDestination);
         } catch (URISyntaxException ignored) {
@@ -167,7 +272,10 @@ public class Coordinator {
                 this::getJobDetailInfo,
                 this::deleteJob,
                 this::getJobProgressInfo,
-                this::getConnectedWorkersCount
+                this::getConnectedWorkersCount,
+                this::getFinishedMappersInfo,
+                this::requestTaskCommit,
+                httpSettings
         );
         endpoint.startServer();
 
@@ -177,133 +285,220 @@ public class Coordinator {
                 HEARTBEAT_PERIOD_MS,
                 TimeUnit.MILLISECONDS
         );
+        heartbeatScheduler.scheduleAtFixedRate(
+                () -> post(this::speculateStragglers),
+                SPECULATION_CHECK_PERIOD_MS,
+                SPECULATION_CHECK_PERIOD_MS,
+                TimeUnit.MILLISECONDS
+        );
     }
 
     public void setJobConfiguration(String yamlFilePath) throws IOException {
         ConfigurationLoader loader = new ConfigurationLoader(yamlFilePath);
         Configuration config = loader.getConfig();
-        currentJob = new JobWrapper(config);
+        configuredJob = new JobWrapper(config);
+        call(() -> allJobs.add(configuredJob));
     }
 
-    public void submitJob(Configuration config) {
-        JobWrapper w = new JobWrapper(config);
-        synchronized(allJobs) { allJobs.add(w); }
+    /** Передаёт событие циклу событий и не ждёт его обработки. */
+    private void post(Runnable event) {
         try {
-            jobQueue.put(w);
-            LOGGER.info("Job enqueued: {} at {}",
-                    config.get(ConfigurationOption.JOB_PATH),
-                    w.submissionTime
-            );
+            events.execute(() -> {
+                try {
+                    event.run();
+                } catch (RuntimeException e) {
+                    LOGGER.error("Failed to handle scheduler event", e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // Координатор останавливается: событие уже некому обрабатывать
+        }
+    }
+
+    /**
+     * Выполняет запрос в цикле событий и ждёт результат. Исключения запроса пробрасываются как есть.
+     * Из самого цикла событий не вызывается.
+     */
+    private <T> T call(Callable<T> query) {
+        Future<T> result = events.submit(query);
+        try {
+            return result.get();
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
-            LOGGER.error("Failed to enqueue job", e);
-        }
-    }
-
-    private void executeJob() throws InterruptedException {
-        currentJob = jobQueue.take();
-        currentJob.status = JobStatus.RUNNING;
-        currentJob.phase = Phase.MAP;
-        currentJob.jobStartTime = Instant.now();
-        mapTaskQueue.clear();
-        reduceTaskQueue.clear();
-
-        LOGGER.info("Starting job with configuration: JOB_PATH={}, MAPPERS_COUNT={}, REDUCERS_COUNT={}",
-                currentJob.config.get(ConfigurationOption.JOB_PATH),
-                currentJob.config.get(ConfigurationOption.MAPPERS_COUNT),
-                currentJob.config.get(ConfigurationOption.REDUCERS_COUNT));
-
-        String jobName = currentJob.config.get(ConfigurationOption.JOB_NAME);
-        String jobPath = currentJob.config.get(ConfigurationOption.JOB_PATH);
-        String jobStorageConnectionString = currentJob.config.get(ConfigurationOption.JOB_STORAGE_CONNECTION_STRING);
-        String dataStorageConnectionString = currentJob.config.get(ConfigurationOption.DATA_STORAGE_CONNECTION_STRING);
-        String inputsPath = currentJob.config.get(ConfigurationOption.INPUTS_PATH);
-        String mappersOutputsPath = currentJob.config.get(ConfigurationOption.MAPPERS_OUTPUTS_PATH);
-        String reducersOutputsPath = currentJob.config.get(ConfigurationOption.REDUCERS_OUTPUTS_PATH);
-        int mappersCount = currentJob.config.get(ConfigurationOption.MAPPERS_COUNT);
-        int reducersCount = currentJob.config.get(ConfigurationOption.REDUCERS_COUNT);
-        int sorterInMemoryRecords = currentJob.config.get(ConfigurationOption.SORTER_IN_MEMORY_RECORDS);
+            throw new IllegalStateException("Interrupted while waiting for the coordinator", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * Ставит задание в очередь. Идентификаторы задач уникальны только внутри задания, поэтому
+     * задание с идентификатором незавершённого задания не принимается.
+     */
+    public void submitJob(Configuration config) {
+        JobWrapper w = new JobWrapper(config);
+        call(() -> {
+            boolean duplicate = runningJobs.containsKey(w.jobId)
+                    || allJobs.stream().anyMatch(job -> job.jobId == w.jobId && job.status != JobStatus.FINISHED);
+            if (duplicate) {
+                throw new IllegalStateException("Job with id " + w.jobId + " is already queued or running");
+            }
+            allJobs.add(w);
+            return jobQueue.add(w);
+        });
+        LOGGER.info("Job enqueued: {} at {}",
+                config.get(ConfigurationOption.JOB_PATH),
+                w.submissionTime
+        );
+    }
+
+    /**
+     * Планирует задачи задания и добавляет его к выполняющимся. Ждать завершения не нужно:
+     * задание завершается в {@link #onTaskCompleted}, когда отработает последний редьюсер.
+     * Возвращает false, если задание удалили, пока оно ждало своей очереди.
+     */
+    private boolean startJob(JobWrapper job) {
+        boolean started = call(() -> {
+            if (job.status != JobStatus.WAITING) {
+                return false;
+            }
+            job.phase = Phase.MAP;
+            job.jobStartTime = Instant.now();
+            job.status = JobStatus.RUNNING;
+            return true;
+        });
+        if (!started) {
+            return false;
+        }
+
+        LOGGER.info("Starting job {} with configuration: JOB_PATH={}, MAPPERS_COUNT={}, REDUCERS_COUNT={}, WEIGHT={}",
+                job.jobId,
+                job.config.get(ConfigurationOption.JOB_PATH),
+                job.config.get(ConfigurationOption.MAPPERS_COUNT),
+                job.config.get(ConfigurationOption.REDUCERS_COUNT),
+                job.weight);
+
+        try {
+            planTasks(job);
+        } catch (Exception e) {
+            LOGGER.error("Failed to plan tasks of job {}", job.jobId, e);
+            post(() -> {
+                job.terminationStatus = JobTerminationStatus.ABORTED;
+                finishJob(job);
+            });
+            return true;
+        }
+
+        post(() -> {
+            if (job.terminationStatus == JobTerminationStatus.ABORTED) {
+                // Задание удалили, пока планировались его задачи
+                finishJob(job);
+                return;
+            }
+            job.waitingSince = Instant.now();
+            runningJobs.put(job.jobId, job);
+            distributeTasks();
+        });
+        return true;
+    }
+
+    private void planTasks(JobWrapper job) {
+        String jobName = job.config.get(ConfigurationOption.JOB_NAME);
+        String jobPath = job.config.get(ConfigurationOption.JOB_PATH);
+        String jobStorageConnectionString = job.config.get(ConfigurationOption.JOB_STORAGE_CONNECTION_STRING);
+        String dataStorageConnectionString = job.config.get(ConfigurationOption.DATA_STORAGE_CONNECTION_STRING);
+        String inputsPath = job.config.get(ConfigurationOption.INPUTS_PATH);
+        String mappersOutputsPath = job.config.get(ConfigurationOption.MAPPERS_OUTPUTS_PATH);
+        String reducersOutputsPath = job.config.get(ConfigurationOption.REDUCERS_OUTPUTS_PATH);
+        int mappersCount = job.config.get(ConfigurationOption.MAPPERS_COUNT);
+        int reducersCount = job.config.get(ConfigurationOption.REDUCERS_COUNT);
+        int sorterInMemoryRecords = job.config.get(ConfigurationOption.SORTER_IN_MEMORY_RECORDS);
+        int sorterInMemoryBytes = job.config.get(ConfigurationOption.SORTER_IN_MEMORY_BYTES);
+        int sortMergeFactor = job.config.get(ConfigurationOption.SORT_MERGE_FACTOR);
+        int transferConcurrency = job.config.get(ConfigurationOption.TRANSFER_CONCURRENCY);
+        int transferRetries = job.config.get(ConfigurationOption.TRANSFER_RETRIES);
 
         JobInformation jobInformation = new JobInformation(
-                1,
+                job.jobId,
                 jobName,
                 jobPath,
                 jobStorageConnectionString,
                 mappersCount,
                 reducersCount,
-                sorterInMemoryRecords
+                job.config.get(ConfigurationOption.MAP_OUTPUTS_UPLOAD),
+                sorterInMemoryRecords,
+                sorterInMemoryBytes,
+                sortMergeFactor,
+                transferConcurrency,
+                transferRetries
         );
 
         try (StorageProvider storageProvider = StorageProviderFactory.getStorageProvider(dataStorageConnectionString)) {
-            List<String> inputFiles = storageProvider.list(inputsPath);
+            // Размеры берём из ответа листинга, а не отдельным запросом на каждый файл
+            List<StorageObject> inputFiles = storageProvider.listWithMetadata(inputsPath);
             LOGGER.info("Found {} input files in {}", inputFiles.size(), inputsPath);
 
-            // Получаем размеры всех файлов
-            List<Long> fileSizes = new ArrayList<>();
             long totalSize = 0;
-            for (String file : inputFiles) {
-                long size = storageProvider.getFileSize(file);
-                fileSizes.add(size);
-                totalSize += size;
-                LOGGER.debug("File: {}, Size: {} bytes", file, size); // Логирование размера каждого файла
+            for (StorageObject file : inputFiles) {
+                totalSize += file.size();
+                LOGGER.debug("File: {}, Size: {} bytes", file.key(), file.size()); // Логирование размера каждого файла
             }
 
-            // Размер данных на один маппер
-            long targetSizePerMapper = totalSize / mappersCount;
+            // Делим все входные данные, как один поток байтов, на равные диапазоны по мапперам.
+            // Границы диапазонов не выровнены по строкам: маппер сам пропускает начало чужой строки
+            // и дочитывает свою последнюю строку за границей диапазона.
+            long targetSizePerMapper = Math.max(1, (totalSize + mappersCount - 1) / mappersCount);
             LOGGER.info("Total data size: {} bytes, target per mapper: {} bytes", totalSize, targetSizePerMapper);
 
-            // Распределяем файлы по мапперам с учетом размера
-            List<List<String>> mapperFiles = new ArrayList<>();
-            List<Long> mapperSizes = new ArrayList<>();
+            List<List<InputSplit>> mapperSplits = new ArrayList<>();
             for (int i = 0; i < mappersCount; i++) {
-                mapperFiles.add(new ArrayList<>());
-                mapperSizes.add(0L);
+                mapperSplits.add(new ArrayList<>());
             }
-
-            // Сортируем файлы по убыванию размера (чтобы сначала распределять самые большие)
-            List<FileSizePair> sortedFiles = new ArrayList<>();
-            for (int i = 0; i < inputFiles.size(); i++) {
-                sortedFiles.add(new FileSizePair(inputFiles.get(i), fileSizes.get(i)));
-            }
-            sortedFiles.sort((a, b) -> Long.compare(b.size, a.size));
-
-            // Распределяем файлы
-            for (FileSizePair filePair : sortedFiles) {
-                String file = filePair.filename;
-                long fileSize = filePair.size;
-
-                // Находим маппер с наименьшим текущим размером данных
-                int bestMapper = 0;
-                long minSize = mapperSizes.get(0);
-                for (int j = 1; j < mappersCount; j++) {
-                    if (mapperSizes.get(j) < minSize) {
-                        minSize = mapperSizes.get(j);
-                        bestMapper = j;
+            int mapper = 0;
+            long mapperSize = 0;
+            for (StorageObject file : inputFiles) {
+                long fileSize = file.size();
+                long offset = 0;
+                while (offset < fileSize) {
+                    long length = Math.min(fileSize - offset, targetSizePerMapper - mapperSize);
+                    mapperSplits.get(mapper).add(new InputSplit(file.key(), offset, length, fileSize));
+                    offset += length;
+                    mapperSize += length;
+                    if (mapperSize == targetSizePerMapper && mapper < mappersCount - 1) {
+                        mapper++;
+                        mapperSize = 0;
                     }
                 }
-
-                // Добавляем файл к выбранному мапперу
-                mapperFiles.get(bestMapper).add(file);
-                mapperSizes.set(bestMapper, mapperSizes.get(bestMapper) + fileSize);
             }
-            // Создаем задачи для мапперов и логируем распределение файлов
+
+            // Создаем задачи для мапперов и логируем распределение сплитов
             for (int i = 0; i < mappersCount; i++) {
-                List<String> filesForMapper = mapperFiles.get(i);
+                List<InputSplit> splitsForMapper = mapperSplits.get(i);
+                List<String> filesForMapper = splitsForMapper.stream()
+                        .map(InputSplit::file)
+                        .distinct()
+                        .toList();
                 TaskInformation taskInfo = new TaskInformation(
                         i,
+                        0,
                         TaskType.MAP,
                         filesForMapper,
+                        splitsForMapper,
                         mappersOutputsPath,
                         dataStorageConnectionString
                 );
 
-                // Логирование файлов для каждого воркера
-                LOGGER.info("Created MAP task {} with {} files (total size: {} bytes)",
-                        i, filesForMapper.size(), mapperSizes.get(i));
-                LOGGER.info("Files for MAP task {}: {}", i, filesForMapper); // Добавленная строка
+                LOGGER.info("Created MAP task {} of job {} with {} splits (total size: {} bytes)",
+                        i, job.jobId, splitsForMapper.size(),
+                        splitsForMapper.stream().mapToLong(InputSplit::length).sum());
+                LOGGER.info("Splits for MAP task {}: {}", i, splitsForMapper);
 
                 NewTaskDetails newTask = new NewTaskDetails(jobInformation, taskInfo);
-                mapTaskQueue.add(newTask);
+                job.mapTasks.put(i, newTask);
+                job.mapTaskQueue.add(newTask);
             }
         } catch (Exception e) {
             LOGGER.error("Error while creating MAP tasks", e);
@@ -317,40 +512,84 @@ public class Coordinator {
             }
             TaskInformation taskInfo = new TaskInformation(
                     mappersCount + i,
+                    0,
                     TaskType.REDUCE,
                     reduceInputs,
+                    List.of(),
                     reducersOutputsPath,
                     dataStorageConnectionString
             );
             NewTaskDetails newTask = new NewTaskDetails(jobInformation, taskInfo);
-            reduceTaskQueue.add(newTask);
-            LOGGER.info("Created REDUCE task {} with input files: {}", mappersCount + i, reduceInputs);
+            job.reduceTaskQueue.add(newTask);
+            LOGGER.info("Created REDUCE task {} of job {} with input files: {}", mappersCount + i, job.jobId, reduceInputs);
         }
+    }
 
-        distributeTasks();
-        waitForJobEnd();
-        Thread.sleep(1000);
-
-        int idx = currentJob.config.get(ConfigurationOption.JOB_ID);
-        if (currentJob.terminationStatus.equals(JobTerminationStatus.ABORTED)) {
-            LOGGER.info("Job {} has been aborted.", idx);
+    private void finishJob(JobWrapper job) {
+        if (job.status == JobStatus.FINISHED) {
+            return;
+        }
+        if (job.terminationStatus == JobTerminationStatus.OK) {
+            job.jobEndTime = Instant.now();
+        }
+        job.status = JobStatus.FINISHED;
+        runningJobs.remove(job.jobId, job);
+        jobSlots.release();
+        job.finished.countDown();
+
+        int jobId = job.jobId;
+        if (job.terminationStatus.equals(JobTerminationStatus.ABORTED)) {
+            LOGGER.info("Job {} has been aborted.", jobId);
         } else {
-            LOGGER.info("Job {} has finished successfully.", idx);
+            LOGGER.info("Job {} has finished successfully.", jobId);
+            if (job.deadline != null && job.jobEndTime.isAfter(job.deadline)) {
+                LOGGER.warn("Job {} missed its deadline {} by {} s.", jobId, TIME_FMT.format(job.deadline),
+                        Duration.between(job.deadline, job.jobEndTime).toSeconds());
+            }
         }
+        // Опоздавшие отчёты об отменённых попытках ещё могут использовать классы задания
+        heartbeatScheduler.schedule(
+                () -> notifyWorkersJobFinished(jobId), JOB_CLEANUP_DELAY_MS, TimeUnit.MILLISECONDS);
     }
 
 
+    /** Воркеры освобождают загруженные классы задания; недоступный воркер просто пропускается. */
+    private void notifyWorkersJobFinished(int jobId) {
+        for (ConnectedWorker worker : call(() -> List.copyOf(workers))) {
+            try {
+                worker.getGateway().finishJob(jobId);
+            } catch (IOException e) {
+                LOGGER.warn("Failed to notify worker {} that job {} finished: {}",
+                        worker.workerBaseUrl, jobId, e.getMessage());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
     public void start() throws InterruptedException {
-        if (currentJob != null) {
-            executeJob();
+        if (configuredJob != null) {
+            jobSlots.acquire();
+            if (startJob(configuredJob)) {
+                configuredJob.finished.await();
+            }
             Thread.sleep(1000);
             endpoint.stopServer();
-            heartbeatScheduler.shutdownNow();
+            // Периодические проверки отменяются, а отложенное оповещение воркеров ещё выполнится
+            heartbeatScheduler.shutdown();
+            heartbeatScheduler.awaitTermination(HEARTBEAT_PERIOD_MS, TimeUnit.MILLISECONDS);
+            events.shutdown();
+            workerCalls.shutdown();
         } else {
-            LOGGER.info("Coordinator started, waiting for jobs...");
+            LOGGER.info("Coordinator started, waiting for jobs (at most {} at once)...", maxRunningJobs);
             while (!Thread.currentThread().isInterrupted()) {
                 try {
-                    executeJob();
+                    // Сначала ждём место, чтобы к этому моменту из очереди взялось самое приоритетное задание
+                    jobSlots.acquire();
+                    if (!startJob(jobQueue.take())) {
+                        jobSlots.release();
+                    }
                 } catch (InterruptedException ie) {
                     Thread.currentThread().interrupt();
                 } catch (Exception e) {
@@ -360,125 +599,458 @@ public class Coordinator {
         }
     }
 
-    private synchronized void registerWorker(String workerBaseUrl) {
-        ConnectedWorker worker = new ConnectedWorker(workerBaseUrl);
+    private void registerWorker(WorkerRegistration registration) {
+        post(() -> onWorkerRegistered(registration));
+    }
+
+    private void onWorkerRegistered(WorkerRegistration registration) {
+        // Если число слотов не передано, считаем, что слот один.
+        int slots = Math.max(registration.slots(), 1);
+        ConnectedWorker worker = new ConnectedWorker(registration.workerBaseUrl());
         workers.add(worker);
+        freeWorkers.add(worker, slots);
+        LOGGER.info("Worker registered, on {} with {} task slots.", registration.workerBaseUrl(), slots);
         distributeTasks();
-        notifyAll();
-        LOGGER.info("Worker registered, on {}.", workerBaseUrl);
-    }
-
-    private synchronized void receiveTaskCompletion(TaskDetails details) {
-        if (currentJob.terminationStatus.equals(JobTerminationStatus.ABORTED)) {
-            executingTasksCount --;
-            LOGGER.info("Task {} completed.", details.taskInformation().taskId());
-            if (executingTasksCount == 0) {
-                currentJob.status = JobStatus.FINISHED;
-                notifyAll();
-            }
-            workers.stream()
-                    .filter(w -> Objects.equals(w.currentTaskId, details.taskInformation().taskId()))
-                    .findFirst()
-                    .ifPresent(ConnectedWorker::release);
+    }
+
+    private void receiveTaskCompletion(TaskDetails details) {
+        post(() -> onTaskCompleted(details));
+    }
+
+    private void onTaskCompleted(TaskDetails details) {
+        TaskInformation info = details.taskInformation();
+        JobWrapper job = runningJobs.get(details.jobId());
+        TaskAttempt attempt = job == null ? null : removeAttempt(job, info);
+        if (attempt == null && releaseCancelledAttempt(details.jobId(), info)) {
+            LOGGER.info("Cancelled attempt {} of task {} of job {} finished with status {}.",
+                    info.attemptId(), info.taskId(), details.jobId(), details.status());
+            distributeTasks();
+            return;
+        }
+        if (attempt == null) {
+            // Попытку уже сняли: её обогнала другая попытка, воркер был признан мёртвым
+            // или задание уже завершилось
+            LOGGER.info("Ignoring completion of stale attempt {} of task {} of job {}.",
+                    info.attemptId(), info.taskId(), details.jobId());
+            return;
+        }
+        if (job.terminationStatus.equals(JobTerminationStatus.ABORTED)) {
+            LOGGER.info("Task {} of job {} completed.", info.taskId(), job.jobId);
+            finishAbortedJobIfIdle(job);
+            distributeTasks();
             return;
         }
         if ("SUCCEED".equals(details.status())) {
-            executingTasksCount --;
-            LOGGER.info("Task {} completed.", details.taskInformation().taskId());
-            if (details.taskInformation().taskType() == TaskType.MAP) {
-                currentJob.finishedMappers++;
-                if (currentJob.finishedMappers == currentJob.config.get(ConfigurationOption.MAPPERS_COUNT)) {
-                    currentJob.mapEndTime = Instant.now();
-                    currentJob.phase = Phase.REDUCE;
-                    LOGGER.info("All MAP tasks completed. Transitioning to REDUCE phase.");
+            LOGGER.info("Task {} of job {} completed by attempt {}.", info.taskId(), job.jobId, info.attemptId());
+            job.succeededTasks.add(info.taskId());
+            job.committingAttempts.remove(info.taskId());
+            recordDuration(job, attempt);
+            killOtherAttempts(job, info.taskId());
+            if (info.taskType() == TaskType.MAP) {
+                job.finishedMapperLocations.put(info.taskId(), attempt.worker().workerBaseUrl);
+                job.finishedMappers++;
+                if (job.finishedMappers == job.config.get(ConfigurationOption.MAPPERS_COUNT)) {
+                    job.mapEndTime = Instant.now();
+                    job.phase = Phase.REDUCE;
+                    LOGGER.info("All MAP tasks of job {} completed. Transitioning to REDUCE phase.", job.jobId);
                 }
             } else {
-                currentJob.finishedReducers++;
-                if (currentJob.finishedReducers == currentJob.config.get(ConfigurationOption.REDUCERS_COUNT)) {
-                    currentJob.jobEndTime = Instant.now();
-                    currentJob.status = JobStatus.FINISHED;
-                    LOGGER.info("All REDUCE tasks completed. Job ended.");
-                    notifyAll();
+                job.finishedReducers++;
+                if (job.finishedReducers == job.config.get(ConfigurationOption.REDUCERS_COUNT)) {
+                    LOGGER.info("All REDUCE tasks of job {} completed. Job ended.", job.jobId);
+                    finishJob(job);
                 }
             }
         } else {
-            executingTasksCount --;
-            NewTaskDetails failedTask = new NewTaskDetails(
-                    new JobInformation(
-                            1,
-                            currentJob.config.get(ConfigurationOption.JOB_NAME),
-                            currentJob.config.get(ConfigurationOption.JOB_PATH),
-                            currentJob.config.get(ConfigurationOption.JOB_STORAGE_CONNECTION_STRING),
-                            currentJob.config.get(ConfigurationOption.MAPPERS_COUNT),
-                            currentJob.config.get(ConfigurationOption.REDUCERS_COUNT),
-                            currentJob.config.get(ConfigurationOption.SORTER_IN_MEMORY_RECORDS)
-                    ),
-                    details.taskInformation()
-            );
-            if (details.taskInformation().taskType() == TaskType.MAP) {
-                mapTaskQueue.add(failedTask);
-            } else {
-                reduceTaskQueue.add(failedTask);
+            job.committingAttempts.remove(info.taskId(), info.attemptId());
+            // Пока жива другая попытка задачи, новую не создаём
+            if (!job.runningAttempts.containsKey(info.taskId())) {
+                LOGGER.info("Attempt {} of task {} of job {} finished with status {}, rescheduling the task.",
+                        info.attemptId(), info.taskId(), job.jobId, details.status());
+                requeueTask(job, nextAttempt(job, attempt.task()));
             }
         }
-        workers.stream()
-                .filter(w -> Objects.equals(w.currentTaskId, details.taskInformation().taskId()))
-                .findFirst()
-                .ifPresent(ConnectedWorker::release);
         distributeTasks();
     }
 
-    private synchronized void distributeTasks() {
-        if (currentJob == null) {
-            return;
+    /**
+     * Разрешает выгрузить результат только первой завершившейся попытке задачи: остальные попытки
+     * свой результат отбрасывают.
+     */
+    private boolean requestTaskCommit(TaskDetails details) {
+        return call(() -> decideTaskCommit(details));
+    }
+
+    private boolean decideTaskCommit(TaskDetails details) {
+        TaskInformation info = details.taskInformation();
+        JobWrapper job = runningJobs.get(details.jobId());
+        if (job == null
+                || job.terminationStatus == JobTerminationStatus.ABORTED
+                || job.succeededTasks.contains(info.taskId())
+                || findAttempt(job, info) == null) {
+            return false;
         }
-        if (currentJob.phase == Phase.MAP) {
-            assignTasksFromQueue(mapTaskQueue);
-        } else if (currentJob.phase == Phase.REDUCE) {
-            assignTasksFromQueue(reduceTaskQueue);
+        Integer committingAttempt = job.committingAttempts.putIfAbsent(info.taskId(), info.attemptId());
+        return committingAttempt == null || committingAttempt == info.attemptId();
+    }
+
+    private TaskAttempt findAttempt(JobWrapper job, TaskInformation info) {
+        return job.runningAttempts.getOrDefault(info.taskId(), List.of()).stream()
+                .filter(a -> a.task().taskInformation().attemptId() == info.attemptId())
+                .findFirst()
+                .orElse(null);
+    }
+
+    private TaskAttempt removeAttempt(JobWrapper job, TaskInformation info) {
+        TaskAttempt attempt = findAttempt(job, info);
+        if (attempt == null) {
+            return null;
+        }
+        List<TaskAttempt> attempts = job.runningAttempts.get(info.taskId());
+        attempts.remove(attempt);
+        if (attempts.isEmpty()) {
+            job.runningAttempts.remove(info.taskId());
         }
+        releaseSlot(job, attempt);
+        return attempt;
     }
 
-    private void assignTasksFromQueue(Queue<NewTaskDetails> queue) {
-        while (!queue.isEmpty()) {
-            Optional<ConnectedWorker> freeWorker =
-                    workers.stream().filter(ConnectedWorker::isFree).findFirst();
-            if (freeWorker.isPresent()) {
-                NewTaskDetails task = queue.poll();
-                ConnectedWorker worker = freeWorker.get();
+    private void releaseSlot(JobWrapper job, TaskAttempt attempt) {
+        releaseWorkerSlot(job.jobId, attempt);
+        job.runningTasks--;
+    }
+
+    private void releaseWorkerSlot(int jobId, TaskAttempt attempt) {
+        attempt.worker().release(jobId, attempt.task().taskInformation().taskId());
+        freeWorkers.release(attempt.worker());
+    }
+
+    /**
+     * Отменяет остальные попытки задачи, которую завершила другая попытка. Задание их больше не
+     * учитывает, а слот воркера проигравшая попытка занимает, пока воркер не сообщит о её
+     * завершении или не ответит, что такой попытки у него нет.
+     */
+    private void killOtherAttempts(JobWrapper job, int taskId) {
+        List<TaskAttempt> losers = job.runningAttempts.remove(taskId);
+        if (losers == null) {
+            return;
+        }
+        for (TaskAttempt loser : losers) {
+            int attemptId = loser.task().taskInformation().attemptId();
+            job.runningTasks--;
+            cancellingAttempts.computeIfAbsent(new TaskKey(job.jobId, taskId), key -> new ArrayList<>()).add(loser);
+            LOGGER.info("Cancelling attempt {} of task {} of job {} on worker {}.",
+                    attemptId, taskId, job.jobId, loser.worker().workerBaseUrl);
+            workerCalls.execute(() -> {
                 try {
-                    worker.getGateway().createTask(task);
-                    worker.assignTask(task);
-                    executingTasksCount ++;
-                    LOGGER.info("Assigned task {} to worker {}",
-                            task.taskInformation().taskId(), worker.workerBaseUrl);
+                    loser.worker().getGateway().cancelTask(job.jobId, taskId, attemptId);
+                } catch (RequestRejectedException e) {
+                    // Попытка уже завершилась, и воркер её больше не учитывает
+                    post(() -> {
+                        if (releaseCancelledAttempt(job.jobId, loser.task().taskInformation())) {
+                            distributeTasks();
+                        }
+                    });
                 } catch (IOException | InterruptedException e) {
-                    LOGGER.error("Failed to assign task {} to worker {}",
-                            task.taskInformation().taskId(),
-                            worker.workerBaseUrl,
-                            e);
-                    queue.add(task);
-                    break;
+                    LOGGER.warn("Failed to cancel attempt {} of task {} of job {} on worker {}: {}",
+                            attemptId, taskId, job.jobId, loser.worker().workerBaseUrl, e.getMessage());
                 }
-            } else {
-                break;
+            });
+        }
+    }
+
+    /** Возвращает слот отменённой попытки; false, если попытка уже не ждёт отмены. */
+    private boolean releaseCancelledAttempt(int jobId, TaskInformation info) {
+        TaskKey key = new TaskKey(jobId, info.taskId());
+        List<TaskAttempt> attempts = cancellingAttempts.get(key);
+        TaskAttempt attempt = attempts == null ? null : attempts.stream()
+                .filter(a -> a.task().taskInformation().attemptId() == info.attemptId())
+                .findFirst()
+                .orElse(null);
+        if (attempt == null) {
+            return false;
+        }
+        attempts.remove(attempt);
+        if (attempts.isEmpty()) {
+            cancellingAttempts.remove(key);
+        }
+        releaseWorkerSlot(jobId, attempt);
+        return true;
+    }
+
+    private NewTaskDetails nextAttempt(JobWrapper job, NewTaskDetails task) {
+        TaskInformation info = task.taskInformation();
+        int attemptId = job.lastAttemptIds.merge(info.taskId(), 1, Integer::sum);
+        return new NewTaskDetails(
+                task.jobInformation(),
+                new TaskInformation(
+                        info.taskId(),
+                        attemptId,
+                        info.taskType(),
+                        info.inputFiles(),
+                        info.inputSplits(),
+                        info.targetDir(),
+                        info.storageConnectionString()));
+    }
+
+    private void requeueTask(JobWrapper job, NewTaskDetails task) {
+        if (task.taskInformation().taskType() == TaskType.MAP) {
+            job.mapTaskQueue.add(task);
+        } else {
+            job.reduceTaskQueue.add(task);
+        }
+    }
+
+    private void finishAbortedJobIfIdle(JobWrapper job) {
+        if (job.runningTasks == 0) {
+            finishJob(job);
+        }
+    }
+
+    /**
+     * Раздаёт свободные слоты воркеров выполняющимся заданиям. Каждый следующий слот получает
+     * задание с наибольшим приоритетом ({@link ConfigurationOption#JOB_PRIORITY}), который растёт,
+     * пока задание ждёт слот. Среди равных по приоритету выбирается задание с более ранним сроком,
+     * затем — с наименьшим числом занятых слотов на единицу веса ({@link ConfigurationOption#JOB_WEIGHT}),
+     * затем — запущенное раньше. Задание, которому нечего запускать, слот не получает.
+     */
+    private void distributeTasks() {
+        if (freeWorkers.freeSlots() == 0) {
+            return;
+        }
+        Instant now = Instant.now();
+        Comparator<JobWrapper> order = slotOrder(now);
+        // Задания, задачу которых сейчас некуда отдать
+        Set<JobWrapper> blocked = new HashSet<>();
+        while (true) {
+            int freeSlots = freeWorkers.freeSlots();
+            if (freeSlots == 0) {
+                return;
+            }
+            JobWrapper next = nextJob(runningJobs.values(), blocked, freeSlots, order, now);
+            if (next == null) {
+                return;
+            }
+            if (!assignNextTask(next, dispatchQueue(next, freeSlots), now)) {
+                blocked.add(next);
             }
         }
+    }
 
+    /** Порядок, в котором выполняющиеся задания получают свободные слоты в момент {@code now}. */
+    static Comparator<JobWrapper> slotOrder(Instant now) {
+        return Comparator.<JobWrapper>comparingLong(job -> -job.effectivePriority(now))
+                .thenComparing(job -> job.deadline, DEADLINE_ORDER)
+                .thenComparingDouble(JobWrapper::share);
     }
 
-    private void checkAllWorkersHealth() {
-        List<ConnectedWorker> currentWorkers;
-        synchronized (this) {
-            currentWorkers = new ArrayList<>(workers);
+    /**
+     * Задание, которое получит следующий слот, или null, если запускать нечего. Из равных по
+     * {@code order} выбирается стоящее раньше в {@code jobs}.
+     */
+    static JobWrapper nextJob(Collection<JobWrapper> jobs, Set<JobWrapper> blocked, int freeSlots,
+                              Comparator<JobWrapper> order, Instant now) {
+        JobWrapper next = null;
+        for (JobWrapper job : jobs) {
+            if (blocked.contains(job)) {
+                continue;
+            }
+            if (dispatchQueue(job, freeSlots) == null) {
+                // Задание, которому нечего запускать, слот не ждёт
+                job.waitingSince = now;
+            } else if (next == null || order.compare(job, next) < 0) {
+                next = job;
+            }
+        }
+        return next;
+    }
+
+    /** Очередь, из которой задание запустит следующую задачу, или null, если запускать нечего. */
+    static Queue<NewTaskDetails> dispatchQueue(JobWrapper job, int freeSlots) {
+        if (job.phase == Phase.MAP) {
+            if (!job.mapTaskQueue.isEmpty()) {
+                return job.mapTaskQueue;
+            }
+            // Редьюсеры до конца map-фазы только ждут выходы мапперов, поэтому один слот
+            // оставляем свободным для перезапуска упавших map-задач.
+            if (!job.reduceTaskQueue.isEmpty() && isReduceSlowStartReached(job) && freeSlots > 1) {
+                return job.reduceTaskQueue;
+            }
+            return null;
+        }
+        return job.reduceTaskQueue.isEmpty() ? null : job.reduceTaskQueue;
+    }
+
+    private static boolean isReduceSlowStartReached(JobWrapper job) {
+        int mappersCount = job.config.get(ConfigurationOption.MAPPERS_COUNT);
+        double slowStart = job.config.get(ConfigurationOption.REDUCE_SLOW_START);
+        return job.finishedMappers >= slowStart * mappersCount;
+    }
+
+    private boolean assignNextTask(JobWrapper job, Queue<NewTaskDetails> queue, Instant now) {
+        // Берём воркер с наибольшим числом свободных слотов, чтобы равномерно нагружать узлы.
+        int taskId = queue.element().taskInformation().taskId();
+        ConnectedWorker worker = freeWorkers.acquire(w -> !w.isRunning(job.jobId, taskId));
+        if (worker == null) {
+            return false;
+        }
+        NewTaskDetails task = queue.poll();
+        launchAttempt(job, task, worker);
+        job.waitingSince = now;
+        LOGGER.debug("Assigned task {} of job {} to worker {}", taskId, job.jobId, worker.workerBaseUrl);
+        return true;
+    }
+
+    /**
+     * Записывает попытку на воркер, слот которого уже занят в {@link #freeWorkers}, и отправляет
+     * её воркеру вне цикла событий. Если отправить не удалось, цикл получает событие
+     * {@link #onLaunchFailed}.
+     */
+    private void launchAttempt(JobWrapper job, NewTaskDetails task, ConnectedWorker worker) {
+        worker.assignTask(task);
+        job.runningTasks++;
+        job.runningAttempts
+                .computeIfAbsent(task.taskInformation().taskId(), id -> new ArrayList<>())
+                .add(new TaskAttempt(task, worker, Instant.now()));
+        workerCalls.execute(() -> {
+            try {
+                worker.getGateway().createTask(task);
+            } catch (RequestRejectedException e) {
+                LOGGER.warn("Worker {} rejected task {} of job {}: {}",
+                        worker.workerBaseUrl, task.taskInformation().taskId(), job.jobId, e.getMessage());
+                post(() -> onLaunchFailed(job, task, worker, true));
+            } catch (IOException | InterruptedException e) {
+                LOGGER.error("Failed to assign task {} of job {} to worker {}",
+                        task.taskInformation().taskId(),
+                        job.jobId,
+                        worker.workerBaseUrl,
+                        e);
+                post(() -> onLaunchFailed(job, task, worker, false));
+            }
+        });
+    }
+
+    /**
+     * Возвращает задачу в очередь задания. Недоступный воркер исключается из раздачи до следующей
+     * проверки: иначе задачи раз за разом отдавались бы ему. Воркер, который ответил отказом,
+     * доступен, поэтому остаётся в раздаче, а задача раздаётся снова с задержкой.
+     */
+    private void onLaunchFailed(JobWrapper job, NewTaskDetails task, ConnectedWorker worker, boolean rejected) {
+        if (!rejected && freeWorkers.setAvailable(worker, false)) {
+            LOGGER.warn("Worker {} is unreachable, no tasks are assigned to it until the next health check.",
+                    worker.workerBaseUrl);
+        }
+        TaskInformation info = task.taskInformation();
+        if (runningJobs.get(job.jobId) != job || removeAttempt(job, info) == null) {
+            // Попытку успели отменить, пока её отправляли воркеру
+            releaseCancelledAttempt(job.jobId, info);
+            return;
+        }
+        job.committingAttempts.remove(info.taskId(), info.attemptId());
+        if (job.terminationStatus == JobTerminationStatus.ABORTED) {
+            finishAbortedJobIfIdle(job);
+        } else if (!job.runningAttempts.containsKey(info.taskId())) {
+            // Запрос мог дойти до воркера, хотя ответа не было, поэтому номер попытки новый
+            requeueTask(job, nextAttempt(job, task));
+        }
+        if (rejected) {
+            // Сразу раздавать нельзя: задача снова ушла бы на отказавший воркер
+            heartbeatScheduler.schedule(
+                    () -> post(this::distributeTasks), REJECTED_TASK_RETRY_DELAY_MS, TimeUnit.MILLISECONDS);
+        } else {
+            distributeTasks();
+        }
+    }
+
+    /**
+     * Запускает резервную копию задачи, которая выполняется дольше медианного времени завершённых
+     * задач своей фазы в {@link ConfigurationOption#SPECULATIVE_SLOWDOWN} раз. Копию получает другой
+     * воркер со свободным слотом, и только когда все задачи фазы уже розданы.
+     */
+    private void speculateStragglers() {
+        for (JobWrapper job : List.copyOf(runningJobs.values())) {
+            if (job.terminationStatus != JobTerminationStatus.ABORTED
+                    && job.config.get(ConfigurationOption.SPECULATIVE_EXECUTION)
+                    && !speculateStragglers(job)) {
+                return;
+            }
+        }
+    }
+
+    // Возвращает false, если свободных слотов для копий не осталось
+    private boolean speculateStragglers(JobWrapper job) {
+        TaskType phaseType = job.phase == Phase.MAP ? TaskType.MAP : TaskType.REDUCE;
+        Queue<NewTaskDetails> queue = phaseType == TaskType.MAP ? job.mapTaskQueue : job.reduceTaskQueue;
+        List<Long> durations = phaseType == TaskType.MAP ? job.mapDurationsMs : job.reduceDurationsMs;
+        if (!queue.isEmpty() || durations.isEmpty()) {
+            return true;
+        }
+        double thresholdMs = job.config.get(ConfigurationOption.SPECULATIVE_SLOWDOWN) * median(durations);
+        Instant now = Instant.now();
+        for (List<TaskAttempt> attempts : new ArrayList<>(job.runningAttempts.values())) {
+            TaskAttempt straggler = attempts.getFirst();
+            TaskInformation info = straggler.task().taskInformation();
+            if (info.taskType() != phaseType
+                    || job.speculatedTasks.contains(info.taskId())
+                    || elapsedMillis(job, straggler, now) <= thresholdMs) {
+                continue;
+            }
+            if (freeWorkers.freeSlots() == 0) {
+                return false;
+            }
+            ConnectedWorker worker = freeWorkers.acquire(w -> !w.isRunning(job.jobId, info.taskId()));
+            if (worker == null) {
+                // Свободные слоты есть только на воркере, где уже идёт эта задача
+                continue;
+            }
+            NewTaskDetails backup = nextAttempt(job, straggler.task());
+            launchAttempt(job, backup, worker);
+            job.speculatedTasks.add(info.taskId());
+            LOGGER.info("Task {} of job {} runs for {} ms (phase median {} ms), launched attempt {} on worker {}.",
+                    info.taskId(), job.jobId, elapsedMillis(job, straggler, now), median(durations),
+                    backup.taskInformation().attemptId(), worker.workerBaseUrl);
+        }
+        return true;
+    }
+
+    private long elapsedMillis(JobWrapper job, TaskAttempt attempt, Instant now) {
+        Instant start = attempt.startTime();
+        // Редьюсер, запущенный до конца map-фазы, до её окончания только ждал выходы мапперов
+        if (attempt.task().taskInformation().taskType() == TaskType.REDUCE
+                && job.mapEndTime != null
+                && job.mapEndTime.isAfter(start)) {
+            start = job.mapEndTime;
         }
+        return Duration.between(start, now).toMillis();
+    }
+
+    private void recordDuration(JobWrapper job, TaskAttempt attempt) {
+        long duration = elapsedMillis(job, attempt, Instant.now());
+        if (attempt.task().taskInformation().taskType() == TaskType.MAP) {
+            job.mapDurationsMs.add(duration);
+        } else {
+            job.reduceDurationsMs.add(duration);
+        }
+    }
+
+    private static long median(List<Long> values) {
+        List<Long> sorted = new ArrayList<>(values);
+        Collections.sort(sorted);
+        return sorted.get(sorted.size() / 2);
+    }
+
+    // Опрашивает воркеры в потоке проверок, а результаты передаёт циклу событий
+    private void checkAllWorkersHealth() {
+        List<ConnectedWorker> currentWorkers = call(() -> List.copyOf(workers));
 
         for (ConnectedWorker w : currentWorkers) {
             try {
-                if (!isWorkerAlive(w)) {
+                if (isWorkerAlive(w)) {
+                    post(() -> onWorkerAlive(w));
+                } else {
                     LOGGER.warn("Worker {} is considered DEAD. Reassigning task.",
                             w.workerBaseUrl);
-                    handleDeadWorker(w);
+                    post(() -> handleDeadWorker(w));
                 }
             } catch (Exception e) {
                 LOGGER.error("Error in heartbeat check for worker {}",
@@ -491,40 +1063,96 @@ public class Coordinator {
         return worker.getGateway().isAlive();
     }
 
-    private synchronized void handleDeadWorker(ConnectedWorker worker) {
-        workers.remove(worker);
-        NewTaskDetails assignedTask = worker.getCurrentTaskDetails();
-        if (assignedTask != null) {
-            if (assignedTask.taskInformation().taskType() == TaskType.MAP) {
-                mapTaskQueue.add(assignedTask);
+    private void onWorkerAlive(ConnectedWorker worker) {
+        if (freeWorkers.setAvailable(worker, true)) {
+            LOGGER.info("Worker {} is reachable again.", worker.workerBaseUrl);
+            distributeTasks();
+        }
+    }
+
+    private void handleDeadWorker(ConnectedWorker worker) {
+        if (!workers.remove(worker)) {
+            return;
+        }
+        freeWorkers.remove(worker);
+        cancellingAttempts.values().removeIf(attempts -> {
+            attempts.removeIf(attempt -> attempt.worker() == worker);
+            return attempts.isEmpty();
+        });
+        // Попытки воркера находим по его задачам, не перебирая попытки всех заданий
+        for (TaskKey key : List.copyOf(worker.runningTasks.keySet())) {
+            JobWrapper job = runningJobs.get(key.jobId());
+            if (job == null) {
+                continue;
+            }
+            for (TaskAttempt attempt : List.copyOf(job.runningAttempts.getOrDefault(key.taskId(), List.of()))) {
+                if (attempt.worker() != worker) {
+                    continue;
+                }
+                TaskInformation info = attempt.task().taskInformation();
+                removeAttempt(job, info);
+                job.committingAttempts.remove(info.taskId(), info.attemptId());
+                if (job.terminationStatus != JobTerminationStatus.ABORTED
+                        && !job.runningAttempts.containsKey(info.taskId())) {
+                    requeueTask(job, nextAttempt(job, attempt.task()));
+                }
+            }
+        }
+        for (JobWrapper job : List.copyOf(runningJobs.values())) {
+            if (job.config.get(ConfigurationOption.MAP_OUTPUTS_UPLOAD)) {
+                // Выходы мапперов с этого воркера редьюсеры заберут из хранилища
+                job.finishedMapperLocations.replaceAll(
+                        (mapperId, url) -> worker.workerBaseUrl.equals(url) ? null : url);
             } else {
-                reduceTaskQueue.add(assignedTask);
+                rerunLostMappers(job, worker);
+            }
+            if (job.terminationStatus == JobTerminationStatus.ABORTED) {
+                finishAbortedJobIfIdle(job);
             }
-            worker.release();
         }
         distributeTasks();
     }
 
-    private synchronized void waitForJobEnd() throws InterruptedException {
-        while (currentJob.status != JobStatus.FINISHED) {
-            wait();
+    // Выходы мапперов хранились только на диске умершего воркера: пока их ждут редьюсеры,
+    // такие мапперы запускаются заново
+    private void rerunLostMappers(JobWrapper job, ConnectedWorker worker) {
+        if (job.terminationStatus == JobTerminationStatus.ABORTED
+                || job.finishedReducers == job.config.get(ConfigurationOption.REDUCERS_COUNT)) {
+            return;
+        }
+        Iterator<Map.Entry<Integer, String>> locations = job.finishedMapperLocations.entrySet().iterator();
+        while (locations.hasNext()) {
+            Map.Entry<Integer, String> location = locations.next();
+            if (!worker.workerBaseUrl.equals(location.getValue())) {
+                continue;
+            }
+            locations.remove();
+            job.finishedMappers--;
+            job.succeededTasks.remove(location.getKey());
+            requeueTask(job, nextAttempt(job, job.mapTasks.get(location.getKey())));
+            LOGGER.info("Output of MAP task {} of job {} was lost with worker {}. Rerunning the task.",
+                    location.getKey(), job.jobId, worker.workerBaseUrl);
+        }
+        if (job.phase == Phase.REDUCE
+                && job.finishedMappers < job.config.get(ConfigurationOption.MAPPERS_COUNT)) {
+            job.phase = Phase.MAP;
         }
     }
 
     public List<JobQueueInfo> getJobQueueInfo() {
-        synchronized(allJobs) {
-            return allJobs.stream()
-                    .map(w -> new JobQueueInfo(
-                            w.config.get(ConfigurationOption.JOB_ID),
-                            w.config.get(ConfigurationOption.JOB_NAME),
-                            TIME_FMT.format(w.submissionTime)
-                    ))
-                    .toList();
-        }
+        return call(() -> allJobs.stream()
+                .map(w -> new JobQueueInfo(
+                        w.config.get(ConfigurationOption.JOB_ID),
+                        w.config.get(ConfigurationOption.JOB_NAME),
+                        TIME_FMT.format(w.submissionTime),
+                        w.priority,
+                        w.deadline == null ? null : TIME_FMT.format(w.deadline)
+                ))
+                .toList());
     }
 
     public JobDetailInfo getJobDetailInfo(int idx) {
-        synchronized(allJobs) {
+        return call(() -> {
             JobWrapper w = allJobs.get(idx);
 
             return new JobDetailInfo(
@@ -535,51 +1163,81 @@ public class Coordinator {
                     w.config.get(ConfigurationOption.REDUCERS_OUTPUTS_PATH),
                     w.config.get(ConfigurationOption.MAPPERS_COUNT),
                     w.config.get(ConfigurationOption.REDUCERS_COUNT),
-                    getJobProgressInfo(idx)
+                    jobProgressInfo(w)
             );
-        }
+        });
     }
 
     public JobProgressInfo getJobProgressInfo(int idx) {
-        synchronized(allJobs) {
-            JobWrapper w = allJobs.get(idx);
+        return call(() -> jobProgressInfo(allJobs.get(idx)));
+    }
 
-            List<PhaseDuration> pd = new ArrayList<>();
-            if (w.mapEndTime != null) {
-                String jobStartTime = TIME_FMT.format(w.jobStartTime);
-                String mapEndTime = TIME_FMT.format(w.mapEndTime);
-                pd.add(new PhaseDuration("MAP", jobStartTime, mapEndTime));
-            }
-            if (w.jobEndTime != null) {
-                String mapEndTime = TIME_FMT.format(w.mapEndTime);
-                String jobEndTime = TIME_FMT.format(w.submissionTime);
-                pd.add(new PhaseDuration("REDUCE", mapEndTime, jobEndTime));
-            }
-            List<PhaseDuration> phaseDurations = pd.isEmpty() ? null : pd;
-            return new JobProgressInfo(
-                    w.status.name(),
-                    w.status == JobStatus.FINISHED ? w.terminationStatus.name() : null,
-                    w.status == JobStatus.RUNNING ? w.phase.name() : null,
-                    w.totalTasks(),
-                    w.completedTasks(),
-                    phaseDurations
-            );
+    private JobProgressInfo jobProgressInfo(JobWrapper w) {
+        List<PhaseDuration> pd = new ArrayList<>();
+        if (w.mapEndTime != null) {
+            String jobStartTime = TIME_FMT.format(w.jobStartTime);
+            String mapEndTime = TIME_FMT.format(w.mapEndTime);
+            pd.add(new PhaseDuration("MAP", jobStartTime, mapEndTime));
         }
+        if (w.jobEndTime != null) {
+            String mapEndTime = TIME_FMT.format(w.mapEndTime);
+            String jobEndTime = TIME_FMT.format(w.submissionTime);
+            pd.add(new PhaseDuration("REDUCE", mapEndTime, jobEndTime));
+        }
+        List<PhaseDuration> phaseDurations = pd.isEmpty() ? null : pd;
+        return new JobProgressInfo(
+                w.status.name(),
+                w.status == JobStatus.FINISHED ? w.terminationStatus.name() : null,
+                w.status == JobStatus.RUNNING ? w.phase.name() : null,
+                w.totalTasks(),
+                w.completedTasks(),
+                phaseDurations
+        );
+    }
+
+    public FinishedMappersInfo getFinishedMappersInfo(int jobId) {
+        return call(() -> {
+            JobWrapper job = runningJobs.get(jobId);
+            if (job == null) {
+                // Задание завершено или удалено: редьюсеру больше нечего ждать
+                return new FinishedMappersInfo(List.of(), true);
+            }
+            return new FinishedMappersInfo(
+                    job.finishedMapperLocations.entrySet().stream()
+                            .map(e -> new MapOutputLocation(e.getKey(), e.getValue()))
+                            .toList(),
+                    job.terminationStatus == JobTerminationStatus.ABORTED
+            );
+        });
     }
 
-    public synchronized int getConnectedWorkersCount() {
-        return workers.size();
+    public int getConnectedWorkersCount() {
+        return call(workers::size);
     }
 
-    public synchronized void deleteJob(int idx) {
+    public void deleteJob(int idx) {
+        call(() -> {
+            removeJob(idx);
+            return null;
+        });
+    }
+
+    private void removeJob(int idx) {
         if (idx < 0 || idx >= allJobs.size()) {
             throw new IndexOutOfBoundsException();
         }
         JobWrapper w = allJobs.get(idx);
-        if (w == currentJob) {
-            mapTaskQueue.clear();
-            reduceTaskQueue.clear();
+        if (w.status != JobStatus.FINISHED) {
+            w.mapTaskQueue.clear();
+            w.reduceTaskQueue.clear();
             w.terminationStatus = JobTerminationStatus.ABORTED;
+            if (runningJobs.get(w.jobId) == w) {
+                finishAbortedJobIfIdle(w);
+            } else if (w.status == JobStatus.WAITING) {
+                w.status = JobStatus.FINISHED;
+                w.finished.countDown();
+            }
+            // Задание, задачи которого ещё планируются, завершит startJob
         }
         allJobs.remove(idx);
         jobQueue.remove(w);
@@ -1,17 +1,28 @@
 package ru.nsu.mr;
 
+import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStreamReader;
 import java.net.URL;
 import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Enumeration;
 import java.util.List;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
+import java.util.jar.Manifest;
 
+/**
+ * Загружает класс задания из пользовательского JAR. Класс берётся из атрибута манифеста
+ * {@link #JOB_CLASS_ATTRIBUTE} или из файла {@code META-INF/services/<имя базового класса>}; только
+ * если нет ни того, ни другого, загружаются все классы архива в поисках подкласса.
+ */
 public class JarFileParser {
+    public static final String JOB_CLASS_ATTRIBUTE = "MapReduce-Job-Class";
+
     private final URLClassLoader classLoader;
     private final Path jarFilePath; // Сохранение пути файла JAR
 
@@ -23,6 +34,20 @@ public class JarFileParser {
     }
 
     public <T> T loadUsersSubClass(Class<T> superClass) throws Exception {
+        Class<? extends T> subClass = findUsersSubClass(superClass);
+        return subClass.getDeclaredConstructor().newInstance(); // Создаем экземпляр класса
+    }
+
+    public <T> Class<? extends T> findUsersSubClass(Class<T> superClass) throws Exception {
+        String className = findDeclaredClassName(superClass);
+        if (className != null) {
+            Class<?> loadedClass = classLoader.loadClass(className);
+            if (!superClass.isAssignableFrom(loadedClass)) {
+                throw new IllegalStateException(className + " declared in JAR is not a subclass of " + superClass.getSimpleName());
+            }
+            return loadedClass.asSubclass(superClass);
+        }
+
         List<Class<? extends T>> subClasses = findSubClasses(superClass);
 
         if (subClasses.isEmpty()) {
@@ -31,8 +56,40 @@ public class JarFileParser {
             throw new IllegalStateException("More than one subclass of " + superClass.getSimpleName() + " found in JAR: " + subClasses);
         }
 
-        Class<? extends T> subClass = subClasses.get(0);
-        return subClass.getDeclaredConstructor().newInstance(); // Создаем экземпляр класса
+        return subClasses.get(0);
+    }
+
+    // Имя класса из манифеста или из файла сервиса; null, если JAR его не объявляет
+    private String findDeclaredClassName(Class<?> superClass) throws IOException {
+        try (JarFile jarFile = new JarFile(jarFilePath.toFile())) {
+            Manifest manifest = jarFile.getManifest();
+            if (manifest != null) {
+                String className = manifest.getMainAttributes().getValue(JOB_CLASS_ATTRIBUTE);
+                if (className != null && !className.isBlank()) {
+                    return className.trim();
+                }
+            }
+            JarEntry serviceFile = jarFile.getJarEntry("META-INF/services/" + superClass.getName());
+            if (serviceFile == null) {
+                return null;
+            }
+            List<String> classNames = new ArrayList<>();
+            try (BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(jarFile.getInputStream(serviceFile), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    int comment = line.indexOf('#');
+                    String className = (comment >= 0 ? line.substring(0, comment) : line).trim();
+                    if (!className.isEmpty()) {
+                        classNames.add(className);
+                    }
+                }
+            }
+            if (classNames.size() > 1) {
+                throw new IllegalStateException("More than one " + superClass.getSimpleName() + " declared in JAR: " + classNames);
+            }
+            return classNames.isEmpty() ? null : classNames.get(0);
+        }
     }
 
     private <T> List<Class<? extends T>> findSubClasses(Class<T> superclass) throws IOException {
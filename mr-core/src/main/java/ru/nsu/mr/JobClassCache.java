@@ -0,0 +1,241 @@
+package ru.nsu.mr;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
+
+/**
+ * Загруженные классы заданий воркера. Для каждого задания jar скачивается и разбирается один
+ * раз, затем все его задачи получают один экземпляр {@link MapReduceJob}. Загрузчики классов общие
+ * для заданий с одинаковым содержимым jar (по SHA-256), поэтому повторный запуск того же jar не
+ * загружает его классы заново.
+ *
+ * <p>Запись задания удаляется {@link #evict}, когда координатор сообщает о завершении задания.
+ * Загрузчик закрывается, когда на него не ссылается ни одно задание и ни одна выполняющаяся задача.
+ */
+public class JobClassCache implements AutoCloseable {
+    /** Скачивает jar задания в указанный файл. */
+    @FunctionalInterface
+    public interface JarSource {
+        void download(Path destination) throws Exception;
+    }
+
+    private static class LoadedJar {
+        private final String digest;
+        private final Path file;
+        private final JarFileParser parser;
+        private final Class<?> jobClass;
+        // Задания, которые используют jar, и выполняющиеся задачи этих заданий
+        private int references = 0;
+
+        LoadedJar(String digest, Path file, JarFileParser parser, Class<?> jobClass) {
+            this.digest = digest;
+            this.file = file;
+            this.parser = parser;
+            this.jobClass = jobClass;
+        }
+    }
+
+    private record CachedJob(String jarLocation, LoadedJar jar, MapReduceJob<?, ?, ?, ?> job) {}
+
+    /** Экземпляр задания для задачи; jar не закрывается, пока аренду не вернули через release. */
+    public static final class Lease {
+        private final MapReduceJob<?, ?, ?, ?> job;
+        private final LoadedJar jar;
+        private boolean released = false;
+
+        private Lease(MapReduceJob<?, ?, ?, ?> job, LoadedJar jar) {
+            this.job = job;
+            this.jar = jar;
+        }
+
+        public MapReduceJob<?, ?, ?, ?> job() {
+            return job;
+        }
+    }
+
+    private final Path directory;
+    private final Map<Integer, CachedJob> jobs = new HashMap<>();
+    private final Map<String, LoadedJar> jars = new HashMap<>();
+    // Загружаемые сейчас задания; остальные задачи этих заданий ждут окончания загрузки
+    private final Map<Integer, CompletableFuture<Void>> loads = new HashMap<>();
+
+    public JobClassCache(Path directory) throws IOException {
+        this.directory = Files.createDirectories(directory);
+    }
+
+    /**
+     * Возвращает задание с данным идентификатором. jar скачивается, только если задание ещё не
+     * загружено или под тем же идентификатором пришёл jar из другого места. Скачивание и разбор jar
+     * идут без блокировки кэша: задачи уже загруженных заданий их не ждут.
+     */
+    public Lease acquire(int jobId, String jarLocation, JarSource source) throws Exception {
+        while (true) {
+            CompletableFuture<Void> loading;
+            synchronized (this) {
+                CachedJob cached = jobs.get(jobId);
+                if (cached != null && cached.jarLocation().equals(jarLocation)) {
+                    cached.jar().references++;
+                    return new Lease(cached.job(), cached.jar());
+                }
+                loading = loads.get(jobId);
+                if (loading == null) {
+                    loading = new CompletableFuture<>();
+                    loads.put(jobId, loading);
+                    break;
+                }
+            }
+            // Задание уже загружает другая задача; если у неё не получилось, попробуем сами
+            loading.get();
+        }
+        try {
+            CachedJob loaded = load(jarLocation, source);
+            synchronized (this) {
+                evict(jobId);
+                jobs.put(jobId, loaded);
+                loaded.jar().references++;
+                return new Lease(loaded.job(), loaded.jar());
+            }
+        } finally {
+            CompletableFuture<Void> loading;
+            synchronized (this) {
+                loading = loads.remove(jobId);
+            }
+            loading.complete(null);
+        }
+    }
+
+    public synchronized void release(Lease lease) {
+        if (!lease.released) {
+            lease.released = true;
+            dereference(lease.jar);
+        }
+    }
+
+    public synchronized void evict(int jobId) {
+        CachedJob cached = jobs.remove(jobId);
+        if (cached != null) {
+            dereference(cached.jar());
+        }
+    }
+
+    public synchronized boolean contains(int jobId) {
+        return jobs.containsKey(jobId);
+    }
+
+    /** Число открытых загрузчиков классов. */
+    public synchronized int getLoadedJarsCount() {
+        return jars.size();
+    }
+
+    private CachedJob load(String jarLocation, JarSource source) throws Exception {
+        LoadedJar jar = loadJar(source);
+        try {
+            MapReduceJob<?, ?, ?, ?> job = (MapReduceJob<?, ?, ?, ?>) jar.jobClass.getDeclaredConstructor().newInstance();
+            return new CachedJob(jarLocation, jar, job);
+        } catch (Exception | LinkageError e) {
+            synchronized (this) {
+                dereference(jar);
+            }
+            throw e;
+        }
+    }
+
+    /** Скачивает и разбирает jar; возвращённый jar уже учитывает ссылку вызывающего. */
+    private LoadedJar loadJar(JarSource source) throws Exception {
+        Path file = directory.resolve(UUID.randomUUID() + ".jar");
+        try {
+            source.download(file);
+            String digest = digest(file);
+            LoadedJar jar = reference(digest);
+            if (jar != null) {
+                Files.deleteIfExists(file);
+                return jar;
+            }
+            JarFileParser parser = new JarFileParser(file);
+            try {
+                jar = new LoadedJar(digest, file, parser, parser.findUsersSubClass(MapReduceJob.class));
+            } catch (Exception | LinkageError e) {
+                parser.close();
+                throw e;
+            }
+            synchronized (this) {
+                LoadedJar loaded = reference(digest);
+                if (loaded == null) {
+                    jars.put(digest, jar);
+                    jar.references++;
+                    return jar;
+                }
+                // Тот же jar успели загрузить для другого задания
+                closeJar(jar);
+                return loaded;
+            }
+        } catch (Exception | LinkageError e) {
+            Files.deleteIfExists(file);
+            throw e;
+        }
+    }
+
+    private synchronized LoadedJar reference(String digest) {
+        LoadedJar jar = jars.get(digest);
+        if (jar != null) {
+            jar.references++;
+        }
+        return jar;
+    }
+
+    private void dereference(LoadedJar jar) {
+        if (--jar.references > 0) {
+            return;
+        }
+        jars.remove(jar.digest, jar);
+        closeJar(jar);
+    }
+
+    private static void closeJar(LoadedJar jar) {
+        try {
+            jar.parser.close();
+            Files.deleteIfExists(jar.file);
+        } catch (IOException e) {
+            System.err.println("Failed to close job JAR " + jar.file + ": " + e.getMessage());
+        }
+    }
+
+    private static String digest(Path file) throws IOException {
+        try (InputStream input = Files.newInputStream(file)) {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] buffer = new byte[64 * 1024];
+            int read;
+            while ((read = input.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        for (LoadedJar jar : jars.values()) {
+            closeJar(jar);
+        }
+        jars.clear();
+        jobs.clear();
+        try (Stream<Path> paths = Files.walk(directory)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+}
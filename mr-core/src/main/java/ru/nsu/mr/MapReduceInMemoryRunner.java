@@ -0,0 +1,146 @@
+package ru.nsu.mr;
+
+import ru.nsu.mr.config.Configuration;
+import ru.nsu.mr.config.ConfigurationOption;
+import ru.nsu.mr.formats.KeyValueFormat;
+import ru.nsu.mr.sinks.PartitionedInMemorySink;
+import ru.nsu.mr.sinks.PartitionedInMemorySink.MemoryLimitExceededException;
+import ru.nsu.mr.sources.FileSplit;
+import ru.nsu.mr.sources.SegmentMerger;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.*;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Локальный запуск для небольших задач: выходы мапперов остаются в памяти отсортированными по
+ * партициям, а редьюсеры получают их слияние напрямую. На диск пишутся только output-i.txt.
+ *
+ * <p>Общий объём выходов мапперов ограничен {@link ConfigurationOption#IN_MEMORY_MAX_BYTES}. Если
+ * очередной маппер в него не укладывается, готовые выходы сбрасываются в файлы
+ * mapper-output-i-j.zip, а этот и оставшиеся мапперы и все редьюсеры выполняются так же, как в
+ * {@link MapReduceSequentialRunner}.
+ */
+public class MapReduceInMemoryRunner implements MapReduceRunner {
+
+    public MapReduceInMemoryRunner() {}
+
+    @Override
+    public void run(
+            MapReduceJob<?, ?, ?, ?> job,
+            List<Path> inputFiles,
+            Configuration configuration,
+            Path mappersOutputDirectory,
+            Path outputDirectory) {
+        try {
+            runJob(job, inputFiles, configuration, mappersOutputDirectory, outputDirectory);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private <K_I, V_I, K_O, V_O> void runJob(
+            MapReduceJob<K_I, V_I, K_O, V_O> job,
+            List<Path> inputFiles,
+            Configuration configuration,
+            Path mappersOutputDirectory,
+            Path outputDirectory)
+            throws IOException {
+
+        Logger LOGGER = LogManager.getLogger();
+
+        int mappersCount = configuration.get(ConfigurationOption.MAPPERS_COUNT);
+        int reducersCount = configuration.get(ConfigurationOption.REDUCERS_COUNT);
+        long maxBytes = configuration.get(ConfigurationOption.IN_MEMORY_MAX_BYTES);
+        KeyValueFormat<K_I, V_I> format = KeyValueFormat.intermediate(job);
+        List<List<Path>> mapperInputs =
+                MapReduceTasksRunner.distributeInputFiles(inputFiles, mappersCount);
+
+        List<PartitionedInMemorySink<K_I, V_I>> mapOutputs = new ArrayList<>();
+        long usedBytes = 0;
+        boolean onDisk = false;
+        for (int i = 0; i < mappersCount; ++i) {
+            if (!onDisk) {
+                PartitionedInMemorySink<K_I, V_I> sink =
+                        new PartitionedInMemorySink<>(
+                                format,
+                                reducersCount,
+                                job.getHasher(),
+                                job.getComparator(),
+                                job.getRawComparator(),
+                                job.getCombiner(),
+                                maxBytes - usedBytes);
+                List<FileSplit> splits = new ArrayList<>();
+                for (Path file : mapperInputs.get(i)) {
+                    splits.add(FileSplit.wholeFile(file));
+                }
+                try {
+                    MapReduceTasksRunner.mapSplits(splits, i, job, sink, LOGGER);
+                    sink.close();
+                    usedBytes += sink.getBytes();
+                    mapOutputs.add(sink);
+                    continue;
+                } catch (MemoryLimitExceededException e) {
+                    LOGGER.info(
+                            "Mapper {} exceeded the in-memory limit of {} bytes,"
+                                    + " switching to the on-disk path.",
+                            i,
+                            maxBytes);
+                    // Готовые выходы пишем в файлы, этот маппер выполняется заново через диск
+                    spillToDisk(mapOutputs, reducersCount, mappersOutputDirectory);
+                    mapOutputs.clear();
+                    onDisk = true;
+                }
+            }
+            MapReduceTasksRunner.executeMapperTask(
+                    mapperInputs.get(i), i, mappersOutputDirectory, configuration, job, LOGGER);
+        }
+
+        for (int i = 0; i < reducersCount; ++i) {
+            if (onDisk) {
+                List<Path> interFilesToReduce = new ArrayList<>();
+                for (int k = 0; k < mappersCount; ++k) {
+                    interFilesToReduce.add(
+                            mappersOutputDirectory.resolve("mapper-output-" + k + "-" + i + ".zip"));
+                }
+                MapReduceTasksRunner.executeReduceTask(
+                        interFilesToReduce, i, outputDirectory, configuration, job, LOGGER);
+                continue;
+            }
+            List<InputStream> partitions = new ArrayList<>();
+            for (PartitionedInMemorySink<K_I, V_I> mapOutput : mapOutputs) {
+                partitions.add(mapOutput.openPartition(i));
+            }
+            SegmentMerger<K_I, V_I> merger =
+                    new SegmentMerger<>(
+                            format,
+                            job.getComparator(),
+                            job.getRawComparator(),
+                            null,
+                            configuration.get(ConfigurationOption.SORT_MERGE_FACTOR));
+            try (SegmentMerger.MergedSegments<K_I, V_I> merged = merger.mergeStreams(partitions)) {
+                MapReduceTasksRunner.reduceSorted(merged, i, outputDirectory, job, LOGGER);
+            }
+        }
+    }
+
+    private static <K, V> void spillToDisk(
+            List<PartitionedInMemorySink<K, V>> mapOutputs,
+            int reducersCount,
+            Path mappersOutputDirectory)
+            throws IOException {
+        for (int k = 0; k < mapOutputs.size(); ++k) {
+            for (int i = 0; i < reducersCount; ++i) {
+                mapOutputs.get(k)
+                        .writePartition(
+                                i,
+                                mappersOutputDirectory.resolve(
+                                        "mapper-output-" + k + "-" + i + ".zip"));
+            }
+        }
+    }
+}
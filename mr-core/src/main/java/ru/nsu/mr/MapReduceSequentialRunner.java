@@ -25,22 +25,15 @@ public class MapReduceSequentialRunner implements MapReduceRunner {
         Logger LOGGER = LogManager.getLogger();
 
         int mappersCount = configuration.get(ConfigurationOption.MAPPERS_COUNT);
-        int numberOfProcessedInputFiles = 0;
+        List<List<Path>> mapperInputs =
+                MapReduceTasksRunner.distributeInputFiles(inputFiles, mappersCount);
         for (int i = 0; i < mappersCount; ++i) {
-            int inputFilesToProcessCount =
-                    (inputFiles.size() - numberOfProcessedInputFiles) / (mappersCount - i);
-            List<Path> inputFilesToProcess = new ArrayList<>();
-            for (int k = 0; k < inputFilesToProcessCount; ++k) {
-                Path inputFileToProcess = inputFiles.get(numberOfProcessedInputFiles + k);
-                inputFilesToProcess.add(inputFileToProcess);
-            }
             try {
                 MapReduceTasksRunner.executeMapperTask(
-                        inputFilesToProcess, i, mappersOutputDirectory, configuration, job, LOGGER);
+                        mapperInputs.get(i), i, mappersOutputDirectory, configuration, job, LOGGER);
             } catch (IOException e) {
                 throw new RuntimeException();
             }
-            numberOfProcessedInputFiles += inputFilesToProcessCount;
         }
 
         for (int i = 0; i < configuration.get(ConfigurationOption.REDUCERS_COUNT); ++i) {
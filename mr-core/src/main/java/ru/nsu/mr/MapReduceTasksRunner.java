@@ -2,26 +2,49 @@ package ru.nsu.mr;
 
 import ru.nsu.mr.config.Configuration;
 import ru.nsu.mr.config.ConfigurationOption;
+import ru.nsu.mr.formats.KeyValueFormat;
 import ru.nsu.mr.sinks.FileSink;
 import ru.nsu.mr.sinks.FileSystemSink;
-import ru.nsu.mr.sinks.PartitionedFileSink;
-import ru.nsu.mr.sinks.SortedFileSink;
+import ru.nsu.mr.sinks.PartitionedSortedFileSink;
+import ru.nsu.mr.sources.FileSplit;
 import ru.nsu.mr.sources.GroupedKeyValuesIterator;
-import ru.nsu.mr.sources.KeyValueFileIterator;
-import ru.nsu.mr.sources.MergedKeyValueIterator;
+import ru.nsu.mr.sources.LineSplitIterator;
+import ru.nsu.mr.sources.SegmentMerger;
+import ru.nsu.mr.sources.SegmentMerger.Segment;
+import ru.nsu.mr.sources.SplitSource;
 
-import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.logging.log4j.Logger;
 
 public class MapReduceTasksRunner {
 
+    /** Делит входные файлы между мапперами подряд идущими, почти равными по числу файлов частями. */
+    public static List<List<Path>> distributeInputFiles(List<Path> inputFiles, int mappersCount) {
+        List<List<Path>> result = new ArrayList<>();
+        int numberOfProcessedInputFiles = 0;
+        for (int i = 0; i < mappersCount; ++i) {
+            int inputFilesToProcessCount =
+                    (inputFiles.size() - numberOfProcessedInputFiles) / (mappersCount - i);
+            result.add(
+                    new ArrayList<>(
+                            inputFiles.subList(
+                                    numberOfProcessedInputFiles,
+                                    numberOfProcessedInputFiles + inputFilesToProcessCount)));
+            numberOfProcessedInputFiles += inputFilesToProcessCount;
+        }
+        return result;
+    }
+
     public static <K_I, V_I, K_O, V_O> void executeMapperTask(
             List<Path> filesToMap,
             int mapperId,
@@ -30,49 +53,73 @@ public class MapReduceTasksRunner {
             MapReduceJob<K_I, V_I, K_O, V_O> job,
             Logger LOGGER)
             throws IOException {
-        List<FileSystemSink<K_I, V_I>> sortedFileSinks = new ArrayList<>();
+        List<FileSplit> splitsToMap = new ArrayList<>();
+        for (Path fileToMap : filesToMap) {
+            splitsToMap.add(FileSplit.wholeFile(fileToMap));
+        }
+        executeMapperSplitsTask(
+                splitsToMap, mapperId, mappersOutputDirectory, configuration, job, LOGGER);
+    }
+
+    public static <K_I, V_I, K_O, V_O> void executeMapperSplitsTask(
+            List<? extends SplitSource> splitsToMap,
+            int mapperId,
+            Path mappersOutputDirectory,
+            Configuration configuration,
+            MapReduceJob<K_I, V_I, K_O, V_O> job,
+            Logger LOGGER)
+            throws IOException {
+        List<Path> outputPaths = new ArrayList<>();
         for (int i = 0; i < configuration.get(ConfigurationOption.REDUCERS_COUNT); ++i) {
-            Path zipPath = mappersOutputDirectory.resolve("mapper-output-" + mapperId + "-" + i + ".zip");
-            Files.deleteIfExists(zipPath);
-            sortedFileSinks.add(
-                    new SortedFileSink<>(
-                            job.getSerializerInterKey(),
-                            job.getSerializerInterValue(),
-                            job.getDeserializerInterKey(),
-                            job.getDeserializerInterValue(),
-                            zipPath,
-                            configuration.get(ConfigurationOption.SORTER_IN_MEMORY_RECORDS),
-                            job.getComparator()));
+            outputPaths.add(mappersOutputDirectory.resolve("mapper-output-" + mapperId + "-" + i + ".zip"));
+        }
+        PartitionedSortedFileSink<K_I, V_I> partitionedFileSink =
+                new PartitionedSortedFileSink<>(
+                        KeyValueFormat.intermediate(job),
+                        outputPaths,
+                        job.getHasher(),
+                        job.getComparator(),
+                        job.getRawComparator(),
+                        job.getCombiner(),
+                        configuration.get(ConfigurationOption.SORTER_IN_MEMORY_BYTES),
+                        configuration.get(ConfigurationOption.SORTER_IN_MEMORY_RECORDS),
+                        configuration.get(ConfigurationOption.SORT_MERGE_FACTOR));
+        try (partitionedFileSink) {
+            mapSplits(splitsToMap, mapperId, job, partitionedFileSink, LOGGER);
         }
-        try (PartitionedFileSink<K_I, V_I> partitionedFileSink =
-                new PartitionedFileSink<>(sortedFileSinks, job.getHasher())) {
-            for (Path inputFileToProcess : filesToMap) {
-                LOGGER.debug("Mapper: {} is reading file: {}.", mapperId, inputFileToProcess);
+        LOGGER.info(
+                "Mapper {} made {} spills: spilling took {} ms, map waited for spiller {} ms.",
+                mapperId,
+                partitionedFileSink.getSpillsCount(),
+                TimeUnit.NANOSECONDS.toMillis(partitionedFileSink.getSpillNanos()),
+                TimeUnit.NANOSECONDS.toMillis(partitionedFileSink.getSpillWaitNanos()));
+    }
 
-                BufferedReader reader = Files.newBufferedReader(inputFileToProcess);
-                String line = reader.readLine();
+    /** Применяет маппер задачи к сплитам и пишет его выход в sink. */
+    public static <K_I, V_I> void mapSplits(
+            List<? extends SplitSource> splitsToMap,
+            int mapperId,
+            MapReduceJob<K_I, V_I, ?, ?> job,
+            FileSystemSink<K_I, V_I> sink,
+            Logger LOGGER)
+            throws IOException {
+        for (SplitSource splitToProcess : splitsToMap) {
+            LOGGER.debug("Mapper: {} is reading {} bytes of file {} from offset {}.",
+                    mapperId, splitToProcess.length(), splitToProcess.name(), splitToProcess.offset());
 
+            String inputFileName = splitToProcess.name();
+            try (LineSplitIterator lines = new LineSplitIterator(splitToProcess)) {
                 Iterator<Pair<String, String>> iterator =
                         new Iterator<>() {
-                            String nextLine = line;
-
                             @Override
                             public boolean hasNext() {
-                                return nextLine != null;
+                                checkCancelled();
+                                return lines.hasNext();
                             }
 
                             @Override
                             public Pair<String, String> next() {
-                                if (!hasNext()) {
-                                    throw new RuntimeException();
-                                }
-                                String currentLine = nextLine;
-                                try {
-                                    nextLine = reader.readLine();
-                                } catch (IOException e) {
-                                    throw new RuntimeException();
-                                }
-                                return new Pair<>(inputFileToProcess.toString(), currentLine);
+                                return new Pair<>(inputFileName, lines.next());
                             }
                         };
 
@@ -82,7 +129,7 @@ public class MapReduceTasksRunner {
                                 iterator,
                                 (outputKey, outputValue) -> {
                                     try {
-                                        partitionedFileSink.put(outputKey, outputValue);
+                                        sink.put(outputKey, outputValue);
                                     } catch (IOException e) {
                                         LOGGER.error("IO error while MAP function on mapper {}.",
                                                mapperId, e);
@@ -101,26 +148,94 @@ public class MapReduceTasksRunner {
             MapReduceJob<K_I, V_I, K_O, V_O> job,
             Logger LOGGER)
             throws IOException {
-        List<Iterator<Pair<K_I, V_I>>> fileIterators = new ArrayList<>();
+        executeReduceTask(
+                mappersOutputFiles,
+                reducerId,
+                createOutputFile(outputDirectory, reducerId),
+                configuration,
+                job,
+                LOGGER);
+    }
+
+    /** Пишет выход редьюсера в переданный поток, например в загрузку в хранилище, и закрывает его. */
+    public static <K_I, V_I, K_O, V_O> void executeReduceTask(
+            List<Path> mappersOutputFiles,
+            int reducerId,
+            OutputStream output,
+            Configuration configuration,
+            MapReduceJob<K_I, V_I, K_O, V_O> job,
+            Logger LOGGER)
+            throws IOException {
+        List<Segment> segments = new ArrayList<>();
         for (Path mappersOutputFile : mappersOutputFiles) {
-            fileIterators.add(
-                    new KeyValueFileIterator<>(
-                            mappersOutputFile,
-                            job.getDeserializerInterKey(),
-                            job.getDeserializerInterValue()));
+            segments.add(Segment.wholeFile(mappersOutputFile));
+        }
+        SegmentMerger<K_I, V_I> merger =
+                new SegmentMerger<>(
+                        KeyValueFormat.intermediate(job),
+                        job.getComparator(),
+                        job.getRawComparator(),
+                        null,
+                        configuration.get(ConfigurationOption.SORT_MERGE_FACTOR));
+        try (output;
+                SegmentMerger.MergedSegments<K_I, V_I> merged = merger.merge(segments)) {
+            if (merged.getIntermediateFilesCount() > 0) {
+                LOGGER.info("Reducer {} merged {} map outputs in {} intermediate rounds.",
+                        reducerId, segments.size(), merged.getIntermediateFilesCount());
+            }
+            reduceSorted(merged, reducerId, output, job, LOGGER);
+        }
+    }
+
+    /**
+     * Сливает выходы мапперов прямо из потоков, например открытых в хранилище, без записи на диск.
+     * Все потоки открыты одновременно, поэтому их число должно быть невелико.
+     */
+    public static <K_I, V_I, K_O, V_O> void executeReduceStreamsTask(
+            List<InputStream> mappersOutputs,
+            int reducerId,
+            OutputStream output,
+            MapReduceJob<K_I, V_I, K_O, V_O> job,
+            Logger LOGGER)
+            throws IOException {
+        SegmentMerger<K_I, V_I> merger =
+                new SegmentMerger<>(
+                        KeyValueFormat.intermediate(job),
+                        job.getComparator(),
+                        job.getRawComparator(),
+                        null,
+                        ConfigurationOption.SORT_MERGE_FACTOR.getDefaultValue());
+        try (output;
+                SegmentMerger.MergedSegments<K_I, V_I> merged = merger.mergeStreams(mappersOutputs)) {
+            reduceSorted(merged, reducerId, output, job, LOGGER);
         }
+    }
+
+    /** Применяет редьюсер задачи к отсортированным записям и пишет {@link #outputFileName}. */
+    public static <K_I, V_I, K_O, V_O> void reduceSorted(
+            Iterator<Pair<K_I, V_I>> sortedRecords,
+            int reducerId,
+            Path outputDirectory,
+            MapReduceJob<K_I, V_I, K_O, V_O> job,
+            Logger LOGGER)
+            throws IOException {
+        reduceSorted(sortedRecords, reducerId, createOutputFile(outputDirectory, reducerId), job, LOGGER);
+    }
+
+    public static <K_I, V_I, K_O, V_O> void reduceSorted(
+            Iterator<Pair<K_I, V_I>> sortedRecords,
+            int reducerId,
+            OutputStream output,
+            MapReduceJob<K_I, V_I, K_O, V_O> job,
+            Logger LOGGER)
+            throws IOException {
         LOGGER.debug("Reducer {} started REDUCE function.", reducerId);
-        Files.deleteIfExists(outputDirectory.resolve("output-" + reducerId + ".txt"));
         try (FileSink<K_O, V_O> fileSink =
-                        new FileSink<>(
-                                job.getSerializerOutKey(),
-                                job.getSerializerOutValue(),
-                                Files.createFile(
-                                        outputDirectory.resolve("output-" + reducerId + ".txt")));
-                GroupedKeyValuesIterator<K_I, V_I> groupedIterator =
-                        new GroupedKeyValuesIterator<>(
-                                new MergedKeyValueIterator<>(fileIterators, job.getComparator()))) {
+                        new FileSink<>(job.getSerializerOutKey(), job.getSerializerOutValue(), output)) {
+            GroupedKeyValuesIterator<K_I, V_I> groupedIterator =
+                    new GroupedKeyValuesIterator<>(sortedRecords);
             while (groupedIterator.hasNext()) {
+                checkCancelled();
                 Pair<K_I, Iterator<V_I>> currentGroup = groupedIterator.next();
                 job.getReducer()
                         .reduce(
@@ -138,4 +253,22 @@ public class MapReduceTasksRunner {
             }
         }
     }
+
+    /** Имя выходного файла редьюсера; под тем же именем он выгружается в хранилище. */
+    public static String outputFileName(int reducerId) {
+        return "output-" + reducerId + ".txt";
+    }
+
+    private static OutputStream createOutputFile(Path outputDirectory, int reducerId) throws IOException {
+        Path outputFile = outputDirectory.resolve(outputFileName(reducerId));
+        Files.deleteIfExists(outputFile);
+        return Files.newOutputStream(Files.createFile(outputFile));
+    }
+
+    // Воркер прерывает поток попытки, проигравшей спекулятивной копии задачи
+    private static void checkCancelled() {
+        if (Thread.currentThread().isInterrupted()) {
+            throw new CancellationException("Task attempt has been cancelled.");
+        }
+    }
 }
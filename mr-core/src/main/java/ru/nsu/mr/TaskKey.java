@@ -0,0 +1,4 @@
+package ru.nsu.mr;
+
+/** Идентификатор задачи уникален только внутри задания, поэтому задачи различаются этой парой. */
+record TaskKey(int jobId, int taskId) {}
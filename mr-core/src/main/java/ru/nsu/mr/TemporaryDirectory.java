@@ -1,21 +1,87 @@
 package ru.nsu.mr;
 
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import ru.nsu.mr.config.ConfigurationOption;
 import ru.nsu.mr.storages.StorageProvider;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.nio.file.*;
 import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.stream.Stream;
 
+/**
+ * Временная директория задачи. Файлы скачиваются из хранилища и выгружаются в него параллельно, не
+ * больше {@code concurrency} передач одновременно. Неудавшаяся передача повторяется до
+ * {@code retries} раз с экспоненциальной задержкой; если какие-то файлы так и не удалось передать,
+ * бросается одно {@link TransferException} со всеми ошибками.
+ */
 public class TemporaryDirectory implements AutoCloseable {
+    private static final long RETRY_BASE_DELAY_MS = 200;
+    private static final long RETRY_MAX_DELAY_MS = 5000;
+
+    /** Одна передача файла; повторяется целиком, поэтому должна перезаписывать свой результат. */
+    @FunctionalInterface
+    interface Transfer<T> {
+        T run() throws Exception;
+    }
+
+    /** Не удалось передать часть файлов; ошибки по каждому из них доступны через getSuppressed(). */
+    public static class TransferException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        // Сериализуемость IOException здесь не нужна: исключение не покидает воркер
+        private final transient List<String> failedKeys;
+
+        TransferException(List<String> failedKeys, int totalCount) {
+            super("Failed to transfer " + failedKeys.size() + " of " + totalCount + " files: " + failedKeys);
+            this.failedKeys = List.copyOf(failedKeys);
+        }
+
+        public List<String> getFailedKeys() {
+            return failedKeys;
+        }
+    }
+
     private final Path tempDir;
     private final StorageProvider storageProvider;
+    private final int concurrency;
+    private final int retries;
+    private final Logger LOGGER;
 
     public TemporaryDirectory(StorageProvider storageProvider) throws IOException {
+        this(
+                storageProvider,
+                ConfigurationOption.TRANSFER_CONCURRENCY.getDefaultValue(),
+                ConfigurationOption.TRANSFER_RETRIES.getDefaultValue());
+    }
+
+    public TemporaryDirectory(StorageProvider storageProvider, int concurrency, int retries) throws IOException {
+        this(storageProvider, concurrency, retries, LogManager.getLogger());
+    }
+
+    /** Повторы передач и ошибки удаления пишутся в лог задачи {@code LOGGER}. */
+    public TemporaryDirectory(StorageProvider storageProvider, int concurrency, int retries, Logger LOGGER)
+            throws IOException {
+        if (concurrency < 1) {
+            throw new IllegalArgumentException("Transfer concurrency must be positive: " + concurrency);
+        }
+        if (retries < 0) {
+            throw new IllegalArgumentException("Transfer retries must not be negative: " + retries);
+        }
         this.tempDir = Files.createTempDirectory("tempDir");
         this.storageProvider = storageProvider;
+        this.concurrency = concurrency;
+        this.retries = retries;
+        this.LOGGER = LOGGER;
     }
 
     public Path getPath() {
@@ -27,32 +93,152 @@ public class TemporaryDirectory implements AutoCloseable {
         if (!Files.exists(destinationDir)) {
             Files.createDirectories(destinationDir);
         }
-        List<Path> localPaths = new ArrayList<>();
+        List<Transfer<Path>> transfers = new ArrayList<>();
         for (String key : keys) {
-            Path fileName = Paths.get(key).getFileName();
-            if (fileName == null) {
-                throw new IllegalArgumentException("Unable to extract file name from key: " + key);
-            }
-            Path destinationPath = destinationDir.resolve(fileName);
-            storageProvider.get(key, destinationPath);
-            localPaths.add(destinationPath);
+            Path destinationPath = destinationDir.resolve(fileNameOf(key));
+            transfers.add(() -> download(key, destinationPath));
+        }
+        return transferAll(keys, transfers);
+    }
+
+    /** Скачивает один файл за одну попытку; повторы остаются на вызывающем коде. */
+    Path download(String key, String destination) throws IOException {
+        Path destinationDir = tempDir.resolve(destination);
+        Files.createDirectories(destinationDir);
+        return download(key, destinationDir.resolve(fileNameOf(key)));
+    }
+
+    private Path download(String key, Path destinationPath) throws IOException {
+        // Некоторые клиенты отказываются перезаписывать файл, оставшийся от прошлой попытки
+        Files.deleteIfExists(destinationPath);
+        storageProvider.get(key, destinationPath);
+        return destinationPath;
+    }
+
+    private static Path fileNameOf(String key) {
+        Path fileName = Paths.get(key).getFileName();
+        if (fileName == null) {
+            throw new IllegalArgumentException("Unable to extract file name from key: " + key);
         }
-        return localPaths;
+        return fileName;
     }
 
     public void put(Path sourceDirectory, String keyPrefix) throws IOException {
+        List<Path> files;
         try (Stream<Path> stream = Files.walk(sourceDirectory)) {
-            stream.filter(Files::isRegularFile)
-                    .forEach(file -> {
-                        Path relativePath = sourceDirectory.relativize(file);
-                        String key = keyPrefix + "/" + relativePath.toString().replace(FileSystems.getDefault().getSeparator(), "/");
-                        try {
-                            storageProvider.put(file, key);
-                        } catch (IOException e) {
-                            throw new RuntimeException("Error uploading file: " + file, e);
-                        }
-                    });
+            files = stream.filter(Files::isRegularFile).toList();
+        }
+        List<String> keys = new ArrayList<>();
+        List<Transfer<Void>> transfers = new ArrayList<>();
+        for (Path file : files) {
+            Path relativePath = sourceDirectory.relativize(file);
+            String key = keyPrefix + "/" + relativePath.toString().replace(FileSystems.getDefault().getSeparator(), "/");
+            keys.add(key);
+            transfers.add(() -> {
+                storageProvider.put(file, key);
+                return null;
+            });
+        }
+        transferAll(keys, transfers);
+    }
+
+    /**
+     * Выполняет передачи параллельно и возвращает их результаты в исходном порядке. Каждая
+     * передача повторяется при ошибке; если после всех попыток хоть одна не удалась, бросается
+     * {@link TransferException}. При прерывании оставшиеся передачи отменяются.
+     */
+    <T> List<T> transferAll(List<String> keys, List<Transfer<T>> transfers) throws IOException {
+        if (transfers.size() <= 1 || concurrency == 1) {
+            List<T> results = new ArrayList<>();
+            List<String> failedKeys = new ArrayList<>();
+            List<Exception> failures = new ArrayList<>();
+            for (int i = 0; i < transfers.size(); i++) {
+                try {
+                    results.add(runWithRetries(keys.get(i), transfers.get(i)));
+                } catch (InterruptedIOException e) {
+                    throw e;
+                } catch (Exception e) {
+                    failedKeys.add(keys.get(i));
+                    failures.add(e);
+                }
+            }
+            throwIfFailed(failedKeys, failures, transfers.size());
+            return results;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(
+                Math.min(concurrency, transfers.size()),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "transfer");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        try {
+            List<Future<T>> futures = new ArrayList<>();
+            for (int i = 0; i < transfers.size(); i++) {
+                String key = keys.get(i);
+                Transfer<T> transfer = transfers.get(i);
+                futures.add(executor.submit(() -> runWithRetries(key, transfer)));
+            }
+            List<T> results = new ArrayList<>();
+            List<String> failedKeys = new ArrayList<>();
+            List<Exception> failures = new ArrayList<>();
+            for (int i = 0; i < futures.size(); i++) {
+                try {
+                    results.add(futures.get(i).get());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while transferring files");
+                } catch (ExecutionException e) {
+                    failedKeys.add(keys.get(i));
+                    failures.add(e.getCause() instanceof Exception cause ? cause : e);
+                }
+            }
+            throwIfFailed(failedKeys, failures, transfers.size());
+            return results;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private <T> T runWithRetries(String key, Transfer<T> transfer) throws Exception {
+        for (int attempt = 0; ; attempt++) {
+            try {
+                return transfer.run();
+            } catch (InterruptedIOException e) {
+                throw e;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while transferring " + key);
+            } catch (Exception e) {
+                if (attempt >= retries) {
+                    throw e;
+                }
+                // Случайная задержка не даёт всем передачам повторять запросы одновременно
+                long maxDelay = Math.min(RETRY_BASE_DELAY_MS << attempt, RETRY_MAX_DELAY_MS);
+                long delay = maxDelay / 2 + ThreadLocalRandom.current().nextLong(maxDelay / 2 + 1);
+                LOGGER.warn("Transfer of {} failed (attempt {}), retrying in {} ms: {}",
+                        key, attempt + 1, delay, e.getMessage());
+                try {
+                    Thread.sleep(delay);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while waiting to retry transfer of " + key);
+                }
+            }
+        }
+    }
+
+    private static void throwIfFailed(List<String> failedKeys, List<Exception> failures, int totalCount)
+            throws TransferException {
+        if (failedKeys.isEmpty()) {
+            return;
+        }
+        TransferException exception = new TransferException(failedKeys, totalCount);
+        for (Exception failure : failures) {
+            exception.addSuppressed(failure);
         }
+        throw exception;
     }
 
     @Override
@@ -64,7 +250,7 @@ public class TemporaryDirectory implements AutoCloseable {
                             try {
                                 Files.deleteIfExists(path);
                             } catch (IOException e) {
-                                System.err.println("Failed to delete " + path + ": " + e.getMessage());
+                                LOGGER.warn("Failed to delete {}: {}", path, e.getMessage());
                             }
                         });
             }
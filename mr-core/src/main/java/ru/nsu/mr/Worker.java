@@ -15,51 +15,64 @@ import org.apache.logging.log4j.core.layout.PatternLayout;
 import ru.nsu.mr.config.Configuration;
 import ru.nsu.mr.config.ConfigurationOption;
 import ru.nsu.mr.endpoints.dto.*;
+import ru.nsu.mr.endpoints.HttpServerSettings;
 import ru.nsu.mr.endpoints.WorkerEndpoint;
 import ru.nsu.mr.gateway.CoordinatorGateway;
+import ru.nsu.mr.gateway.WorkerGateway;
+import ru.nsu.mr.sources.KeyValueFileIterator;
+import ru.nsu.mr.storages.CachingStorageProvider;
+import ru.nsu.mr.storages.ObjectCache;
 import ru.nsu.mr.storages.StorageProvider;
+import ru.nsu.mr.storages.StorageOutputStream;
 import ru.nsu.mr.storages.StorageProviderFactory;
+import ru.nsu.mr.storages.StorageSplit;
 import ru.nsu.mr.endpoints.WorkerEndpoint.TaskService;
 
+import java.io.BufferedInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.*;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 public class Worker {
     private static final class Task {
         private enum TaskStatus {
             RUNNING,
             SUCCEED,
-            FAILED;
-
-            private Exception exception;
-
-            private void setException(Exception e) {
-                this.exception = e;
-            }
-
-            @Override
-            public String toString() {
-                return super.toString() + (exception != null ? ": " + exception : "");
-            }
+            FAILED,
+            // Попытка снята координатором: результат уже выгрузила другая попытка этой задачи
+            KILLED
         }
 
         private final int jobId;
         private final MapReduceJob<?, ?, ?, ?> job;
         private final Configuration jobConfiguration;
+        // Аренда классов задания из jar; null, если задание передано через setJob
+        private final JobClassCache.Lease jobLease;
         private final TaskInformation taskInformation;
         private TaskStatus status;
+        private Exception exception;
+        private Future<?> future;
+        private volatile boolean killed;
 
         private Task(int jobId,
                      MapReduceJob<?, ?, ?, ?> job,
                      Configuration jobConfiguration,
+                     JobClassCache.Lease jobLease,
                      TaskInformation taskInformation) {
             this.jobId = jobId;
             this.job = job;
             this.jobConfiguration = jobConfiguration;
+            this.jobLease = jobLease;
             this.taskInformation = taskInformation;
             this.status = TaskStatus.RUNNING;
         }
@@ -68,35 +81,82 @@ public class Worker {
             this.status = newStatus;
         }
 
+        // Исключение храним в задаче, а не в константе enum: задачи выполняются параллельно.
+        private synchronized void setFailed(Exception e) {
+            this.status = TaskStatus.FAILED;
+            this.exception = e;
+        }
+
+        private synchronized String statusString() {
+            return status.toString() + (exception != null ? ": " + exception : "");
+        }
+
         private synchronized TaskStatusInfo toTaskStatusInfo() {
             int taskId = taskInformation.taskId();
             TaskType type = taskInformation.taskType();
-            return new TaskStatusInfo(jobId, taskId, type, status.toString());
+            return new TaskStatusInfo(jobId, taskId, type, statusString());
         }
 
         private synchronized TaskDetails toTaskDetails() {
-            return new TaskDetails(jobId, taskInformation, status.toString());
+            return new TaskDetails(jobId, taskInformation, statusString());
         }
     }
 
+    // Задание, переданное через setJob; если его нет, классы задания загружаются из jar
     private volatile MapReduceJob<?, ?, ?, ?> pendingJob = null;
     private volatile Configuration pendingJobConfig = null;
+    private final JobClassCache jobClasses;
     private final CoordinatorGateway coordinatorV2Gateway;
     private final WorkerEndpoint workerEndpoint;
     private final String workerBaseUrl;
-    private volatile Task currentTask = null;
-    private final Map<Integer, Task> previousTasks = new HashMap<>();
+    private final int slots;
+    private final ExecutorService taskExecutor;
+    private final Map<TaskKey, Task> runningTasks = new HashMap<>();
+    private final Map<TaskKey, Task> previousTasks = new HashMap<>();
+    // Выходы мапперов, которые воркер раздаёт редьюсерам через /shuffle
+    private final Path shuffleDirectory;
+    private final Map<String, WorkerGateway> shuffleGateways = new ConcurrentHashMap<>();
+    // Скачанные целиком объекты (jar задания, выходы мапперов из хранилища); null, если кэш выключен
+    private final ObjectCache objectCache;
+    private static final long MAP_OUTPUTS_POLL_PERIOD_MS = 1000;
     private static Logger LOGGER = null;
     private static LoggerContext loggerContext;
     private static final Object logLock = new Object();
     private static boolean loggingConfigured = false;
 
     public Worker(String coordinatorBaseUrl, String workerBaseUrl, String logsPath) throws IOException {
+        this(coordinatorBaseUrl, workerBaseUrl, logsPath, 1);
+    }
+
+    public Worker(String coordinatorBaseUrl, String workerBaseUrl, String logsPath, int slots) throws IOException {
+        this(coordinatorBaseUrl, workerBaseUrl, logsPath, slots, HttpServerSettings.defaults());
+    }
+
+    public Worker(String coordinatorBaseUrl, String workerBaseUrl, String logsPath, int slots,
+                  HttpServerSettings httpSettings) throws IOException {
+        this(coordinatorBaseUrl, workerBaseUrl, logsPath, slots, httpSettings, ObjectCache.DEFAULT_CAPACITY_BYTES);
+    }
+
+    /** {@code cacheBytes} ограничивает кэш скачанных объектов; 0 выключает кэш. */
+    public Worker(String coordinatorBaseUrl, String workerBaseUrl, String logsPath, int slots,
+                  HttpServerSettings httpSettings, long cacheBytes) throws IOException {
+        if (slots < 1) {
+            throw new IllegalArgumentException("Worker must have at least one task slot.");
+        }
         this.workerBaseUrl = workerBaseUrl;
+        this.slots = slots;
+        // Число задач ограничивает createTaskInternal: сверх числа слотов задачи не принимаются.
+        // Очередь пула нужна лишь на момент, пока поток завершённой задачи уведомляет координатора.
+        this.taskExecutor = Executors.newFixedThreadPool(slots);
         this.coordinatorV2Gateway = !Objects.equals(coordinatorBaseUrl, "") ?
                 new CoordinatorGateway(coordinatorBaseUrl) : null;
         TaskService taskService = new InMemoryTaskService();
-        this.workerEndpoint = new WorkerEndpoint(workerBaseUrl, taskService);
+        this.shuffleDirectory = Files.createTempDirectory("shuffle");
+        this.jobClasses = new JobClassCache(Files.createTempDirectory("jobs"));
+        this.objectCache = cacheBytes > 0
+                ? new ObjectCache(Files.createTempDirectory("object-cache"), cacheBytes)
+                : null;
+        this.workerEndpoint = new WorkerEndpoint(workerBaseUrl, taskService, shuffleDirectory, httpSettings);
         workerEndpoint.startServer();
         try {
             configureLogging(logsPath);
@@ -111,56 +171,142 @@ public class Worker {
 
     public void start() {
         registerWorkerWithCoordinator();
-        while (!Thread.currentThread().isInterrupted()) {
-            try {
-                waitForTask();
-                executeCurrentTask();
-                TaskDetails details = currentTask.toTaskDetails();
-                moveCurrentTaskToHistory();
-                notifyTaskCompletion(details);
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
+        try {
+            synchronized (this) {
+                while (!Thread.currentThread().isInterrupted()) {
+                    wait();
+                }
             }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         }
+        taskExecutor.shutdownNow();
         workerEndpoint.stopServer();
+        try {
+            deleteDirectory(shuffleDirectory);
+        } catch (IOException e) {
+            LOGGER.warn("Failed to delete shuffle directory {}.", shuffleDirectory, e);
+        }
+        try {
+            jobClasses.close();
+        } catch (IOException e) {
+            LOGGER.warn("Failed to delete job classes directory.", e);
+        }
+        if (objectCache != null) {
+            try {
+                objectCache.close();
+            } catch (IOException e) {
+                LOGGER.warn("Failed to delete object cache directory.", e);
+            }
+        }
     }
 
-    synchronized public TaskDetails createTaskInternal(NewTaskDetails details) {
+    public TaskDetails createTaskInternal(NewTaskDetails details) {
         LOGGER.info("Creating task with ID: {}.", details.taskInformation().taskId());
-        if (currentTask != null) {
-            LOGGER.warn("Worker is busy. Cannot create task with ID: {}.", details.taskInformation().taskId());
-            throw new IllegalStateException("The worker is currently busy with another task.");
+        TaskKey key = new TaskKey(details.jobInformation().jobId(), details.taskInformation().taskId());
+        MapReduceJob<?, ?, ?, ?> job;
+        Configuration jobConfig;
+        synchronized (this) {
+            checkTaskCanStart(key);
+            job = pendingJob;
+            jobConfig = pendingJobConfig;
         }
-        if (pendingJob == null || pendingJobConfig == null) {
+        JobClassCache.Lease jobLease = null;
+        if (job == null || jobConfig == null) {
             JobInformation jobInfo = details.jobInformation();
-            try (StorageProvider jobStorage = StorageProviderFactory.getStorageProvider(jobInfo.storageConnectionString())) {
-                try (TemporaryDirectory tempDir = new TemporaryDirectory(jobStorage)) {
-                    Path jarFile = tempDir.get(List.of(jobInfo.userJobPath()), "jar").getFirst();
-                    JarFileParser jarParser = new JarFileParser(jarFile);
-                    pendingJob = jarParser.loadUsersSubClass(MapReduceJob.class);
-                    jarParser.close();
-                }
+            try {
+                // jar скачивается и разбирается только для первой задачи задания на этом воркере;
+                // монитор воркера при этом не занят, и задачи других заданий создаются без ожидания
+                jobLease = jobClasses.acquire(
+                        jobInfo.jobId(),
+                        jobInfo.storageConnectionString() + "|" + jobInfo.userJobPath(),
+                        destination -> {
+                            try (StorageProvider jobStorage = openStorage(jobInfo.storageConnectionString())) {
+                                jobStorage.get(jobInfo.userJobPath(), destination);
+                            }
+                        });
             } catch (Exception e) {
                 throw new RuntimeException("Failed to load job from jar", e);
             }
-            Configuration newConfig = new Configuration();
-            newConfig.set(ConfigurationOption.MAPPERS_COUNT, jobInfo.mappersCount());
-            newConfig.set(ConfigurationOption.REDUCERS_COUNT, jobInfo.reducersCount());
-            newConfig.set(ConfigurationOption.SORTER_IN_MEMORY_RECORDS, jobInfo.sorterInMemoryRecords());
-            pendingJobConfig = newConfig;
+            job = jobLease.job();
+            jobConfig = createJobConfiguration(jobInfo);
+        }
+        synchronized (this) {
+            try {
+                // Пока загружался jar, слоты могли занять другие задачи
+                checkTaskCanStart(key);
+            } catch (IllegalStateException e) {
+                if (jobLease != null) {
+                    jobClasses.release(jobLease);
+                }
+                throw e;
+            }
+            Task task = new Task(key.jobId(), job, jobConfig, jobLease, details.taskInformation());
+            runningTasks.put(key, task);
+            task.future = taskExecutor.submit(() -> runTask(task));
+            LOGGER.debug("Worker {} created task with id: {} and type: {} ({}/{} slots busy).", workerBaseUrl,
+                    details.taskInformation().taskId(), details.taskInformation().taskType(), runningTasks.size(), slots);
+            return task.toTaskDetails();
+        }
+    }
+
+    private void checkTaskCanStart(TaskKey key) {
+        if (runningTasks.size() >= slots) {
+            LOGGER.warn("All {} slots are busy. Cannot create task with ID: {}.", slots, key.taskId());
+            throw new IllegalStateException("All task slots of the worker are busy.");
+        }
+        if (runningTasks.containsKey(key)) {
+            // Снятая попытка этой задачи ещё не успела остановиться
+            throw new IllegalStateException("Previous attempt of the task is still running.");
+        }
+    }
+
+    private static Configuration createJobConfiguration(JobInformation jobInfo) {
+        Configuration newConfig = new Configuration();
+        newConfig.set(ConfigurationOption.MAPPERS_COUNT, jobInfo.mappersCount());
+        newConfig.set(ConfigurationOption.REDUCERS_COUNT, jobInfo.reducersCount());
+        newConfig.set(ConfigurationOption.MAP_OUTPUTS_UPLOAD, jobInfo.uploadMapOutputs());
+        newConfig.set(ConfigurationOption.SORTER_IN_MEMORY_RECORDS, jobInfo.sorterInMemoryRecords());
+        newConfig.set(ConfigurationOption.SORTER_IN_MEMORY_BYTES, jobInfo.sorterInMemoryBytes());
+        newConfig.set(ConfigurationOption.SORT_MERGE_FACTOR, jobInfo.sortMergeFactor());
+        newConfig.set(ConfigurationOption.TRANSFER_CONCURRENCY, jobInfo.transferConcurrency());
+        newConfig.set(ConfigurationOption.TRANSFER_RETRIES, jobInfo.transferRetries());
+        return newConfig;
+    }
+
+    public void finishJobInternal(int jobId) {
+        LOGGER.info("Job {} finished, releasing its classes.", jobId);
+        synchronized (this) {
+            // Задачи из истории держат экземпляр задания, а через него и загрузчик его классов
+            previousTasks.keySet().removeIf(key -> key.jobId() == jobId);
+        }
+        jobClasses.evict(jobId);
+        // Редьюсерам завершённого задания выходы мапперов больше не нужны
+        Path jobShuffleDirectory = shuffleDirectory.resolve(String.valueOf(jobId));
+        try {
+            deleteDirectory(jobShuffleDirectory);
+        } catch (IOException e) {
+            LOGGER.warn("Failed to delete shuffle directory {}.", jobShuffleDirectory, e);
+        }
+    }
+
+    synchronized public boolean cancelTaskInternal(int jobId, int taskId, int attemptId) {
+        Task task = runningTasks.get(new TaskKey(jobId, taskId));
+        if (task == null || task.taskInformation.attemptId() != attemptId) {
+            return false;
         }
-        currentTask = new Task(details.jobInformation().jobId(), pendingJob, pendingJobConfig, details.taskInformation());
-        LOGGER.debug("Worker {} created task with id: {} and type: {}.", workerBaseUrl,
-                details.taskInformation().taskId(), details.taskInformation().taskType());
-        notify();
-        return currentTask.toTaskDetails();
+        LOGGER.info("Cancelling attempt {} of task {} of job {}.", attemptId, taskId, jobId);
+        task.killed = true;
+        task.future.cancel(true);
+        return true;
     }
 
-    synchronized public TaskDetails getTaskDetailsInternal(int taskId) {
-        if (currentTask != null && currentTask.taskInformation.taskId() == taskId) {
-            return currentTask.toTaskDetails();
+    synchronized public TaskDetails getTaskDetailsInternal(int jobId, int taskId) {
+        TaskKey key = new TaskKey(jobId, taskId);
+        Task task = runningTasks.get(key);
+        if (task == null) {
+            task = previousTasks.get(key);
         }
-        Task task = previousTasks.get(taskId);
         return task != null ? task.toTaskDetails() : null;
     }
 
@@ -168,12 +314,16 @@ public class Worker {
         List<TaskStatusInfo> result = previousTasks.values().stream()
                 .map(Task::toTaskStatusInfo)
                 .collect(Collectors.toList());
-        if (currentTask != null) {
-            result.add(currentTask.toTaskStatusInfo());
-        }
+        runningTasks.values().stream()
+                .map(Task::toTaskStatusInfo)
+                .forEach(result::add);
         return result;
     }
 
+    public int getSlots() {
+        return slots;
+    }
+
     private void configureLogging(String logDestination) throws IOException, URISyntaxException {
         synchronized (logLock) {
             boolean logToEs = logDestination.startsWith("http://") || logDestination.startsWith("https://");
@@ -265,7 +415,7 @@ public class Worker {
         int attempts = 5;
         for (int i = 1; i <= attempts; i++) {
             try {
-                coordinatorV2Gateway.registerWorker(workerBaseUrl);
+                coordinatorV2Gateway.registerWorker(new WorkerRegistration(workerBaseUrl, slots));
                 LOGGER.info("Worker {} successfully registered with coordinator.", workerBaseUrl);
                 return;
             } catch (Exception e) {
@@ -283,45 +433,255 @@ public class Worker {
         throw new RuntimeException();
     }
 
-    private synchronized void waitForTask() throws InterruptedException {
-        while (currentTask == null) {
-            wait();
-        }
+    private void runTask(Task task) {
+        executeTask(task);
+        // Сбрасываем прерывание снятой попытки, иначе не отправится уведомление координатору
+        Thread.interrupted();
+        TaskDetails details = task.toTaskDetails();
+        moveTaskToHistory(task);
+        notifyTaskCompletion(details);
     }
 
-    private void executeCurrentTask() {
-        try (StorageProvider storageProvider = StorageProviderFactory.getStorageProvider(
-                currentTask.taskInformation.storageConnectionString())) {
-            try (TemporaryDirectory tempDir = new TemporaryDirectory(storageProvider)) {
-                List<Path> localInputFiles = tempDir.get(currentTask.taskInformation.inputFiles(), "input");
+    private void executeTask(Task task) {
+        try (StorageProvider storageProvider = openStorage(task.taskInformation.storageConnectionString())) {
+            StorageOutputStream reduceOutput = null;
+            try (TemporaryDirectory tempDir = new TemporaryDirectory(
+                    storageProvider,
+                    task.jobConfiguration.get(ConfigurationOption.TRANSFER_CONCURRENCY),
+                    task.jobConfiguration.get(ConfigurationOption.TRANSFER_RETRIES),
+                    LOGGER)) {
                 Path outputDir = tempDir.getPath().resolve("output");
                 Files.createDirectories(outputDir);
-                if (currentTask.taskInformation.taskType().equals(TaskType.MAP)) {
-                    MapReduceTasksRunner.executeMapperTask(
-                            localInputFiles,
-                            currentTask.taskInformation.taskId(),
-                            outputDir,
-                            currentTask.jobConfiguration,
-                            currentTask.job,
-                            LOGGER);
-                } else if (currentTask.taskInformation.taskType().equals(TaskType.REDUCE)) {
-                    MapReduceTasksRunner.executeReduceTask(
-                            localInputFiles,
-                            currentTask.taskInformation.taskId() - currentTask.jobConfiguration.get(ConfigurationOption.MAPPERS_COUNT),
+                if (task.taskInformation.taskType().equals(TaskType.MAP)) {
+                    // Маппер читает свои диапазоны прямо из хранилища, не дожидаясь скачивания
+                    List<StorageSplit> splits = new ArrayList<>();
+                    for (InputSplit split : task.taskInformation.inputSplits()) {
+                        splits.add(new StorageSplit(
+                                storageProvider, split.file(), split.offset(), split.length(), split.fileSize()));
+                    }
+                    MapReduceTasksRunner.executeMapperSplitsTask(
+                            splits,
+                            task.taskInformation.taskId(),
                             outputDir,
-                            currentTask.jobConfiguration,
-                            currentTask.job,
+                            task.jobConfiguration,
+                            task.job,
                             LOGGER);
+                } else if (task.taskInformation.taskType().equals(TaskType.REDUCE)) {
+                    int reducerId = task.taskInformation.taskId() - task.jobConfiguration.get(ConfigurationOption.MAPPERS_COUNT);
+                    if (canStreamMapOutputs(task)) {
+                        List<InputStream> mapOutputs = openMapOutputs(storageProvider, task.taskInformation.inputFiles());
+                        reduceOutput = openReduceOutput(task, storageProvider, reducerId);
+                        MapReduceTasksRunner.executeReduceStreamsTask(mapOutputs, reducerId, reduceOutput, task.job, LOGGER);
+                    } else {
+                        List<Path> localInputFiles = fetchMapOutputs(task, tempDir);
+                        // Выход загружается в хранилище по мере записи, а не после завершения задачи
+                        reduceOutput = openReduceOutput(task, storageProvider, reducerId);
+                        MapReduceTasksRunner.executeReduceTask(
+                                localInputFiles,
+                                reducerId,
+                                reduceOutput,
+                                task.jobConfiguration,
+                                task.job,
+                                LOGGER);
+                    }
+                }
+                if (!requestCommit(task)) {
+                    LOGGER.info("Attempt {} of task {} lost to another attempt, dropping its output.",
+                            task.taskInformation.attemptId(), task.taskInformation.taskId());
+                    task.setStatus(Task.TaskStatus.KILLED);
+                    return;
+                }
+                if (reduceOutput != null) {
+                    reduceOutput.commit();
+                }
+                boolean isMap = task.taskInformation.taskType().equals(TaskType.MAP);
+                // Без координатора редьюсеры читают выходы мапперов только из хранилища
+                if (!isMap || coordinatorV2Gateway == null
+                        || task.jobConfiguration.get(ConfigurationOption.MAP_OUTPUTS_UPLOAD)) {
+                    tempDir.put(outputDir, task.taskInformation.targetDir());
+                }
+                if (isMap) {
+                    keepForShuffle(task.jobId, outputDir);
                 }
-                tempDir.put(outputDir, currentTask.taskInformation.targetDir());
                 LOGGER.info("Worker {} finished executing task: {}.",
-                        workerBaseUrl, currentTask.taskInformation.taskId());
-                currentTask.setStatus(Task.TaskStatus.SUCCEED);
+                        workerBaseUrl, task.taskInformation.taskId());
+                logCacheStatistics();
+                task.setStatus(Task.TaskStatus.SUCCEED);
+            } finally {
+                // Незавершённая загрузка упавшей или проигравшей попытки не должна стать объектом
+                abortUpload(reduceOutput);
             }
         } catch (Exception e) {
-            LOGGER.error("Task ID: {} failed with exception.", currentTask.taskInformation.taskId(), e);
-            currentTask.setStatus(Task.TaskStatus.FAILED);
-            currentTask.status.setException(e);
+            if (task.killed) {
+                LOGGER.info("Attempt {} of task {} has been cancelled.",
+                        task.taskInformation.attemptId(), task.taskInformation.taskId());
+                task.setStatus(Task.TaskStatus.KILLED);
+                return;
+            }
+            LOGGER.error("Task ID: {} failed with exception.", task.taskInformation.taskId(), e);
+            task.setFailed(e);
+        }
+    }
+
+    private StorageProvider openStorage(String connectionString) {
+        StorageProvider storage = StorageProviderFactory.getStorageProvider(connectionString);
+        return objectCache != null ? new CachingStorageProvider(storage, connectionString, objectCache) : storage;
+    }
+
+    private void logCacheStatistics() {
+        if (objectCache != null) {
+            LOGGER.info("Object cache: {} hits, {} misses, {} evictions, {} entries, {} bytes.",
+                    objectCache.getHits(), objectCache.getMisses(), objectCache.getEvictions(),
+                    objectCache.getEntriesCount(), objectCache.getSizeBytes());
+        }
+    }
+
+    private StorageOutputStream openReduceOutput(Task task, StorageProvider storageProvider, int reducerId)
+            throws IOException {
+        return storageProvider.openOutputStream(
+                task.taskInformation.targetDir() + "/" + MapReduceTasksRunner.outputFileName(reducerId));
+    }
+
+    private static void abortUpload(StorageOutputStream upload) {
+        if (upload == null) {
+            return;
+        }
+        try {
+            upload.abort();
+        } catch (IOException | RuntimeException e) {
+            LOGGER.warn("Failed to abort upload of the task output: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Спрашивает координатора, можно ли выгрузить результат попытки. Разрешение получает только
+     * одна попытка задачи, поэтому спекулятивные копии не перезаписывают выходы друг друга.
+     */
+    private boolean requestCommit(Task task) throws IOException, InterruptedException {
+        if (coordinatorV2Gateway == null) {
+            return true;
+        }
+        return coordinatorV2Gateway.requestCommit(task.toTaskDetails());
+    }
+
+    /**
+     * Без координатора выходы всех мапперов уже лежат в хранилище, и если их немного, редьюсер
+     * читает их потоками. Иначе они скачиваются: с координатором — по мере завершения мапперов,
+     * пока идёт map-фаза, а большое число файлов сливается в несколько раундов с диска.
+     */
+    private boolean canStreamMapOutputs(Task task) {
+        return coordinatorV2Gateway == null
+                && task.taskInformation.inputFiles().size()
+                        <= task.jobConfiguration.get(ConfigurationOption.TRANSFER_CONCURRENCY);
+    }
+
+    private static List<InputStream> openMapOutputs(StorageProvider storageProvider, List<String> keys)
+            throws IOException {
+        List<InputStream> streams = new ArrayList<>();
+        try {
+            for (String key : keys) {
+                streams.add(KeyValueFileIterator.openInputStream(
+                        new BufferedInputStream(storageProvider.openInputStream(key)), key));
+            }
+            return streams;
+        } catch (IOException | RuntimeException e) {
+            for (InputStream stream : streams) {
+                stream.close();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Скачивает выходы мапперов по мере их завершения: reduce-задача может быть запущена до конца
+     * map-фазы (см. {@link ConfigurationOption#REDUCE_SLOW_START}).
+     */
+    private List<Path> fetchMapOutputs(Task task, TemporaryDirectory tempDir)
+            throws IOException, InterruptedException {
+        List<String> inputFiles = task.taskInformation.inputFiles();
+        if (coordinatorV2Gateway == null) {
+            return tempDir.get(inputFiles, "input");
+        }
+        Path[] localInputFiles = new Path[inputFiles.size()];
+        int fetchedCount = 0;
+        while (true) {
+            FinishedMappersInfo info = coordinatorV2Gateway.getFinishedMappers(task.jobId);
+            if (info.aborted()) {
+                throw new IllegalStateException("Job has been aborted.");
+            }
+            // Выходы, появившиеся с прошлого опроса, скачиваются параллельно
+            List<Integer> newMapperIds = new ArrayList<>();
+            List<String> newKeys = new ArrayList<>();
+            List<TemporaryDirectory.Transfer<Path>> transfers = new ArrayList<>();
+            for (MapOutputLocation location : info.finishedMappers()) {
+                int mapperId = location.mapperId();
+                if (mapperId < localInputFiles.length && localInputFiles[mapperId] == null
+                        && !newMapperIds.contains(mapperId)) {
+                    String key = inputFiles.get(mapperId);
+                    newMapperIds.add(mapperId);
+                    newKeys.add(key);
+                    transfers.add(() -> fetchMapOutput(task, tempDir, location, key));
+                }
+            }
+            List<Path> fetched = tempDir.transferAll(newKeys, transfers);
+            for (int i = 0; i < fetched.size(); i++) {
+                localInputFiles[newMapperIds.get(i)] = fetched.get(i);
+                if (fetched.get(i) != null) {
+                    fetchedCount++;
+                }
+            }
+            LOGGER.debug("Task {} fetched {}/{} map outputs.",
+                    task.taskInformation.taskId(), fetchedCount, localInputFiles.length);
+            if (fetchedCount == localInputFiles.length) {
+                return Arrays.asList(localInputFiles);
+            }
+            Thread.sleep(MAP_OUTPUTS_POLL_PERIOD_MS);
+        }
+    }
+
+    /**
+     * Скачивает выход маппера с воркера, который его посчитал. Если это не удалось, читает копию
+     * из хранилища, а когда выходы туда не загружаются, возвращает null: выход запрашивается снова
+     * при следующем опросе координатора, который перезапустит маппер, если его воркер умер.
+     */
+    private Path fetchMapOutput(Task task, TemporaryDirectory tempDir, MapOutputLocation location, String key)
+            throws IOException, InterruptedException {
+        if (location.workerBaseUrl() != null) {
+            String fileName = Path.of(key).getFileName().toString();
+            Path destination = tempDir.getPath().resolve("input").resolve(fileName);
+            Files.createDirectories(destination.getParent());
+            try {
+                shuffleGateways.computeIfAbsent(location.workerBaseUrl(), WorkerGateway::new)
+                        .downloadMapOutput(task.jobId, fileName, destination);
+                return destination;
+            } catch (IOException e) {
+                LOGGER.warn("Failed to fetch {} from worker {}: {}",
+                        fileName, location.workerBaseUrl(), e.getMessage());
+            }
+        }
+        if (!task.jobConfiguration.get(ConfigurationOption.MAP_OUTPUTS_UPLOAD)) {
+            return null;
+        }
+        return tempDir.download(key, "input");
+    }
+
+    private void keepForShuffle(int jobId, Path outputDir) throws IOException {
+        Path jobShuffleDirectory = shuffleDirectory.resolve(String.valueOf(jobId));
+        Files.createDirectories(jobShuffleDirectory);
+        try (Stream<Path> files = Files.list(outputDir)) {
+            for (Path file : files.toList()) {
+                Files.move(file, jobShuffleDirectory.resolve(file.getFileName()), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+    }
+
+    private static void deleteDirectory(Path path) throws IOException {
+        if (Files.exists(path)) {
+            try (Stream<Path> paths = Files.walk(path)) {
+                for (Path p : paths.sorted(Comparator.reverseOrder()).toList()) {
+                    Files.delete(p);
+                }
+            }
         }
     }
 
@@ -337,17 +697,20 @@ public class Worker {
         }
     }
 
-    private synchronized void moveCurrentTaskToHistory() {
-        int taskId = currentTask.taskInformation.taskId();
-        LOGGER.info("Moving task ID: {} to history.", taskId);
-        previousTasks.put(taskId, currentTask);
-        currentTask = null;
+    private synchronized void moveTaskToHistory(Task task) {
+        TaskKey key = new TaskKey(task.jobId, task.taskInformation.taskId());
+        LOGGER.info("Moving task ID: {} of job {} to history.", key.taskId(), key.jobId());
+        runningTasks.remove(key);
+        previousTasks.put(key, task);
+        if (task.jobLease != null) {
+            jobClasses.release(task.jobLease);
+        }
     }
 
     private class InMemoryTaskService implements TaskService {
         @Override
-        public TaskDetails getTaskDetails(int taskId) {
-            return getTaskDetailsInternal(taskId);
+        public TaskDetails getTaskDetails(int jobId, int taskId) {
+            return getTaskDetailsInternal(jobId, taskId);
         }
 
         @Override
@@ -359,5 +722,15 @@ public class Worker {
         public TaskDetails createTask(NewTaskDetails details) {
             return createTaskInternal(details);
         }
+
+        @Override
+        public boolean cancelTask(int jobId, int taskId, int attemptId) {
+            return cancelTaskInternal(jobId, taskId, attemptId);
+        }
+
+        @Override
+        public void finishJob(int jobId) {
+            finishJobInternal(jobId);
+        }
     }
 }
@@ -0,0 +1,128 @@
+package ru.nsu.mr;
+
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Predicate;
+
+/**
+ * Свободные слоты воркеров координатора. Воркеры сгруппированы по числу свободных слотов, поэтому
+ * воркер с наибольшим их числом находится без прохода по всем воркерам, а общее число свободных
+ * слотов хранится готовым.
+ *
+ * <p>Воркер, до которого не удалось достучаться, можно временно исключить из раздачи
+ * ({@link #setAvailable}); его занятые слоты при этом продолжают учитываться.
+ *
+ * <p>Класс не потокобезопасен: координатор обращается к нему только из цикла событий.
+ */
+class WorkerSlots<W> {
+    private static final class Entry {
+        final int slots;
+        int free;
+        boolean available = true;
+
+        Entry(int slots) {
+            this.slots = slots;
+            this.free = slots;
+        }
+    }
+
+    private final Map<W, Entry> entries = new HashMap<>();
+    // Доступные воркеры со свободными слотами по числу свободных слотов
+    private final TreeMap<Integer, Set<W>> byFreeSlots = new TreeMap<>();
+    private int freeSlots = 0;
+
+    public void add(W worker, int slots) {
+        if (slots < 1) {
+            throw new IllegalArgumentException("Worker must have at least one slot: " + slots);
+        }
+        remove(worker);
+        Entry entry = new Entry(slots);
+        entries.put(worker, entry);
+        index(worker, entry);
+    }
+
+    public void remove(W worker) {
+        Entry entry = entries.remove(worker);
+        if (entry != null) {
+            unindex(worker, entry);
+        }
+    }
+
+    public boolean contains(W worker) {
+        return entries.containsKey(worker);
+    }
+
+    /** Число свободных слотов у доступных воркеров. */
+    public int freeSlots() {
+        return freeSlots;
+    }
+
+    public int freeSlots(W worker) {
+        Entry entry = entries.get(worker);
+        return entry == null ? 0 : entry.free;
+    }
+
+    /**
+     * Занимает слот у доступного воркера с наибольшим числом свободных слотов, которому подходит
+     * задача, и возвращает этот воркер; null, если такого воркера нет.
+     */
+    public W acquire(Predicate<W> suitable) {
+        for (Set<W> workers : byFreeSlots.descendingMap().values()) {
+            for (W worker : workers) {
+                if (suitable.test(worker)) {
+                    Entry entry = entries.get(worker);
+                    unindex(worker, entry);
+                    entry.free--;
+                    index(worker, entry);
+                    return worker;
+                }
+            }
+        }
+        return null;
+    }
+
+    /** Возвращает слот воркеру; слоты удалённого воркера не учитываются. */
+    public void release(W worker) {
+        Entry entry = entries.get(worker);
+        if (entry == null || entry.free == entry.slots) {
+            return;
+        }
+        unindex(worker, entry);
+        entry.free++;
+        index(worker, entry);
+    }
+
+    /** Возвращает true, если доступность воркера изменилась. */
+    public boolean setAvailable(W worker, boolean available) {
+        Entry entry = entries.get(worker);
+        if (entry == null || entry.available == available) {
+            return false;
+        }
+        unindex(worker, entry);
+        entry.available = available;
+        index(worker, entry);
+        return true;
+    }
+
+    private void index(W worker, Entry entry) {
+        if (!entry.available || entry.free == 0) {
+            return;
+        }
+        byFreeSlots.computeIfAbsent(entry.free, free -> new LinkedHashSet<>()).add(worker);
+        freeSlots += entry.free;
+    }
+
+    private void unindex(W worker, Entry entry) {
+        Set<W> workers = byFreeSlots.get(entry.free);
+        if (workers == null || !workers.remove(worker)) {
+            return;
+        }
+        if (workers.isEmpty()) {
+            byFreeSlots.remove(entry.free);
+        }
+        freeSlots -= entry.free;
+    }
+}
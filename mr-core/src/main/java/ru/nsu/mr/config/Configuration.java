@@ -13,7 +13,7 @@ public class Configuration {
 
     @SuppressWarnings("unchecked")
     public <T> T get(ConfigurationOption<T> option) {
-        if (values.containsKey(option.name)) {
+        if (values.get(option.name) != null) {
             return (T) values.get(option.name);
         }
         return option.defaultValue;
@@ -34,11 +34,71 @@ public class ConfigurationOption<T> {
     public static ConfigurationOption<Integer> REDUCERS_COUNT =
             new ConfigurationOption<>("mr.reducers.count", 1);
 
+    // Загружать ли выходы мапперов в хранилище данных. Без загрузки выход, потерянный вместе
+    // с воркером, пересчитывается заново
+    public static ConfigurationOption<Boolean> MAP_OUTPUTS_UPLOAD =
+            new ConfigurationOption<>("mr.map.outputs.upload", false);
+
     public static ConfigurationOption<Integer> SORTER_IN_MEMORY_RECORDS =
             new ConfigurationOption<>("mr.sorter.in.memory.records", 300000);
 
+    public static ConfigurationOption<Integer> SORTER_IN_MEMORY_BYTES =
+            new ConfigurationOption<>("mr.sorter.in.memory.bytes", 64 * 1024 * 1024);
+
+    // Сколько отсортированных файлов сливается за один проход; при большем числе файлов
+    // слияние идёт в несколько раундов
+    public static ConfigurationOption<Integer> SORT_MERGE_FACTOR =
+            new ConfigurationOption<>("mr.sort.merge.factor", 100);
+
+    // Сколько файлов задача одновременно скачивает из хранилища или выгружает в него
+    public static ConfigurationOption<Integer> TRANSFER_CONCURRENCY =
+            new ConfigurationOption<>("mr.transfer.concurrency", 8);
+
+    // Сколько раз повторяется неудавшаяся передача файла, прежде чем задача завершится с ошибкой
+    public static ConfigurationOption<Integer> TRANSFER_RETRIES =
+            new ConfigurationOption<>("mr.transfer.retries", 3);
+
+    // Сколько байтов выходов мапперов MapReduceInMemoryRunner держит в памяти, прежде чем
+    // перейти на запись через диск
+    public static ConfigurationOption<Integer> IN_MEMORY_MAX_BYTES =
+            new ConfigurationOption<>("mr.in.memory.max.bytes", 256 * 1024 * 1024);
+
+    // Доля завершённых map-задач, после которой начинают запускаться reduce-задачи
+    public static ConfigurationOption<Double> REDUCE_SLOW_START =
+            new ConfigurationOption<>("mr.reduce.slow.start", 0.8);
+
+    // Запускать ли резервную копию задачи, которая выполняется заметно дольше остальных
+    public static ConfigurationOption<Boolean> SPECULATIVE_EXECUTION =
+            new ConfigurationOption<>("mr.speculative.execution", true);
+
+    // Во сколько раз задача должна превысить медианное время своей фазы, чтобы считаться отстающей
+    public static ConfigurationOption<Double> SPECULATIVE_SLOWDOWN =
+            new ConfigurationOption<>("mr.speculative.slowdown", 2.0);
+
+    // Доля слотов кластера, которую задание получает при одновременном выполнении нескольких
+    // заданий, относительно других заданий
+    public static ConfigurationOption<Integer> JOB_WEIGHT =
+            new ConfigurationOption<>("mr.job.weight", 1);
+
+    // Приоритет задания: задания с большим приоритетом раньше запускаются и первыми получают
+    // свободные слоты
+    public static ConfigurationOption<Integer> JOB_PRIORITY =
+            new ConfigurationOption<>("mr.job.priority", 0);
+
+    // За сколько секунд ожидания приоритет задания вырастает на единицу
+    public static ConfigurationOption<Integer> JOB_PRIORITY_AGING_SECONDS =
+            new ConfigurationOption<>("mr.job.priority.aging.seconds", 5 * 60);
+
+    // За сколько секунд после отправки задание должно завершиться; null, если срок не задан
+    public static ConfigurationOption<Integer> JOB_DEADLINE_SECONDS =
+            new ConfigurationOption<>("mr.job.deadline.seconds", null);
+
     public ConfigurationOption(String name, T defaultValue) {
         this.name = name;
         this.defaultValue = defaultValue;
     }
+
+    public T getDefaultValue() {
+        return defaultValue;
+    }
 }
@@ -5,16 +5,19 @@ import com.sun.net.httpserver.HttpHandler;
 import com.sun.net.httpserver.HttpServer;
 import ru.nsu.mr.config.Configuration;
 import ru.nsu.mr.config.ConfigurationOption;
+import ru.nsu.mr.endpoints.dto.FinishedMappersInfo;
 import ru.nsu.mr.endpoints.dto.JobQueueInfo;
 import ru.nsu.mr.endpoints.dto.JobDetailInfo;
 import ru.nsu.mr.endpoints.dto.NewJobDetails;
 import ru.nsu.mr.endpoints.dto.TaskDetails;
 import ru.nsu.mr.endpoints.dto.JobProgressInfo;
+import ru.nsu.mr.endpoints.dto.WorkerRegistration;
 import ru.nsu.mr.gateway.HttpUtils;
 
 import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.net.URI;
+import java.util.concurrent.ExecutorService;
 import java.util.function.Consumer;
 import java.util.function.Supplier;
 import java.util.function.Function;
@@ -27,7 +30,8 @@ public class CoordinatorEndpoint {
     private static final int STATUS_METHOD_NOT_ALLOWED = 405;
 
     private final HttpServer httpServer;
-    private final Consumer<String> onWorkerRegistration;
+    private final ExecutorService executor;
+    private final Consumer<WorkerRegistration> onWorkerRegistration;
     private final Consumer<TaskDetails> onTaskNotification;
     private final Consumer<Configuration> onJobSubmission;
     private final Consumer<Integer> onDeleteJob;
@@ -35,19 +39,26 @@ public class CoordinatorEndpoint {
     private final Function<Integer,JobDetailInfo> onGetJobDetails;
     private final Function<Integer,JobProgressInfo> onGetJobProgress;
     private final Supplier<Integer> onGetWorkerCount;
+    private final Function<Integer, FinishedMappersInfo> onGetFinishedMappers;
+    private final Function<TaskDetails, Boolean> onCommitRequest;
 
     public CoordinatorEndpoint(
             String coordinatorBaseUrl,
-            Consumer<String> onWorkerRegistration,
+            Consumer<WorkerRegistration> onWorkerRegistration,
             Consumer<TaskDetails> onTaskNotification,
             Consumer<Configuration> onJobSubmission,
             Supplier<List<JobQueueInfo>> onGetJobs,
             Function<Integer,JobDetailInfo> onGetJobDetails,
             Consumer<Integer> onDeleteJob,
             Function<Integer,JobProgressInfo> onGetJobProgress,
-            Supplier<Integer> onGetWorkerCount) throws IOException {
+            Supplier<Integer> onGetWorkerCount,
+            Function<Integer, FinishedMappersInfo> onGetFinishedMappers,
+            Function<TaskDetails, Boolean> onCommitRequest,
+            HttpServerSettings settings) throws IOException {
         URI uri = URI.create(coordinatorBaseUrl);
-        this.httpServer = HttpServer.create(new InetSocketAddress(uri.getHost(), uri.getPort()), 0);
+        this.executor = settings.createExecutor();
+        this.httpServer = HttpServer.create(new InetSocketAddress(uri.getHost(), uri.getPort()), settings.backlog());
+        this.httpServer.setExecutor(executor);
         this.onWorkerRegistration = onWorkerRegistration;
         this.onTaskNotification = onTaskNotification;
         this.onJobSubmission = onJobSubmission;
@@ -56,6 +67,8 @@ public class CoordinatorEndpoint {
         this.onDeleteJob = onDeleteJob;
         this.onGetJobProgress = onGetJobProgress;
         this.onGetWorkerCount = onGetWorkerCount;
+        this.onGetFinishedMappers = onGetFinishedMappers;
+        this.onCommitRequest = onCommitRequest;
 
         CorsFilter cors = new CorsFilter();
         httpServer.createContext("/workers",  new WorkerRegistrationHandler())
@@ -64,6 +77,10 @@ public class CoordinatorEndpoint {
                 .getFilters().add(cors);
         httpServer.createContext("/notifyTask", new TaskNotificationHandler())
                 .getFilters().add(cors);
+        httpServer.createContext("/finishedMappers", new FinishedMappersHandler())
+                .getFilters().add(cors);
+        httpServer.createContext("/commitTask", new TaskCommitHandler())
+                .getFilters().add(cors);
         httpServer.createContext("/job", new JobSubmissionHandler())
                 .getFilters().add(cors);
         httpServer.createContext("/jobs", new JobsQueryHandler())
@@ -76,6 +93,9 @@ public class CoordinatorEndpoint {
 
     public void stopServer() {
         httpServer.stop(0);
+        if (executor != null) {
+            executor.shutdown();
+        }
     }
 
     private class WorkerRegistrationHandler implements HttpHandler {
@@ -86,9 +106,9 @@ public class CoordinatorEndpoint {
                 return;
             }
             try {
-                String workerBaseUrl = HttpUtils.readRequestBody(exchange, String.class);
-                onWorkerRegistration.accept(workerBaseUrl);
-                HttpUtils.sendResponse(exchange, STATUS_OK, "Worker registered on url: " + workerBaseUrl);
+                WorkerRegistration registration = HttpUtils.readRequestBody(exchange, WorkerRegistration.class);
+                onWorkerRegistration.accept(registration);
+                HttpUtils.sendResponse(exchange, STATUS_OK, "Worker registered on url: " + registration.workerBaseUrl());
             } catch (Exception e) {
                 HttpUtils.sendErrorResponse(exchange, STATUS_BAD_REQUEST, "Failed to register worker: " + e.getMessage());
             }
@@ -111,6 +131,28 @@ public class CoordinatorEndpoint {
         }
     }
 
+    // GET /finishedMappers/{jobId}: мапперы задания, выходы которых уже можно забирать
+    private class FinishedMappersHandler implements HttpHandler {
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            if (!"GET".equalsIgnoreCase(exchange.getRequestMethod())) {
+                HttpUtils.sendErrorResponse(exchange, STATUS_METHOD_NOT_ALLOWED, "Method Not Allowed");
+                return;
+            }
+            String[] pathSegments = exchange.getRequestURI().getPath().split("/");
+            if (pathSegments.length != 3 || !pathSegments[2].matches("\\d+")) {
+                HttpUtils.sendErrorResponse(exchange, STATUS_BAD_REQUEST, "Invalid request path");
+                return;
+            }
+            try {
+                int jobId = Integer.parseInt(pathSegments[2]);
+                HttpUtils.sendJsonResponse(exchange, STATUS_OK, onGetFinishedMappers.apply(jobId));
+            } catch (Exception e) {
+                HttpUtils.sendErrorResponse(exchange, STATUS_BAD_REQUEST, "Failed to fetch finished mappers: " + e.getMessage());
+            }
+        }
+    }
+
     private class TaskNotificationHandler implements HttpHandler {
         @Override
         public void handle(HttpExchange exchange) throws IOException {
@@ -129,6 +171,23 @@ public class CoordinatorEndpoint {
         }
     }
 
+    // POST /commitTask: попытка задачи спрашивает, можно ли ей выгрузить свой результат
+    private class TaskCommitHandler implements HttpHandler {
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            if (!"POST".equalsIgnoreCase(exchange.getRequestMethod())) {
+                HttpUtils.sendErrorResponse(exchange, STATUS_METHOD_NOT_ALLOWED, "Method Not Allowed");
+                return;
+            }
+            try {
+                TaskDetails taskDetails = HttpUtils.readRequestBody(exchange, TaskDetails.class);
+                HttpUtils.sendJsonResponse(exchange, STATUS_OK, onCommitRequest.apply(taskDetails));
+            } catch (Exception e) {
+                HttpUtils.sendErrorResponse(exchange, STATUS_BAD_REQUEST, "Failed to process commit request: " + e.getMessage());
+            }
+        }
+    }
+
     private class JobSubmissionHandler implements HttpHandler {
         @Override
         public void handle(HttpExchange exchange) throws IOException {
@@ -149,7 +208,19 @@ public class CoordinatorEndpoint {
                         .set(ConfigurationOption.DATA_STORAGE_CONNECTION_STRING, jobDetails.dataStorageConnectionString())
                         .set(ConfigurationOption.MAPPERS_COUNT, jobDetails.mappersCount())
                         .set(ConfigurationOption.REDUCERS_COUNT, jobDetails.reducersCount())
-                        .set(ConfigurationOption.SORTER_IN_MEMORY_RECORDS, jobDetails.sorterInMemoryRecords());
+                        .set(ConfigurationOption.MAP_OUTPUTS_UPLOAD, jobDetails.mapOutputsUpload())
+                        .set(ConfigurationOption.SORTER_IN_MEMORY_RECORDS, jobDetails.sorterInMemoryRecords())
+                        .set(ConfigurationOption.SORTER_IN_MEMORY_BYTES, jobDetails.sorterInMemoryBytes())
+                        .set(ConfigurationOption.REDUCE_SLOW_START, jobDetails.reduceSlowStart())
+                        .set(ConfigurationOption.SPECULATIVE_EXECUTION, jobDetails.speculativeExecution())
+                        .set(ConfigurationOption.SPECULATIVE_SLOWDOWN, jobDetails.speculativeSlowdown())
+                        .set(ConfigurationOption.SORT_MERGE_FACTOR, jobDetails.sortMergeFactor())
+                        .set(ConfigurationOption.TRANSFER_CONCURRENCY, jobDetails.transferConcurrency())
+                        .set(ConfigurationOption.TRANSFER_RETRIES, jobDetails.transferRetries())
+                        .set(ConfigurationOption.JOB_WEIGHT, jobDetails.weight())
+                        .set(ConfigurationOption.JOB_PRIORITY, jobDetails.priority())
+                        .set(ConfigurationOption.JOB_PRIORITY_AGING_SECONDS, jobDetails.priorityAgingSeconds())
+                        .set(ConfigurationOption.JOB_DEADLINE_SECONDS, jobDetails.deadlineSeconds());
                 onJobSubmission.accept(jobConfig);
                 HttpUtils.sendResponse(exchange, STATUS_OK, "Job accepted");
             } catch (IllegalStateException e) {
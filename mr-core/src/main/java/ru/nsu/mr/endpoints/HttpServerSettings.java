@@ -0,0 +1,49 @@
+package ru.nsu.mr.endpoints;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Параметры HTTP-серверов координатора и воркера.
+ *
+ * @param executor чем обслуживаются запросы: {@code virtual} — по виртуальному потоку на запрос,
+ *     число — пулом из стольких потоков, {@code dispatcher} — единственным потоком-диспетчером JDK
+ * @param backlog длина очереди ещё не принятых соединений; 0 — значение по умолчанию системы
+ */
+public record HttpServerSettings(String executor, int backlog) {
+    public static final String VIRTUAL = "virtual";
+    public static final String DISPATCHER = "dispatcher";
+
+    public HttpServerSettings {
+        if (!VIRTUAL.equals(executor) && !DISPATCHER.equals(executor) && parseThreads(executor) < 1) {
+            throw new IllegalArgumentException(
+                    "HTTP executor must be 'virtual', 'dispatcher' or a positive number of threads: " + executor);
+        }
+        if (backlog < 0) {
+            throw new IllegalArgumentException("HTTP backlog must not be negative: " + backlog);
+        }
+    }
+
+    public static HttpServerSettings defaults() {
+        return new HttpServerSettings(VIRTUAL, 0);
+    }
+
+    // null означает, что запросы обрабатывает сам поток-диспетчер HttpServer
+    ExecutorService createExecutor() {
+        if (VIRTUAL.equals(executor)) {
+            return Executors.newVirtualThreadPerTaskExecutor();
+        }
+        if (DISPATCHER.equals(executor)) {
+            return null;
+        }
+        return Executors.newFixedThreadPool(parseThreads(executor));
+    }
+
+    private static int parseThreads(String executor) {
+        try {
+            return Integer.parseInt(executor);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+}
@@ -9,33 +9,52 @@ import ru.nsu.mr.endpoints.dto.TaskStatusInfo;
 import ru.nsu.mr.gateway.HttpUtils;
 
 import java.io.IOException;
+import java.io.OutputStream;
 import java.net.InetSocketAddress;
 import java.net.URI;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.regex.Pattern;
 
 import static ru.nsu.mr.gateway.HttpUtils.sendJsonResponse;
 
 public class WorkerEndpoint {
     public interface TaskService {
         TaskDetails createTask(NewTaskDetails details) throws Exception;
-        TaskDetails getTaskDetails(int taskId);
+        TaskDetails getTaskDetails(int jobId, int taskId);
         List<TaskStatusInfo> getAllTasks();
+        boolean cancelTask(int jobId, int taskId, int attemptId);
+        void finishJob(int jobId);
     }
 
     private static final int STATUS_OK = 200;
     private static final int STATUS_BAD_REQUEST = 400;
     private static final int STATUS_NOT_FOUND = 404;
     private static final int STATUS_METHOD_NOT_ALLOWED = 405;
+    private static final Pattern SHUFFLE_FILE_NAME = Pattern.compile("mapper-output-\\d+-\\d+\\.zip");
 
     private final TaskService taskService;
+    private final Path shuffleDirectory;
     private final HttpServer server;
+    private final ExecutorService executor;
 
-    public WorkerEndpoint(String workerBaseUrl, TaskService taskService) throws IOException {
+    public WorkerEndpoint(String workerBaseUrl, TaskService taskService, Path shuffleDirectory,
+                          HttpServerSettings settings) throws IOException {
         URI uri = URI.create(workerBaseUrl);
-        server = HttpServer.create(new InetSocketAddress(uri.getHost(), uri.getPort()), 0);
+        this.executor = settings.createExecutor();
+        server = HttpServer.create(new InetSocketAddress(uri.getHost(), uri.getPort()), settings.backlog());
+        server.setExecutor(executor);
         server.createContext("/tasks", new TasksHandler());
         server.createContext("/health", new HealthHandler());
+        server.createContext("/shuffle", new ShuffleHandler());
+        server.createContext("/jobs", new JobsHandler());
         this.taskService = taskService;
+        this.shuffleDirectory = shuffleDirectory;
     }
 
     public void startServer() {
@@ -46,6 +65,9 @@ public class WorkerEndpoint {
         if (server != null) {
             server.stop(0);
         }
+        if (executor != null) {
+            executor.shutdown();
+        }
     }
 
     private static class HealthHandler implements HttpHandler {
@@ -59,6 +81,60 @@ public class WorkerEndpoint {
         }
     }
 
+    // GET /shuffle/{jobId}/{fileName}: отдаёт выход маппера, хранящийся на локальном диске воркера
+    private class ShuffleHandler implements HttpHandler {
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            if (!"GET".equalsIgnoreCase(exchange.getRequestMethod())) {
+                HttpUtils.sendErrorResponse(exchange, STATUS_METHOD_NOT_ALLOWED, "Method Not Allowed");
+                return;
+            }
+            String[] pathSegments = exchange.getRequestURI().getPath().split("/");
+            if (pathSegments.length != 4
+                    || !pathSegments[2].matches("\\d+")
+                    || !SHUFFLE_FILE_NAME.matcher(pathSegments[3]).matches()) {
+                HttpUtils.sendErrorResponse(exchange, STATUS_BAD_REQUEST, "Invalid request path");
+                return;
+            }
+            Path file = shuffleDirectory.resolve(pathSegments[2]).resolve(pathSegments[3]);
+            if (!Files.isRegularFile(file)) {
+                HttpUtils.sendErrorResponse(exchange, STATUS_NOT_FOUND, "Map output not found: " + pathSegments[3]);
+                return;
+            }
+            try (FileChannel channel = FileChannel.open(file)) {
+                long size = channel.size();
+                exchange.getResponseHeaders().set("Content-Type", "application/octet-stream");
+                exchange.sendResponseHeaders(STATUS_OK, size);
+                try (OutputStream os = exchange.getResponseBody();
+                     WritableByteChannel target = Channels.newChannel(os)) {
+                    long position = 0;
+                    while (position < size) {
+                        position += channel.transferTo(position, size - position, target);
+                    }
+                }
+            }
+        }
+    }
+
+    // DELETE /jobs/{jobId}: координатор сообщает, что задание завершено и его классы больше не нужны
+    private class JobsHandler implements HttpHandler {
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            if (!"DELETE".equalsIgnoreCase(exchange.getRequestMethod())) {
+                HttpUtils.sendErrorResponse(exchange, STATUS_METHOD_NOT_ALLOWED, "Method Not Allowed");
+                return;
+            }
+            String[] pathSegments = exchange.getRequestURI().getPath().split("/");
+            if (pathSegments.length != 3 || !pathSegments[2].matches("\\d+")) {
+                HttpUtils.sendErrorResponse(exchange, STATUS_BAD_REQUEST, "Invalid request path");
+                return;
+            }
+            int jobId = Integer.parseInt(pathSegments[2]);
+            taskService.finishJob(jobId);
+            HttpUtils.sendResponse(exchange, STATUS_OK, "Job finished: " + jobId);
+        }
+    }
+
     private class TasksHandler implements HttpHandler {
         @Override
         public void handle(HttpExchange exchange) throws IOException {
@@ -70,6 +146,9 @@ public class WorkerEndpoint {
                 case "GET":
                     handleRetrieveTask(exchange);
                     break;
+                case "DELETE":
+                    handleCancelTask(exchange);
+                    break;
                 default:
                     HttpUtils.sendErrorResponse(exchange, STATUS_METHOD_NOT_ALLOWED, "Method Not Allowed");
             }
@@ -85,13 +164,32 @@ public class WorkerEndpoint {
             }
         }
 
+        // DELETE /tasks/{jobId}/{taskId}/{attemptId}: прерывает попытку, проигравшую спекулятивной копии
+        private void handleCancelTask(HttpExchange exchange) throws IOException {
+            String[] pathSegments = exchange.getRequestURI().getPath().split("/");
+            if (pathSegments.length != 5
+                    || !pathSegments[2].matches("\\d+")
+                    || !pathSegments[3].matches("\\d+")
+                    || !pathSegments[4].matches("\\d+")) {
+                HttpUtils.sendErrorResponse(exchange, STATUS_BAD_REQUEST, "Invalid request path");
+                return;
+            }
+            int jobId = Integer.parseInt(pathSegments[2]);
+            int taskId = Integer.parseInt(pathSegments[3]);
+            if (taskService.cancelTask(jobId, taskId, Integer.parseInt(pathSegments[4]))) {
+                HttpUtils.sendResponse(exchange, STATUS_OK, "Task cancelled: " + taskId);
+            } else {
+                HttpUtils.sendErrorResponse(exchange, STATUS_NOT_FOUND, "Running task not found for ID: " + taskId);
+            }
+        }
+
         private void handleRetrieveTask(HttpExchange exchange) throws IOException {
             String path = exchange.getRequestURI().getPath();
             String[] pathSegments = path.split("/");
             if (pathSegments.length == 2) {
                 handleRetrieveAllTasks(exchange);
-            } else if (pathSegments.length == 3 && !pathSegments[2].isEmpty()) {
-                handleRetrieveTaskById(exchange, pathSegments[2]);
+            } else if (pathSegments.length == 4 && !pathSegments[2].isEmpty() && !pathSegments[3].isEmpty()) {
+                handleRetrieveTaskById(exchange, pathSegments[2], pathSegments[3]);
             } else {
                 HttpUtils.sendErrorResponse(exchange, STATUS_BAD_REQUEST, "Invalid request path");
             }
@@ -106,10 +204,13 @@ public class WorkerEndpoint {
             }
         }
 
-        private void handleRetrieveTaskById(HttpExchange exchange, String taskIdString) throws IOException {
+        // GET /tasks/{jobId}/{taskId}
+        private void handleRetrieveTaskById(HttpExchange exchange, String jobIdString, String taskIdString)
+                throws IOException {
             try {
+                int jobId = Integer.parseInt(jobIdString);
                 int taskId = Integer.parseInt(taskIdString);
-                TaskDetails taskDetails = taskService.getTaskDetails(taskId);
+                TaskDetails taskDetails = taskService.getTaskDetails(jobId, taskId);
                 if (taskDetails != null) {
                     sendJsonResponse(exchange, STATUS_OK, taskDetails);
                 } else {
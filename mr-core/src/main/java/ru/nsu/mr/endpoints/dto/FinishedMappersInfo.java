@@ -0,0 +1,8 @@
+package ru.nsu.mr.endpoints.dto;
+
+import java.util.List;
+
+public record FinishedMappersInfo(
+        List<MapOutputLocation> finishedMappers,
+        boolean aborted
+) {}
@@ -0,0 +1,9 @@
+package ru.nsu.mr.endpoints.dto;
+
+public record InputSplit(
+        String file,
+        long offset,
+        long length,
+        // Полный размер файла: маппер дочитывает по нему последнюю строку, не запрашивая его заново
+        long fileSize
+) {}
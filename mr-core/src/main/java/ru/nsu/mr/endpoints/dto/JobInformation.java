@@ -7,4 +7,9 @@ public record JobInformation(
         String storageConnectionString,
         int mappersCount,
         int reducersCount,
-        int sorterInMemoryRecords) {}
+        boolean uploadMapOutputs,
+        int sorterInMemoryRecords,
+        int sorterInMemoryBytes,
+        int sortMergeFactor,
+        int transferConcurrency,
+        int transferRetries) {}
@@ -4,5 +4,7 @@ package ru.nsu.mr.endpoints.dto;
 public record JobQueueInfo(
         Integer jobId,
         String jobName,
-        String submissionTime
+        String submissionTime,
+        Integer priority,
+        String deadline
 ) {}
@@ -0,0 +1,6 @@
+package ru.nsu.mr.endpoints.dto;
+
+public record MapOutputLocation(
+        int mapperId,
+        String workerBaseUrl
+) {}
@@ -11,4 +11,16 @@ public record NewJobDetails(
         String dataStorageConnectionString,
         int mappersCount,
         int reducersCount,
-        int sorterInMemoryRecords) {}
+        Boolean mapOutputsUpload,
+        int sorterInMemoryRecords,
+        Integer sorterInMemoryBytes,
+        Double reduceSlowStart,
+        Boolean speculativeExecution,
+        Double speculativeSlowdown,
+        Integer sortMergeFactor,
+        Integer transferConcurrency,
+        Integer transferRetries,
+        Integer weight,
+        Integer priority,
+        Integer priorityAgingSeconds,
+        Integer deadlineSeconds) {}
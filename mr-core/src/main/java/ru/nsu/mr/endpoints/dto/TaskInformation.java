@@ -4,8 +4,11 @@ import java.util.List;
 
 public record TaskInformation(
         int taskId,
+        // Номер попытки: у перезапущенной или спекулятивной копии задачи он больше
+        int attemptId,
         TaskType taskType,
         List<String> inputFiles,
+        List<InputSplit> inputSplits,
         String targetDir,
         String storageConnectionString
 ) {}
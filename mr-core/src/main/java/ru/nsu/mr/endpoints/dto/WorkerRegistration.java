@@ -0,0 +1,6 @@
+package ru.nsu.mr.endpoints.dto;
+
+public record WorkerRegistration(
+        String workerBaseUrl,
+        int slots
+) {}
@@ -0,0 +1,103 @@
+package ru.nsu.mr.formats;
+
+import ru.nsu.mr.BinaryDeserializer;
+import ru.nsu.mr.BinarySerializer;
+import ru.nsu.mr.Pair;
+import ru.nsu.mr.sinks.BinaryFileSink;
+import ru.nsu.mr.sinks.RawRecordSink;
+import ru.nsu.mr.sources.BinaryKeyValueFileIterator;
+import ru.nsu.mr.sources.RawBinaryRecordIterator;
+import ru.nsu.mr.sources.RawRecordIterator;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.util.Iterator;
+
+public class BinaryKeyValueFormat<K, V> implements KeyValueFormat<K, V> {
+    private final BinarySerializer<K> keySerializer;
+    private final BinarySerializer<V> valueSerializer;
+    private final BinaryDeserializer<K> keyDeserializer;
+    private final BinaryDeserializer<V> valueDeserializer;
+
+    public BinaryKeyValueFormat(
+            BinarySerializer<K> keySerializer,
+            BinarySerializer<V> valueSerializer,
+            BinaryDeserializer<K> keyDeserializer,
+            BinaryDeserializer<V> valueDeserializer) {
+        this.keySerializer = keySerializer;
+        this.valueSerializer = valueSerializer;
+        this.keyDeserializer = keyDeserializer;
+        this.valueDeserializer = valueDeserializer;
+    }
+
+    @Override
+    public RawRecordSink<K, V> createSink(Path path) throws IOException {
+        return new BinaryFileSink<>(keySerializer, valueSerializer, path);
+    }
+
+    @Override
+    public Iterator<Pair<K, V>> createIterator(Path path) throws IOException {
+        return new BinaryKeyValueFileIterator<>(path, keyDeserializer, valueDeserializer);
+    }
+
+    @Override
+    public Iterator<Pair<K, V>> createIterator(InputStream inputStream) throws IOException {
+        return new BinaryKeyValueFileIterator<>(inputStream, keyDeserializer, valueDeserializer);
+    }
+
+    @Override
+    public void writeRecord(K key, V value, OutputStream outputStream) throws IOException {
+        BinaryFileSink.writeBytes(outputStream, keySerializer.serialize(key));
+        BinaryFileSink.writeBytes(outputStream, valueSerializer.serialize(value));
+    }
+
+    @Override
+    public Pair<K, V> readRecord(byte[] bytes, int offset, int length) throws IOException {
+        InputStream inputStream = new ByteArrayInputStream(bytes, offset, length);
+        byte[] keyBytes = BinaryKeyValueFileIterator.readBytes(inputStream);
+        byte[] valueBytes = BinaryKeyValueFileIterator.readBytes(inputStream);
+        if (keyBytes == null || valueBytes == null) {
+            throw new IOException("Truncated binary record");
+        }
+        return new Pair<>(keyDeserializer.deserialize(keyBytes), valueDeserializer.deserialize(valueBytes));
+    }
+
+    @Override
+    public RawRecordIterator createRawIterator(Path path) throws IOException {
+        return new RawBinaryRecordIterator(path);
+    }
+
+    @Override
+    public RawRecordIterator createRawIterator(InputStream inputStream) {
+        return new RawBinaryRecordIterator(inputStream);
+    }
+
+    @Override
+    public int keyOffset(byte[] bytes, int offset, int length) throws IOException {
+        int position = offset;
+        while (position < offset + length && (bytes[position] & 0x80) != 0) {
+            position++;
+        }
+        if (position >= offset + length) {
+            throw new IOException("Truncated binary record");
+        }
+        return position + 1;
+    }
+
+    @Override
+    public int keyLength(byte[] bytes, int offset, int length) throws IOException {
+        int value = 0;
+        int shift = 0;
+        for (int position = offset; position < offset + length && shift <= 28; position++) {
+            value |= (bytes[position] & 0x7F) << shift;
+            if ((bytes[position] & 0x80) == 0) {
+                return value;
+            }
+            shift += 7;
+        }
+        throw new IOException("Malformed binary record");
+    }
+}
@@ -0,0 +1,49 @@
+package ru.nsu.mr.formats;
+
+import ru.nsu.mr.MapReduceJob;
+import ru.nsu.mr.Pair;
+import ru.nsu.mr.sinks.RawRecordSink;
+import ru.nsu.mr.sources.RawRecordIterator;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.util.Iterator;
+
+public interface KeyValueFormat<K, V> {
+    RawRecordSink<K, V> createSink(Path path) throws IOException;
+
+    Iterator<Pair<K, V>> createIterator(Path path) throws IOException;
+
+    Iterator<Pair<K, V>> createIterator(InputStream inputStream) throws IOException;
+
+    void writeRecord(K key, V value, OutputStream outputStream) throws IOException;
+
+    Pair<K, V> readRecord(byte[] bytes, int offset, int length) throws IOException;
+
+    RawRecordIterator createRawIterator(Path path) throws IOException;
+
+    RawRecordIterator createRawIterator(InputStream inputStream) throws IOException;
+
+    /** Смещение сериализованного ключа в записи, закодированной {@link #writeRecord}. */
+    int keyOffset(byte[] bytes, int offset, int length) throws IOException;
+
+    /** Длина сериализованного ключа в записи, закодированной {@link #writeRecord}. */
+    int keyLength(byte[] bytes, int offset, int length) throws IOException;
+
+    static <K, V> KeyValueFormat<K, V> intermediate(MapReduceJob<K, V, ?, ?> job) {
+        if (job.hasBinaryInterSerialization()) {
+            return new BinaryKeyValueFormat<>(
+                    job.getBinarySerializerInterKey(),
+                    job.getBinarySerializerInterValue(),
+                    job.getBinaryDeserializerInterKey(),
+                    job.getBinaryDeserializerInterValue());
+        }
+        return new TextKeyValueFormat<>(
+                job.getSerializerInterKey(),
+                job.getSerializerInterValue(),
+                job.getDeserializerInterKey(),
+                job.getDeserializerInterValue());
+    }
+}
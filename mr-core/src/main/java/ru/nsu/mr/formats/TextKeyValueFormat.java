@@ -0,0 +1,106 @@
+package ru.nsu.mr.formats;
+
+import ru.nsu.mr.Deserializer;
+import ru.nsu.mr.Pair;
+import ru.nsu.mr.Serializer;
+import ru.nsu.mr.sinks.FileSink;
+import ru.nsu.mr.sinks.RawRecordSink;
+import ru.nsu.mr.sinks.ZipFileSink;
+import ru.nsu.mr.sources.KeyValueFileIterator;
+import ru.nsu.mr.sources.RawRecordIterator;
+import ru.nsu.mr.sources.RawTextRecordIterator;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Iterator;
+
+public class TextKeyValueFormat<K, V> implements KeyValueFormat<K, V> {
+    private final Serializer<K> keySerializer;
+    private final Serializer<V> valueSerializer;
+    private final Deserializer<K> keyDeserializer;
+    private final Deserializer<V> valueDeserializer;
+
+    public TextKeyValueFormat(
+            Serializer<K> keySerializer,
+            Serializer<V> valueSerializer,
+            Deserializer<K> keyDeserializer,
+            Deserializer<V> valueDeserializer) {
+        this.keySerializer = keySerializer;
+        this.valueSerializer = valueSerializer;
+        this.keyDeserializer = keyDeserializer;
+        this.valueDeserializer = valueDeserializer;
+    }
+
+    @Override
+    public RawRecordSink<K, V> createSink(Path path) throws IOException {
+        if (path.toString().endsWith(".zip")) {
+            return new ZipFileSink<>(keySerializer, valueSerializer, path);
+        }
+        return new FileSink<>(keySerializer, valueSerializer, path);
+    }
+
+    @Override
+    public Iterator<Pair<K, V>> createIterator(Path path) throws IOException {
+        return new KeyValueFileIterator<>(path, keyDeserializer, valueDeserializer);
+    }
+
+    @Override
+    public Iterator<Pair<K, V>> createIterator(InputStream inputStream) throws IOException {
+        return new KeyValueFileIterator<>(inputStream, keyDeserializer, valueDeserializer);
+    }
+
+    @Override
+    public void writeRecord(K key, V value, OutputStream outputStream) throws IOException {
+        String line =
+                keySerializer.serialize(key)
+                        + " "
+                        + valueSerializer.serialize(value)
+                        + System.lineSeparator();
+        outputStream.write(line.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public Pair<K, V> readRecord(byte[] bytes, int offset, int length) throws IOException {
+        int lineLength = length;
+        while (lineLength > 0
+                && (bytes[offset + lineLength - 1] == '\n' || bytes[offset + lineLength - 1] == '\r')) {
+            lineLength--;
+        }
+        String line = new String(bytes, offset, lineLength, StandardCharsets.UTF_8);
+        String[] parts = line.split(" ", 2);
+        if (parts.length < 2) {
+            throw new IOException("Invalid key-value pair: " + line);
+        }
+        return new Pair<>(keyDeserializer.deserialize(parts[0]), valueDeserializer.deserialize(parts[1]));
+    }
+
+    @Override
+    public RawRecordIterator createRawIterator(Path path) throws IOException {
+        return new RawTextRecordIterator(path);
+    }
+
+    @Override
+    public RawRecordIterator createRawIterator(InputStream inputStream) {
+        return new RawTextRecordIterator(inputStream);
+    }
+
+    @Override
+    public int keyOffset(byte[] bytes, int offset, int length) {
+        return offset;
+    }
+
+    @Override
+    public int keyLength(byte[] bytes, int offset, int length) throws IOException {
+        for (int i = offset; i < offset + length; i++) {
+            if (bytes[i] == ' ') {
+                return i - offset;
+            }
+        }
+        throw new IOException(
+                "Invalid key-value pair: "
+                        + new String(bytes, offset, length, StandardCharsets.UTF_8).strip());
+    }
+}
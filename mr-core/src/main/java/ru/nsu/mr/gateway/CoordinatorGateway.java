@@ -1,6 +1,8 @@
 package ru.nsu.mr.gateway;
 
+import ru.nsu.mr.endpoints.dto.FinishedMappersInfo;
 import ru.nsu.mr.endpoints.dto.TaskDetails;
+import ru.nsu.mr.endpoints.dto.WorkerRegistration;
 
 import java.io.IOException;
 import java.net.http.HttpClient;
@@ -14,10 +16,16 @@ public class CoordinatorGateway {
         this.httpClient = HttpClient.newHttpClient();
     }
 
-    public void registerWorker(String workerBaseUrl) throws IOException, InterruptedException {
+    public void registerWorker(WorkerRegistration registration) throws IOException, InterruptedException {
         String endpoint = coordinatorBaseUrl + "/workers";
         HttpUtils.sendPostRequest(
-                httpClient, endpoint, workerBaseUrl, Void.class, "Failed to register worker");
+                httpClient, endpoint, registration, Void.class, "Failed to register worker");
+    }
+
+    public FinishedMappersInfo getFinishedMappers(int jobId) throws IOException, InterruptedException {
+        String endpoint = coordinatorBaseUrl + "/finishedMappers/" + jobId;
+        return HttpUtils.sendGetRequest(
+                httpClient, endpoint, FinishedMappersInfo.class, "Failed to get finished mappers");
     }
 
     public void notifyTask(TaskDetails taskDetails) throws IOException, InterruptedException {
@@ -26,4 +34,10 @@ public class CoordinatorGateway {
                 httpClient, endpoint, taskDetails, Void.class, "Failed to notify task completion");
     }
 
+    public boolean requestCommit(TaskDetails taskDetails) throws IOException, InterruptedException {
+        String endpoint = coordinatorBaseUrl + "/commitTask";
+        return HttpUtils.sendPostRequest(
+                httpClient, endpoint, taskDetails, Boolean.class, "Failed to request task commit");
+    }
+
 }
@@ -63,7 +63,7 @@ public class HttpUtils {
         if (response.statusCode() == STATUS_OK) {
             return gson.fromJson(response.body(), responseType);
         } else {
-            throw new IOException(errorMsg + ": " + response.body());
+            throw responseError(errorMsg, response);
         }
     }
 
@@ -89,7 +89,7 @@ public class HttpUtils {
         if (response.statusCode() == STATUS_OK) {
             return gson.fromJson(response.body(), responseType);
         } else {
-            throw new IOException(errorMsg + ": " + response.body());
+            throw responseError(errorMsg, response);
         }
     }
 
@@ -117,7 +117,16 @@ public class HttpUtils {
             }
             return gson.fromJson(response.body(), responseType);
         } else {
-            throw new IOException(errorMsg + ": " + response.body());
+            throw responseError(errorMsg, response);
         }
     }
+
+    /** Ошибка для ответа с кодом, отличным от 200: на код 4xx — {@link RequestRejectedException}. */
+    static IOException responseError(String errorMsg, HttpResponse<String> response) {
+        String message = errorMsg + ": " + response.body();
+        if (response.statusCode() >= 400 && response.statusCode() < 500) {
+            return new RequestRejectedException(message, response.statusCode());
+        }
+        return new IOException(message);
+    }
 }
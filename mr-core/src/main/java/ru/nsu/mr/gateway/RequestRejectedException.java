@@ -0,0 +1,22 @@
+package ru.nsu.mr.gateway;
+
+import java.io.IOException;
+
+/**
+ * Сервер получил запрос и отклонил его с кодом 4xx. В отличие от других IOException, это не
+ * значит, что сервер недоступен.
+ */
+public class RequestRejectedException extends IOException {
+    private static final long serialVersionUID = 1L;
+
+    private final int statusCode;
+
+    public RequestRejectedException(String message, int statusCode) {
+        super(message);
+        this.statusCode = statusCode;
+    }
+
+    public int getStatusCode() {
+        return statusCode;
+    }
+}
@@ -9,17 +9,31 @@ import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.Duration;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 public class WorkerGateway {
+    private static final Duration CONNECT_TIMEOUT = Duration.ofSeconds(5);
+    // Время до заголовков ответа на запрос выхода маппера
+    private static final Duration SHUFFLE_RESPONSE_TIMEOUT = Duration.ofSeconds(30);
+    // Сколько выход маппера может скачиваться, не получая новых данных
+    private static final Duration SHUFFLE_STALL_TIMEOUT = Duration.ofSeconds(30);
+
     private final String workerBaseUrl;
     private final HttpClient httpClient;
 
     public WorkerGateway(String workerBaseUrl) {
         this.workerBaseUrl = workerBaseUrl;
-        this.httpClient = HttpClient.newHttpClient();
+        this.httpClient = HttpClient.newBuilder()
+                .connectTimeout(CONNECT_TIMEOUT)
+                .build();
     }
 
     public TaskDetails createTask(NewTaskDetails newTaskDetails) throws InterruptedException, IOException {
@@ -31,10 +45,10 @@ public class WorkerGateway {
                 "Failed to create task");
     }
 
-    public TaskDetails getTaskDetails(int taskId) throws IOException, InterruptedException {
+    public TaskDetails getTaskDetails(int jobId, int taskId) throws IOException, InterruptedException {
         return HttpUtils.sendGetRequest(
                 httpClient,
-                workerBaseUrl + "/tasks/" + taskId,
+                workerBaseUrl + "/tasks/" + jobId + "/" + taskId,
                 TaskDetails.class,
                 "Failed to get task details");
     }
@@ -48,6 +62,78 @@ public class WorkerGateway {
         return Arrays.asList(tasks);
     }
 
+    public void cancelTask(int jobId, int taskId, int attemptId) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create(workerBaseUrl + "/tasks/" + jobId + "/" + taskId + "/" + attemptId))
+                .DELETE()
+                .build();
+        HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() != 200) {
+            throw HttpUtils.responseError("Failed to cancel task " + taskId, response);
+        }
+    }
+
+    public void finishJob(int jobId) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create(workerBaseUrl + "/jobs/" + jobId))
+                .DELETE()
+                .build();
+        HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() != 200) {
+            throw new IOException("Failed to finish job " + jobId + ": " + response.body());
+        }
+    }
+
+    /**
+     * Скачивает выход маппера. Если воркер не отвечает или перестаёт присылать данные, бросает
+     * IOException, и редьюсер повторяет попытку позже или берёт копию из хранилища.
+     */
+    public void downloadMapOutput(int jobId, String fileName, Path destination)
+            throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create(workerBaseUrl + "/shuffle/" + jobId + "/" + fileName))
+                .timeout(SHUFFLE_RESPONSE_TIMEOUT)
+                .GET()
+                .build();
+        CompletableFuture<HttpResponse<Path>> download =
+                httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofFile(destination));
+        HttpResponse<Path> response;
+        try {
+            response = awaitDownload(download, destination);
+        } catch (IOException | InterruptedException e) {
+            download.cancel(true);
+            Files.deleteIfExists(destination);
+            throw e;
+        }
+        if (response.statusCode() != 200) {
+            Files.deleteIfExists(destination);
+            throw new IOException("Failed to download map output " + fileName + ": HTTP " + response.statusCode());
+        }
+    }
+
+    // Ждёт, пока файл растёт; тело ответа пишется в destination по мере получения
+    private static HttpResponse<Path> awaitDownload(CompletableFuture<HttpResponse<Path>> download, Path destination)
+            throws IOException, InterruptedException {
+        long downloaded = 0;
+        while (true) {
+            try {
+                return download.get(SHUFFLE_STALL_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof IOException cause) {
+                    throw cause;
+                }
+                throw new IOException(e.getCause());
+            } catch (TimeoutException e) {
+                long size = Files.exists(destination) ? Files.size(destination) : 0;
+                if (size <= downloaded) {
+                    throw new IOException("Download of " + destination.getFileName() + " stalled at "
+                            + size + " bytes");
+                }
+                downloaded = size;
+            }
+        }
+    }
+
     public boolean isAlive() {
         try {
             HttpRequest request = HttpRequest.newBuilder()
@@ -0,0 +1,68 @@
+package ru.nsu.mr.sinks;
+
+import ru.nsu.mr.BinarySerializer;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+public class BinaryFileSink<K, V> implements RawRecordSink<K, V> {
+    private final BinarySerializer<K> keySerializer;
+    private final BinarySerializer<V> valueSerializer;
+    private final OutputStream outputStream;
+    private final ZipOutputStream zipOutputStream;
+
+    public BinaryFileSink(
+            BinarySerializer<K> keySerializer, BinarySerializer<V> valueSerializer, Path outputPath)
+            throws IOException {
+        this.keySerializer = keySerializer;
+        this.valueSerializer = valueSerializer;
+
+        if (outputPath.toString().endsWith(".zip")) {
+            this.zipOutputStream = new ZipOutputStream(Files.newOutputStream(outputPath));
+            String entryName = outputPath.getFileName().toString().replaceFirst("\\.zip$", ".bin");
+            zipOutputStream.putNextEntry(new ZipEntry(entryName));
+            this.outputStream = new BufferedOutputStream(zipOutputStream);
+        } else {
+            this.zipOutputStream = null;
+            this.outputStream = new BufferedOutputStream(Files.newOutputStream(outputPath));
+        }
+    }
+
+    @Override
+    public void put(K key, V value) throws IOException {
+        writeBytes(outputStream, keySerializer.serialize(key));
+        writeBytes(outputStream, valueSerializer.serialize(value));
+    }
+
+    @Override
+    public void putRaw(byte[] bytes, int offset, int length) throws IOException {
+        outputStream.write(bytes, offset, length);
+    }
+
+    @Override
+    public void close() throws IOException {
+        outputStream.flush();
+        if (zipOutputStream != null) {
+            zipOutputStream.closeEntry();
+        }
+        outputStream.close();
+    }
+
+    public static void writeBytes(OutputStream out, byte[] bytes) throws IOException {
+        writeVarInt(out, bytes.length);
+        out.write(bytes);
+    }
+
+    public static void writeVarInt(OutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+}
@@ -2,21 +2,38 @@ package ru.nsu.mr.sinks;
 
 import ru.nsu.mr.Serializer;
 
+import java.io.BufferedOutputStream;
 import java.io.BufferedWriter;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 
-public class FileSink<K, V> implements FileSystemSink<K, V> {
+public class FileSink<K, V> implements RawRecordSink<K, V> {
     private final Serializer<K> keySerializer;
     private final Serializer<V> valueSerializer;
+    private final OutputStream outputStream;
     private final BufferedWriter writer;
+    // Есть символы, ещё не переданные из writer в outputStream
+    private boolean pendingChars = false;
 
     public FileSink(Serializer<K> keySerializer, Serializer<V> valueSerializer, Path outputPath)
             throws IOException {
+        this(keySerializer, valueSerializer, Files.newOutputStream(outputPath));
+    }
+
+    /** Пишет в переданный поток, например в загрузку в хранилище; закрывает его в close(). */
+    public FileSink(
+            Serializer<K> keySerializer, Serializer<V> valueSerializer, OutputStream outputStream) {
         this.keySerializer = keySerializer;
         this.valueSerializer = valueSerializer;
-        this.writer = Files.newBufferedWriter(outputPath);
+        this.outputStream = new BufferedOutputStream(outputStream);
+        this.writer =
+                new BufferedWriter(
+                        new OutputStreamWriter(
+                                this.outputStream, StandardCharsets.UTF_8.newEncoder()));
     }
 
     @Override
@@ -25,6 +42,16 @@ public class FileSink<K, V> implements FileSystemSink<K, V> {
         String valueString = valueSerializer.serialize(value);
         writer.write(keyString + " " + valueString);
         writer.newLine();
+        pendingChars = true;
+    }
+
+    @Override
+    public void putRaw(byte[] bytes, int offset, int length) throws IOException {
+        if (pendingChars) {
+            writer.flush();
+            pendingChars = false;
+        }
+        outputStream.write(bytes, offset, length);
     }
 
     @Override
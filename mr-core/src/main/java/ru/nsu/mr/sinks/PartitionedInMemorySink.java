@@ -0,0 +1,136 @@
+package ru.nsu.mr.sinks;
+
+import ru.nsu.mr.KeyHasher;
+import ru.nsu.mr.RawComparator;
+import ru.nsu.mr.Reducer;
+import ru.nsu.mr.formats.KeyValueFormat;
+import ru.nsu.mr.sources.RawRecordIterator;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.Comparator;
+
+/**
+ * Выход маппера, который целиком остаётся в памяти. Записи хранятся сериализованными и при
+ * закрытии сортируются по (партиция, ключ) и проходят через combiner, если он задан. Дальше
+ * партиции читаются через {@link #openPartition(int)} без записи на диск.
+ *
+ * <p>Если записи вместе со служебными данными превышают лимит, {@link #put} бросает {@link
+ * MemoryLimitExceededException}: вызывающий должен перейти на путь через диск.
+ */
+public class PartitionedInMemorySink<K, V> implements FileSystemSink<K, V> {
+    /** Выход маппера не поместился в отведённую память. */
+    public static class MemoryLimitExceededException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        public MemoryLimitExceededException(long limitBytes) {
+            super("Map output exceeds in-memory limit of " + limitBytes + " bytes");
+        }
+    }
+
+    private final KeyValueFormat<K, V> format;
+    private final int partitionsCount;
+    private final KeyHasher<K> hasher;
+    private final Reducer<K, V, K, V> combiner;
+    private final long limitBytes;
+    private SortBuffer<K, V> buffer;
+    // Границы партиций в отсортированном буфере; без combiner'а партиции читаются из него
+    private int[] partitionStarts;
+    // Выход combiner'а по партициям; тогда буфер уже не нужен
+    private RecordBytes[] combinedPartitions;
+
+    public PartitionedInMemorySink(
+            KeyValueFormat<K, V> format,
+            int partitionsCount,
+            KeyHasher<K> hasher,
+            Comparator<K> comparator,
+            RawComparator rawComparator,
+            Reducer<K, V, K, V> combiner,
+            long limitBytes) {
+        if (partitionsCount < 1) {
+            throw new IllegalArgumentException("Partitions count must be positive.");
+        }
+        this.format = format;
+        this.partitionsCount = partitionsCount;
+        this.hasher = hasher;
+        this.combiner = combiner;
+        this.limitBytes = limitBytes;
+        this.buffer = new SortBuffer<>(format, comparator, rawComparator, limitBytes);
+    }
+
+    @Override
+    public void put(K key, V value) throws IOException {
+        if (partitionStarts != null) {
+            throw new IllegalStateException("Sink is already closed.");
+        }
+        buffer.add(getPartition(key), key, value);
+        if (buffer.estimatedBytes() > limitBytes) {
+            throw new MemoryLimitExceededException(limitBytes);
+        }
+    }
+
+    private int getPartition(K key) {
+        return (hasher.hash(key) % partitionsCount + partitionsCount) % partitionsCount;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (partitionStarts != null) {
+            return;
+        }
+        buffer.sort();
+        partitionStarts = new int[partitionsCount + 1];
+        for (int partition = 0; partition < partitionsCount; partition++) {
+            partitionStarts[partition + 1] =
+                    buffer.partitionEnd(partitionStarts[partition], partition);
+        }
+        if (combiner != null) {
+            combinedPartitions = new RecordBytes[partitionsCount];
+            for (int partition = 0; partition < partitionsCount; partition++) {
+                combinedPartitions[partition] = new RecordBytes(limitBytes);
+                buffer.write(
+                        partitionStarts[partition],
+                        partitionStarts[partition + 1],
+                        combiner,
+                        combinedPartitions[partition]);
+            }
+            buffer = null;
+        }
+    }
+
+    /** Оценка памяти, которую занимает выход после закрытия. */
+    public long getBytes() {
+        if (combinedPartitions == null) {
+            return buffer.estimatedBytes();
+        }
+        long bytes = 0;
+        for (RecordBytes partition : combinedPartitions) {
+            bytes += partition.size();
+        }
+        return bytes;
+    }
+
+    /** Отсортированные записи партиции в кодировке формата. Доступно после {@link #close()}. */
+    public InputStream openPartition(int partition) {
+        if (partitionStarts == null) {
+            throw new IllegalStateException("Sink is not closed yet.");
+        }
+        if (combinedPartitions != null) {
+            RecordBytes bytes = combinedPartitions[partition];
+            return new ByteArrayInputStream(bytes.array(), 0, bytes.size());
+        }
+        return buffer.open(partitionStarts[partition], partitionStarts[partition + 1]);
+    }
+
+    /** Переписывает партицию в файл того же формата, например выход маппера при переходе на диск. */
+    public void writePartition(int partition, Path path) throws IOException {
+        try (RawRecordSink<K, V> sink = format.createSink(path);
+                RawRecordIterator records = format.createRawIterator(openPartition(partition))) {
+            while (records.advance()) {
+                sink.putRaw(records.buffer(), 0, records.recordLength());
+            }
+        }
+    }
+}
@@ -0,0 +1,295 @@
+package ru.nsu.mr.sinks;
+
+import ru.nsu.mr.KeyHasher;
+import ru.nsu.mr.RawComparator;
+import ru.nsu.mr.Reducer;
+import ru.nsu.mr.config.ConfigurationOption;
+import ru.nsu.mr.formats.KeyValueFormat;
+import ru.nsu.mr.sources.SegmentMerger;
+import ru.nsu.mr.sources.SegmentMerger.Segment;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Общий для всех редьюсеров буфер выхода маппера. Записи хранятся в сериализованном виде, объём
+ * буфера ограничен в байтах. При переполнении буфер сортируется по (партиция, ключ) и сбрасывается
+ * в один файл, для которого запоминаются смещения партиций. При закрытии сбросы сливаются в
+ * отдельный выходной файл для каждой партиции.
+ *
+ * <p>Буфер двойной: каждая половина получает половину бюджета. Заполненная половина сортируется и
+ * пишется на диск фоновым потоком, пока маппер заполняет вторую. Маппер блокируется, только если
+ * вторая половина заполнилась раньше, чем закончился предыдущий сброс; суммарное время ожидания
+ * доступно через {@link #getSpillWaitNanos()}.
+ *
+ * <p>С {@link RawComparator} буфер сортируется по байтам ключей в самом буфере, объекты ключей не
+ * хранятся, а сбросы сливаются без декодирования, если нет combiner'а.
+ */
+public class PartitionedSortedFileSink<K, V> implements FileSystemSink<K, V> {
+    private record Spill(Path path, long[] partitionOffsets) {}
+
+    private final KeyValueFormat<K, V> format;
+    private final List<Path> outputPaths;
+    private final KeyHasher<K> hasher;
+    private final Comparator<K> comparator;
+    private final RawComparator rawComparator;
+    private final Reducer<K, V, K, V> combiner;
+    private final long bufferBytes;
+    private final int bufferRecords;
+    private final int mergeFactor;
+    private final List<Spill> spills = new CopyOnWriteArrayList<>();
+    private final ExecutorService spiller;
+    private SortBuffer<K, V> active;
+    private SortBuffer<K, V> standby;
+    private Future<?> pendingSpill;
+    private long spillWaitNanos = 0;
+    private volatile long spillNanos = 0;
+
+    public PartitionedSortedFileSink(
+            KeyValueFormat<K, V> format,
+            List<Path> outputPaths,
+            KeyHasher<K> hasher,
+            Comparator<K> comparator,
+            Reducer<K, V, K, V> combiner,
+            long bufferBytes,
+            int bufferRecords) {
+        this(format, outputPaths, hasher, comparator, combiner, bufferBytes, bufferRecords,
+                ConfigurationOption.SORT_MERGE_FACTOR.getDefaultValue());
+    }
+
+    public PartitionedSortedFileSink(
+            KeyValueFormat<K, V> format,
+            List<Path> outputPaths,
+            KeyHasher<K> hasher,
+            Comparator<K> comparator,
+            Reducer<K, V, K, V> combiner,
+            long bufferBytes,
+            int bufferRecords,
+            int mergeFactor) {
+        this(format, outputPaths, hasher, comparator, null, combiner, bufferBytes, bufferRecords,
+                mergeFactor);
+    }
+
+    public PartitionedSortedFileSink(
+            KeyValueFormat<K, V> format,
+            List<Path> outputPaths,
+            KeyHasher<K> hasher,
+            Comparator<K> comparator,
+            RawComparator rawComparator,
+            Reducer<K, V, K, V> combiner,
+            long bufferBytes,
+            int bufferRecords,
+            int mergeFactor) {
+        if (outputPaths == null || outputPaths.isEmpty()) {
+            throw new IllegalArgumentException("Output path list cannot be null or empty.");
+        }
+        this.format = format;
+        this.outputPaths = outputPaths;
+        this.hasher = hasher;
+        this.comparator = comparator;
+        this.rawComparator = rawComparator;
+        this.combiner = combiner;
+        this.bufferBytes = Math.max(bufferBytes / 2, 1);
+        this.bufferRecords = Math.max(bufferRecords / 2, 1);
+        this.mergeFactor = mergeFactor;
+        this.active = new SortBuffer<>(format, comparator, rawComparator, this.bufferBytes);
+        this.standby = new SortBuffer<>(format, comparator, rawComparator, this.bufferBytes);
+        this.spiller =
+                Executors.newSingleThreadExecutor(
+                        runnable -> {
+                            Thread thread = new Thread(runnable, "spiller");
+                            thread.setDaemon(true);
+                            return thread;
+                        });
+    }
+
+    @Override
+    public void put(K key, V value) throws IOException {
+        active.add(getPartition(key), key, value);
+        if (active.estimatedBytes() >= bufferBytes || active.size() >= bufferRecords) {
+            startSpill();
+        }
+    }
+
+    public int getSpillsCount() {
+        return spills.size();
+    }
+
+    /** Суммарное время, которое маппер простоял в ожидании фонового сброса. */
+    public long getSpillWaitNanos() {
+        return spillWaitNanos;
+    }
+
+    /** Суммарное время сортировки и записи сбросов в фоновом потоке. */
+    public long getSpillNanos() {
+        return spillNanos;
+    }
+
+    private int getPartition(K key) {
+        int partitions = outputPaths.size();
+        return (hasher.hash(key) % partitions + partitions) % partitions;
+    }
+
+    private void startSpill() throws IOException {
+        waitForSpill();
+        if (active.isEmpty()) {
+            return;
+        }
+        // Предыдущий сброс завершён, поэтому запасная половина пуста и её можно заполнять.
+        SortBuffer<K, V> full = active;
+        active = standby;
+        standby = full;
+        pendingSpill =
+                spiller.submit(
+                        () -> {
+                            long start = System.nanoTime();
+                            spill(full);
+                            spillNanos += System.nanoTime() - start;
+                            return null;
+                        });
+    }
+
+    private void waitForSpill() throws IOException {
+        if (pendingSpill == null) {
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            pendingSpill.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for spill");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException ioException) {
+                throw ioException;
+            }
+            if (cause instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IOException("Spill failed", cause);
+        } finally {
+            pendingSpill = null;
+            spillWaitNanos += System.nanoTime() - start;
+        }
+    }
+
+    private void spill(SortBuffer<K, V> buffer) throws IOException {
+        buffer.sort();
+
+        Path spillPath = Files.createTempFile("spill_" + spills.size(), ".dump");
+        long[] partitionOffsets = new long[outputPaths.size() + 1];
+        try (CountingOutputStream out =
+                new CountingOutputStream(
+                        new BufferedOutputStream(Files.newOutputStream(spillPath)))) {
+            int index = 0;
+            for (int partition = 0; partition < outputPaths.size(); partition++) {
+                partitionOffsets[partition] = out.getCount();
+                int end = buffer.partitionEnd(index, partition);
+                buffer.write(index, end, combiner, out);
+                index = end;
+            }
+            partitionOffsets[outputPaths.size()] = out.getCount();
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(spillPath);
+            throw e;
+        }
+        spills.add(new Spill(spillPath, partitionOffsets));
+
+        buffer.clear();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            startSpill();
+            waitForSpill();
+            for (int partition = 0; partition < outputPaths.size(); partition++) {
+                mergePartition(partition);
+            }
+        } finally {
+            // Дожидаемся фонового потока, чтобы не удалить файлы из-под незавершённого сброса.
+            spiller.shutdown();
+            try {
+                spiller.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            for (Spill spill : spills) {
+                Files.deleteIfExists(spill.path());
+            }
+        }
+    }
+
+    private void mergePartition(int partition) throws IOException {
+        List<Segment> segments = new ArrayList<>();
+        for (Spill spill : spills) {
+            long start = spill.partitionOffsets()[partition];
+            long length = spill.partitionOffsets()[partition + 1] - start;
+            if (length > 0) {
+                segments.add(Segment.range(spill.path(), start, length));
+            }
+        }
+
+        Files.deleteIfExists(outputPaths.get(partition));
+        SegmentMerger<K, V> merger =
+                new SegmentMerger<>(format, comparator, rawComparator, combiner, mergeFactor);
+        try (RawRecordSink<K, V> outputSink = format.createSink(outputPaths.get(partition));
+                SegmentMerger.MergedSegments<K, V> merged = merger.merge(segments)) {
+            // Каждый сброс уже прошёл через combiner, повторно комбинируем только при слиянии.
+            if (combiner != null && segments.size() > 1) {
+                SortBuffer.combine(merged, combiner, outputSink::put);
+            } else {
+                merged.writeTo(outputSink);
+            }
+        }
+    }
+
+    private static class CountingOutputStream extends OutputStream {
+        private final OutputStream outputStream;
+        private long count = 0;
+
+        CountingOutputStream(OutputStream outputStream) {
+            this.outputStream = outputStream;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            outputStream.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            outputStream.write(b, off, len);
+            count += len;
+        }
+
+        long getCount() {
+            return count;
+        }
+
+        @Override
+        public void flush() throws IOException {
+            outputStream.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            outputStream.close();
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package ru.nsu.mr.sinks;
+
+import java.io.IOException;
+
+/** Приёмник, который умеет дописывать записи, уже закодированные в его формате. */
+public interface RawRecordSink<K, V> extends FileSystemSink<K, V> {
+    /**
+     * Дописывает запись, уже закодированную в формате этого приёмника, например скопированную из
+     * {@link ru.nsu.mr.sources.RawRecordIterator}.
+     */
+    void putRaw(byte[] bytes, int offset, int length) throws IOException;
+}
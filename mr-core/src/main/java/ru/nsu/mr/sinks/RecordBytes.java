@@ -0,0 +1,53 @@
+package ru.nsu.mr.sinks;
+
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/** Растущий буфер сериализованных записей с доступом к массиву без копирования. */
+class RecordBytes extends OutputStream {
+    private final long limit;
+    private byte[] bytes = new byte[0];
+    private int size = 0;
+
+    RecordBytes(long limit) {
+        this.limit = Math.min(limit, Integer.MAX_VALUE - 8);
+    }
+
+    @Override
+    public void write(int b) {
+        ensureCapacity(size + 1);
+        bytes[size++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+        ensureCapacity(size + len);
+        System.arraycopy(b, off, bytes, size, len);
+        size += len;
+    }
+
+    private void ensureCapacity(int required) {
+        if (required < 0) {
+            throw new OutOfMemoryError("Record buffer overflow");
+        }
+        if (required <= bytes.length) {
+            return;
+        }
+        // Растём удвоением, но не дальше бюджета буфера, если запись в него помещается.
+        long capacity = Math.max((long) bytes.length * 2, 4096);
+        capacity = Math.max(Math.min(capacity, limit), required);
+        bytes = Arrays.copyOf(bytes, (int) capacity);
+    }
+
+    byte[] array() {
+        return bytes;
+    }
+
+    int size() {
+        return size;
+    }
+
+    void reset() {
+        size = 0;
+    }
+}
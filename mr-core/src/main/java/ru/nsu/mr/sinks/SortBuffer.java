@@ -0,0 +1,199 @@
+package ru.nsu.mr.sinks;
+
+import ru.nsu.mr.Pair;
+import ru.nsu.mr.RawComparator;
+import ru.nsu.mr.Reducer;
+import ru.nsu.mr.formats.KeyValueFormat;
+import ru.nsu.mr.sources.GroupedKeyValuesIterator;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Буфер сериализованных записей выхода маппера, который сортируется по (партиция, ключ). С
+ * {@link RawComparator} ключи сравниваются по байтам прямо в буфере и объекты ключей не хранятся.
+ */
+class SortBuffer<K, V> {
+    // Оценка памяти на служебную запись о каждом элементе буфера (объект и ссылка в списке).
+    private static final int RECORD_OVERHEAD_BYTES = 48;
+
+    // key == null при сортировке по байтам: ключ лежит в буфере по смещению keyOffset
+    private record BufferedRecord<K>(
+            int partition, K key, int offset, int length, int keyOffset, int keyLength) {}
+
+    interface RecordWriter<K, V> {
+        void write(K key, V value) throws IOException;
+    }
+
+    private final KeyValueFormat<K, V> format;
+    private final Comparator<K> comparator;
+    private final RawComparator rawComparator;
+    private final RecordBytes data;
+    private final List<BufferedRecord<K>> records = new ArrayList<>();
+
+    SortBuffer(
+            KeyValueFormat<K, V> format,
+            Comparator<K> comparator,
+            RawComparator rawComparator,
+            long bufferBytes) {
+        this.format = format;
+        this.comparator = comparator;
+        this.rawComparator = rawComparator;
+        this.data = new RecordBytes(bufferBytes);
+    }
+
+    void add(int partition, K key, V value) throws IOException {
+        int offset = data.size();
+        format.writeRecord(key, value, data);
+        int length = data.size() - offset;
+        if (rawComparator == null) {
+            records.add(new BufferedRecord<>(partition, key, offset, length, 0, 0));
+        } else {
+            records.add(
+                    new BufferedRecord<>(
+                            partition,
+                            null,
+                            offset,
+                            length,
+                            format.keyOffset(data.array(), offset, length),
+                            format.keyLength(data.array(), offset, length)));
+        }
+    }
+
+    int size() {
+        return records.size();
+    }
+
+    boolean isEmpty() {
+        return records.isEmpty();
+    }
+
+    /** Байты записей вместе с оценкой служебных данных. */
+    long estimatedBytes() {
+        return data.size() + (long) records.size() * RECORD_OVERHEAD_BYTES;
+    }
+
+    void sort() {
+        if (rawComparator == null) {
+            records.sort(
+                    Comparator.<BufferedRecord<K>>comparingInt(BufferedRecord::partition)
+                            .thenComparing(BufferedRecord::key, comparator));
+        } else {
+            byte[] bytes = data.array();
+            records.sort(
+                    Comparator.<BufferedRecord<K>>comparingInt(BufferedRecord::partition)
+                            .thenComparing(
+                                    (a, b) ->
+                                            rawComparator.compare(
+                                                    bytes, a.keyOffset(), a.keyLength(),
+                                                    bytes, b.keyOffset(), b.keyLength())));
+        }
+    }
+
+    /** Конец диапазона записей партиции, который начинается с from, в отсортированном буфере. */
+    int partitionEnd(int from, int partition) {
+        int end = from;
+        while (end < records.size() && records.get(end).partition() == partition) {
+            end++;
+        }
+        return end;
+    }
+
+    /** Пишет записи [from, to) в out как есть или, если задан combiner, через него. */
+    void write(int from, int to, Reducer<K, V, K, V> combiner, OutputStream out)
+            throws IOException {
+        if (combiner == null) {
+            for (BufferedRecord<K> record : records.subList(from, to)) {
+                out.write(data.array(), record.offset(), record.length());
+            }
+            return;
+        }
+        Iterator<Pair<K, V>> decodedRecords =
+                new Iterator<>() {
+                    private final Iterator<BufferedRecord<K>> iterator =
+                            records.subList(from, to).iterator();
+
+                    @Override
+                    public boolean hasNext() {
+                        return iterator.hasNext();
+                    }
+
+                    @Override
+                    public Pair<K, V> next() {
+                        BufferedRecord<K> record = iterator.next();
+                        try {
+                            return format.readRecord(
+                                    data.array(), record.offset(), record.length());
+                        } catch (IOException e) {
+                            throw new RuntimeException(e);
+                        }
+                    }
+                };
+        combine(decodedRecords, combiner, (key, value) -> format.writeRecord(key, value, out));
+    }
+
+    /** Поток записей [from, to) в отсортированном порядке, без копирования буфера. */
+    InputStream open(int from, int to) {
+        return new InputStream() {
+            private int index = from;
+            private int position = 0;
+
+            @Override
+            public int read() {
+                byte[] single = new byte[1];
+                return read(single, 0, 1) == -1 ? -1 : single[0] & 0xFF;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) {
+                if (len == 0) {
+                    return 0;
+                }
+                int copied = 0;
+                while (copied < len && index < to) {
+                    BufferedRecord<K> record = records.get(index);
+                    int count = Math.min(len - copied, record.length() - position);
+                    System.arraycopy(
+                            data.array(), record.offset() + position, b, off + copied, count);
+                    copied += count;
+                    position += count;
+                    if (position == record.length()) {
+                        index++;
+                        position = 0;
+                    }
+                }
+                return copied == 0 ? -1 : copied;
+            }
+        };
+    }
+
+    void clear() {
+        records.clear();
+        data.reset();
+    }
+
+    static <K, V> void combine(
+            Iterator<Pair<K, V>> sortedRecords,
+            Reducer<K, V, K, V> combiner,
+            RecordWriter<K, V> writer) {
+        GroupedKeyValuesIterator<K, V> groups = new GroupedKeyValuesIterator<>(sortedRecords);
+        while (groups.hasNext()) {
+            Pair<K, Iterator<V>> group = groups.next();
+            combiner.reduce(
+                    group.key(),
+                    group.value(),
+                    (key, value) -> {
+                        try {
+                            writer.write(key, value);
+                        } catch (IOException e) {
+                            throw new RuntimeException(e);
+                        }
+                    });
+        }
+    }
+}
@@ -2,9 +2,14 @@ package ru.nsu.mr.sinks;
 
 import ru.nsu.mr.Deserializer;
 import ru.nsu.mr.Pair;
+import ru.nsu.mr.Reducer;
 import ru.nsu.mr.Serializer;
-import ru.nsu.mr.sources.KeyValueFileIterator;
-import ru.nsu.mr.sources.MergedKeyValueIterator;
+import ru.nsu.mr.config.ConfigurationOption;
+import ru.nsu.mr.formats.KeyValueFormat;
+import ru.nsu.mr.formats.TextKeyValueFormat;
+import ru.nsu.mr.sources.GroupedKeyValuesIterator;
+import ru.nsu.mr.sources.SegmentMerger;
+import ru.nsu.mr.sources.SegmentMerger.Segment;
 
 import java.io.IOException;
 import java.nio.file.Files;
@@ -15,15 +20,14 @@ import java.util.Iterator;
 import java.util.List;
 
 public class SortedFileSink<K, V> implements FileSystemSink<K, V> {
-    private final Serializer<K> keySerializer;
-    private final Serializer<V> valueSerializer;
-    private final Deserializer<K> keyDeserializer;
-    private final Deserializer<V> valueDeserializer;
+    private final KeyValueFormat<K, V> format;
     private final Comparator<K> comparator;
+    private final Reducer<K, V, K, V> combiner;
     private final List<Pair<K, V>> buffer;
     private final int bufferSize;
     private final Path outputPath;
     private final List<Path> dumps;
+    private final int mergeFactor;
 
     public SortedFileSink(
             Serializer<K> keySerializer,
@@ -33,15 +37,44 @@ public class SortedFileSink<K, V> implements FileSystemSink<K, V> {
             Path outputPath,
             int bufferSize,
             Comparator<K> comparator) {
-        this.keySerializer = keySerializer;
-        this.valueSerializer = valueSerializer;
-        this.keyDeserializer = keyDeserializer;
-        this.valueDeserializer = valueDeserializer;
+        this(
+                new TextKeyValueFormat<>(
+                        keySerializer, valueSerializer, keyDeserializer, valueDeserializer),
+                outputPath,
+                bufferSize,
+                comparator);
+    }
+
+    public SortedFileSink(
+            KeyValueFormat<K, V> format, Path outputPath, int bufferSize, Comparator<K> comparator) {
+        this(format, outputPath, bufferSize, comparator, null);
+    }
+
+    public SortedFileSink(
+            KeyValueFormat<K, V> format,
+            Path outputPath,
+            int bufferSize,
+            Comparator<K> comparator,
+            Reducer<K, V, K, V> combiner) {
+        this(format, outputPath, bufferSize, comparator, combiner,
+                ConfigurationOption.SORT_MERGE_FACTOR.getDefaultValue());
+    }
+
+    public SortedFileSink(
+            KeyValueFormat<K, V> format,
+            Path outputPath,
+            int bufferSize,
+            Comparator<K> comparator,
+            Reducer<K, V, K, V> combiner,
+            int mergeFactor) {
+        this.format = format;
         this.outputPath = outputPath;
         this.buffer = new ArrayList<>();
         this.bufferSize = bufferSize;
         this.comparator = comparator;
+        this.combiner = combiner;
         this.dumps = new ArrayList<>();
+        this.mergeFactor = mergeFactor;
     }
 
     @Override
@@ -58,11 +91,8 @@ public class SortedFileSink<K, V> implements FileSystemSink<K, V> {
         }
         buffer.sort(Comparator.comparing(Pair::key, comparator));
         dumps.add(Files.createTempFile("dump_" + dumps.size(), ".txt"));
-        try (FileSink<K, V> tempSink =
-                new FileSink<>(keySerializer, valueSerializer, dumps.getLast())) {
-            for (Pair<K, V> pair : buffer) {
-                tempSink.put(pair.key(), pair.value());
-            }
+        try (FileSystemSink<K, V> tempSink = format.createSink(dumps.getLast())) {
+            writeRecords(buffer.iterator(), tempSink, combiner);
         }
         buffer.clear();
     }
@@ -71,21 +101,16 @@ public class SortedFileSink<K, V> implements FileSystemSink<K, V> {
     public void close() throws IOException {
         flushBuffer();
 
-        List<Iterator<Pair<K, V>>> dumpsIterators = new ArrayList<>();
+        List<Segment> segments = new ArrayList<>();
         for (Path dump : dumps) {
-            KeyValueFileIterator<K, V> dumpIterator;
-            dumpIterator = new KeyValueFileIterator<>(dump, keyDeserializer, valueDeserializer);
-            dumpsIterators.add(dumpIterator);
+            segments.add(Segment.wholeFile(dump));
         }
 
-        try (ZipFileSink<K, V> outputFileSink =
-                        new ZipFileSink<>(keySerializer, valueSerializer, outputPath);
-                MergedKeyValueIterator<K, V> mergedDumps =
-                        new MergedKeyValueIterator<>(dumpsIterators, comparator)) {
-            while (mergedDumps.hasNext()) {
-                Pair<K, V> KeyValue = mergedDumps.next();
-                outputFileSink.put(KeyValue.key(), KeyValue.value());
-            }
+        SegmentMerger<K, V> merger = new SegmentMerger<>(format, comparator, combiner, mergeFactor);
+        try (FileSystemSink<K, V> outputFileSink = format.createSink(outputPath);
+                SegmentMerger.MergedSegments<K, V> mergedDumps = merger.merge(segments)) {
+            // Каждый дамп уже прошёл через combiner, повторно комбинируем только при слиянии.
+            writeRecords(mergedDumps, outputFileSink, dumps.size() > 1 ? combiner : null);
         } catch (Exception e) {
             throw new RuntimeException(e);
         } finally {
@@ -94,4 +119,30 @@ public class SortedFileSink<K, V> implements FileSystemSink<K, V> {
             }
         }
     }
+
+    private static <K, V> void writeRecords(
+            Iterator<Pair<K, V>> records, FileSystemSink<K, V> sink, Reducer<K, V, K, V> combiner)
+            throws IOException {
+        if (combiner == null) {
+            while (records.hasNext()) {
+                Pair<K, V> record = records.next();
+                sink.put(record.key(), record.value());
+            }
+            return;
+        }
+        GroupedKeyValuesIterator<K, V> groups = new GroupedKeyValuesIterator<>(records);
+        while (groups.hasNext()) {
+            Pair<K, Iterator<V>> group = groups.next();
+            combiner.reduce(
+                    group.key(),
+                    group.value(),
+                    (key, value) -> {
+                        try {
+                            sink.put(key, value);
+                        } catch (IOException e) {
+                            throw new RuntimeException(e);
+                        }
+                    });
+        }
+    }
 }
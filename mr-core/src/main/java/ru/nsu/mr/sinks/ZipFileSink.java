@@ -2,31 +2,49 @@ package ru.nsu.mr.sinks;
 
 import ru.nsu.mr.Serializer;
 
+import java.io.BufferedOutputStream;
 import java.io.BufferedWriter;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipOutputStream;
 
-public class ZipFileSink<K, V> implements FileSystemSink<K, V> {
+public class ZipFileSink<K, V> implements RawRecordSink<K, V> {
     private final Serializer<K> keySerializer;
     private final Serializer<V> valueSerializer;
     private final BufferedWriter writer;
     private final ZipOutputStream zipOutputStream;
+    private final OutputStream entryStream;
+    // Есть символы, ещё не переданные из writer в entryStream
+    private boolean pendingChars = false;
 
     public ZipFileSink(Serializer<K> keySerializer, Serializer<V> valueSerializer, Path zipPath)
             throws IOException {
+        this(
+                keySerializer,
+                valueSerializer,
+                Files.newOutputStream(zipPath),
+                zipPath.getFileName().toString().replaceFirst("\\.zip$", ".txt"));
+    }
+
+    /** Пишет архив с одним элементом entryName в переданный поток; закрывает его в close(). */
+    public ZipFileSink(
+            Serializer<K> keySerializer,
+            Serializer<V> valueSerializer,
+            OutputStream outputStream,
+            String entryName)
+            throws IOException {
         this.keySerializer = keySerializer;
         this.valueSerializer = valueSerializer;
 
-        this.zipOutputStream = new ZipOutputStream(Files.newOutputStream(zipPath));
-
-        String entryName = zipPath.getFileName().toString().replaceFirst("\\.zip$", ".txt");
+        this.zipOutputStream = new ZipOutputStream(new BufferedOutputStream(outputStream));
         zipOutputStream.putNextEntry(new ZipEntry(entryName));
 
-        this.writer = new BufferedWriter(new OutputStreamWriter(zipOutputStream));
+        this.entryStream = new BufferedOutputStream(zipOutputStream);
+        this.writer = new BufferedWriter(new OutputStreamWriter(entryStream));
     }
 
     @Override
@@ -35,6 +53,16 @@ public class ZipFileSink<K, V> implements FileSystemSink<K, V> {
         String valueString = valueSerializer.serialize(value);
         writer.write(keyString + " " + valueString);
         writer.newLine();
+        pendingChars = true;
+    }
+
+    @Override
+    public void putRaw(byte[] bytes, int offset, int length) throws IOException {
+        if (pendingChars) {
+            writer.flush();
+            pendingChars = false;
+        }
+        entryStream.write(bytes, offset, length);
     }
 
     @Override
@@ -0,0 +1,115 @@
+package ru.nsu.mr.sources;
+
+import ru.nsu.mr.BinaryDeserializer;
+import ru.nsu.mr.Pair;
+
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+public class BinaryKeyValueFileIterator<K, V>
+        implements Iterator<Pair<K, V>>, AutoCloseableSource {
+    private final InputStream inputStream;
+    private final BinaryDeserializer<K> keyDeserializer;
+    private final BinaryDeserializer<V> valueDeserializer;
+    private byte[] nextKey;
+
+    public BinaryKeyValueFileIterator(
+            Path filePath,
+            BinaryDeserializer<K> keyDeserializer,
+            BinaryDeserializer<V> valueDeserializer)
+            throws IOException {
+        this(openInputStream(filePath), keyDeserializer, valueDeserializer);
+    }
+
+    public BinaryKeyValueFileIterator(
+            InputStream inputStream,
+            BinaryDeserializer<K> keyDeserializer,
+            BinaryDeserializer<V> valueDeserializer)
+            throws IOException {
+        this.keyDeserializer = keyDeserializer;
+        this.valueDeserializer = valueDeserializer;
+        this.inputStream = new BufferedInputStream(inputStream);
+        this.nextKey = readBytes(this.inputStream);
+    }
+
+    private static InputStream openInputStream(Path filePath) throws IOException {
+        if (filePath.toString().endsWith(".zip")) {
+            ZipInputStream zipInputStream = new ZipInputStream(Files.newInputStream(filePath));
+            ZipEntry entry = zipInputStream.getNextEntry();
+            if (entry == null) {
+                throw new IOException("ZIP file is empty: " + filePath);
+            }
+            return zipInputStream;
+        }
+        return Files.newInputStream(filePath);
+    }
+
+    @Override
+    public boolean hasNext() {
+        return nextKey != null;
+    }
+
+    @Override
+    public Pair<K, V> next() {
+        if (nextKey == null) {
+            throw new NoSuchElementException();
+        }
+        try {
+            byte[] valueBytes = readBytes(inputStream);
+            if (valueBytes == null) {
+                throw new EOFException("Record value is missing");
+            }
+            K key = keyDeserializer.deserialize(nextKey);
+            V value = valueDeserializer.deserialize(valueBytes);
+            nextKey = readBytes(inputStream);
+            return new Pair<>(key, value);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        inputStream.close();
+    }
+
+    /** Читает один массив байтов с префиксом длины; null, если поток закончился ровно перед ним. */
+    public static byte[] readBytes(InputStream in) throws IOException {
+        int first = in.read();
+        if (first == -1) {
+            return null;
+        }
+        int length = readVarInt(in, first);
+        byte[] bytes = in.readNBytes(length);
+        if (bytes.length != length) {
+            throw new EOFException("Truncated record: expected " + length + " bytes");
+        }
+        return bytes;
+    }
+
+    private static int readVarInt(InputStream in, int first) throws IOException {
+        int value = first & 0x7F;
+        int shift = 7;
+        int current = first;
+        while ((current & 0x80) != 0) {
+            if (shift > 28) {
+                throw new IOException("Malformed varint length");
+            }
+            current = in.read();
+            if (current == -1) {
+                throw new EOFException("Truncated varint length");
+            }
+            value |= (current & 0x7F) << shift;
+            shift += 7;
+        }
+        return value;
+    }
+}
@@ -0,0 +1,48 @@
+package ru.nsu.mr.sources;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+public class BoundedInputStream extends InputStream {
+    private final InputStream inputStream;
+    private long remaining;
+
+    public BoundedInputStream(InputStream inputStream, long length) {
+        this.inputStream = inputStream;
+        this.remaining = length;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (remaining <= 0) {
+            return -1;
+        }
+        int result = inputStream.read();
+        if (result != -1) {
+            remaining--;
+        }
+        return result;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (remaining <= 0) {
+            return -1;
+        }
+        int result = inputStream.read(b, off, (int) Math.min(len, remaining));
+        if (result > 0) {
+            remaining -= result;
+        }
+        return result;
+    }
+
+    @Override
+    public int available() throws IOException {
+        return (int) Math.min(inputStream.available(), remaining);
+    }
+
+    @Override
+    public void close() throws IOException {
+        inputStream.close();
+    }
+}
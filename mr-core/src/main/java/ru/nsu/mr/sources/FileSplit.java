@@ -0,0 +1,32 @@
+package ru.nsu.mr.sources;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Диапазон байтов локального входного файла. Сплиту принадлежат строки, начинающиеся внутри
+ * диапазона; последняя из них может заканчиваться за его границей.
+ */
+public record FileSplit(Path path, long offset, long length) implements SplitSource {
+    public static FileSplit wholeFile(Path path) throws IOException {
+        return new FileSplit(path, 0, Files.size(path));
+    }
+
+    @Override
+    public String name() {
+        return path.toString();
+    }
+
+    @Override
+    public InputStream open() throws IOException {
+        FileChannel channel = FileChannel.open(path);
+        if (offset > 0) {
+            channel.position(offset - 1);
+        }
+        return Channels.newInputStream(channel);
+    }
+}
@@ -5,7 +5,9 @@ import ru.nsu.mr.Pair;
 
 import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.Iterator;
@@ -23,23 +25,38 @@ public class KeyValueFileIterator<K, V> implements Iterator<Pair<K, V>>, AutoClo
     public KeyValueFileIterator(
             Path filePath, Deserializer<K> keyDeserializer, Deserializer<V> valueDeserializer)
             throws IOException {
+        this(openInputStream(filePath), keyDeserializer, valueDeserializer);
+    }
+
+    public KeyValueFileIterator(
+            InputStream inputStream,
+            Deserializer<K> keyDeserializer,
+            Deserializer<V> valueDeserializer)
+            throws IOException {
         this.keyDeserializer = keyDeserializer;
         this.valueDeserializer = valueDeserializer;
+        this.reader =
+                new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8));
+        this.nextLine = readNextLine();
+    }
 
-        if (filePath.toString().endsWith(".zip")) {
-            ZipInputStream zipInputStream = new ZipInputStream(Files.newInputStream(filePath));
+    static InputStream openInputStream(Path filePath) throws IOException {
+        return openInputStream(Files.newInputStream(filePath), filePath.toString());
+    }
+
+    /** Для файла с расширением .zip возвращает поток его единственного элемента. */
+    public static InputStream openInputStream(InputStream inputStream, String fileName)
+            throws IOException {
+        if (fileName.endsWith(".zip")) {
+            ZipInputStream zipInputStream = new ZipInputStream(inputStream);
             ZipEntry entry = zipInputStream.getNextEntry();
             if (entry == null) {
-                throw new IOException("ZIP file is empty: " + filePath);
+                zipInputStream.close();
+                throw new IOException("ZIP file is empty: " + fileName);
             }
-
-            InputStreamReader isr = new InputStreamReader(zipInputStream);
-            this.reader = new BufferedReader(isr);
-        } else {
-            this.reader = Files.newBufferedReader(filePath);
+            return zipInputStream;
         }
-
-        this.nextLine = readNextLine();
+        return inputStream;
     }
 
     private String readNextLine() throws IOException {
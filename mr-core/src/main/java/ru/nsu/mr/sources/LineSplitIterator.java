@@ -0,0 +1,93 @@
+package ru.nsu.mr.sources;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Читает строки сплита. Если сплит начинается не с начала файла, первая (возможно, неполная)
+ * строка пропускается: она принадлежит предыдущему сплиту. Строка, начавшаяся внутри диапазона,
+ * дочитывается до конца, даже если выходит за его границу.
+ */
+public class LineSplitIterator implements Iterator<String>, AutoCloseableSource {
+    private final InputStream inputStream;
+    private final long end;
+    private final ByteArrayOutputStream lineBytes = new ByteArrayOutputStream();
+    private long position;
+    private String nextLine;
+
+    public LineSplitIterator(SplitSource split) throws IOException {
+        this.end = split.offset() + split.length();
+        // Начинаем с байта перед диапазоном: если это перевод строки, первая строка наша.
+        this.position = split.offset() > 0 ? split.offset() - 1 : 0;
+        this.inputStream = new BufferedInputStream(split.open());
+        if (split.offset() > 0) {
+            skipLine();
+        }
+        this.nextLine = readNextLine();
+    }
+
+    private void skipLine() throws IOException {
+        int b;
+        while ((b = inputStream.read()) != -1) {
+            position++;
+            if (b == '\n') {
+                return;
+            }
+        }
+    }
+
+    private String readNextLine() throws IOException {
+        if (position >= end) {
+            return null;
+        }
+        lineBytes.reset();
+        boolean terminated = false;
+        int b;
+        while ((b = inputStream.read()) != -1) {
+            position++;
+            if (b == '\n') {
+                terminated = true;
+                break;
+            }
+            lineBytes.write(b);
+        }
+        if (!terminated && lineBytes.size() == 0) {
+            return null;
+        }
+        byte[] bytes = lineBytes.toByteArray();
+        int length = bytes.length;
+        if (length > 0 && bytes[length - 1] == '\r') {
+            length--;
+        }
+        return new String(bytes, 0, length, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public boolean hasNext() {
+        return nextLine != null;
+    }
+
+    @Override
+    public String next() {
+        if (nextLine == null) {
+            throw new NoSuchElementException();
+        }
+        String currentLine = nextLine;
+        try {
+            nextLine = readNextLine();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        return currentLine;
+    }
+
+    @Override
+    public void close() throws IOException {
+        inputStream.close();
+    }
+}
@@ -0,0 +1,63 @@
+package ru.nsu.mr.sources;
+
+/**
+ * Дерево проигравших над k источниками: {@link #winner()} — источник с минимальной текущей
+ * записью. После смены записи победителя {@link #replay()} переигрывает только путь от его листа
+ * к корню, около log k сравнений. Текущие записи хранит владелец и сравнивает их через {@link Less}.
+ */
+class LoserTree {
+    interface Less {
+        /** Должно учитывать исчерпанные источники: они проигрывают всем остальным. */
+        boolean less(int a, int b);
+    }
+
+    private final Less less;
+    // tree[0] — победитель, tree[1..k-1] — проигравшие во внутренних узлах
+    private final int[] tree;
+    private final int size;
+
+    LoserTree(int size, Less less) {
+        this.less = less;
+        this.size = size;
+        this.tree = new int[Math.max(size, 1)];
+        if (size > 0) {
+            build();
+        }
+    }
+
+    private void build() {
+        // Листья дерева — узлы k..2k-1, внутренние узлы — 1..k-1
+        int[] winners = new int[2 * size];
+        for (int i = 0; i < size; i++) {
+            winners[size + i] = i;
+        }
+        for (int node = size - 1; node > 0; node--) {
+            int left = winners[2 * node];
+            int right = winners[2 * node + 1];
+            if (less.less(left, right)) {
+                winners[node] = left;
+                tree[node] = right;
+            } else {
+                winners[node] = right;
+                tree[node] = left;
+            }
+        }
+        tree[0] = size == 1 ? 0 : winners[1];
+    }
+
+    int winner() {
+        return tree[0];
+    }
+
+    void replay() {
+        int winner = tree[0];
+        for (int node = (winner + size) >>> 1; node > 0; node >>>= 1) {
+            if (less.less(tree[node], winner)) {
+                int loser = winner;
+                winner = tree[node];
+                tree[node] = loser;
+            }
+        }
+        tree[0] = winner;
+    }
+}
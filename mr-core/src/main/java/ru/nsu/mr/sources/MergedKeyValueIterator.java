@@ -5,24 +5,44 @@ import ru.nsu.mr.Pair;
 import java.io.IOException;
 import java.util.*;
 
+/**
+ * Слияние k отсортированных источников через дерево проигравших: на каждую выданную запись
+ * приходится около log k сравнений и ни одной новой аллокации. Записи с равными ключами
+ * выдаются в порядке номеров источников.
+ */
 public class MergedKeyValueIterator<K, V> implements Iterator<Pair<K, V>>, AutoCloseableSource {
-    private final PriorityQueue<Pair<Pair<K, V>, Integer>> minHeap;
     private final List<Iterator<Pair<K, V>>> iterators;
+    private final Comparator<K> comparator;
+    // Текущая запись каждого источника; null — источник исчерпан
+    private final Pair<K, V>[] heads;
+    private final LoserTree tree;
 
+    @SuppressWarnings("unchecked")
     public MergedKeyValueIterator(List<Iterator<Pair<K, V>>> iterators, Comparator<K> comparator) {
         this.iterators = iterators;
-        this.minHeap =
-                new PriorityQueue<>((a, b) -> comparator.compare(a.key().key(), b.key().key()));
-        for (int i = 0; i < iterators.size(); i++) {
-            if (iterators.get(i).hasNext()) {
-                minHeap.add(new Pair<>(iterators.get(i).next(), i));
-            }
+        this.comparator = comparator;
+        int k = iterators.size();
+        this.heads = (Pair<K, V>[]) new Pair[k];
+        for (int i = 0; i < k; i++) {
+            heads[i] = iterators.get(i).hasNext() ? iterators.get(i).next() : null;
+        }
+        this.tree = new LoserTree(k, this::less);
+    }
+
+    private boolean less(int a, int b) {
+        if (heads[a] == null) {
+            return false;
+        }
+        if (heads[b] == null) {
+            return true;
         }
+        int cmp = comparator.compare(heads[a].key(), heads[b].key());
+        return cmp < 0 || (cmp == 0 && a < b);
     }
 
     @Override
     public boolean hasNext() {
-        return !minHeap.isEmpty();
+        return heads.length > 0 && heads[tree.winner()] != null;
     }
 
     @Override
@@ -30,16 +50,11 @@ public class MergedKeyValueIterator<K, V> implements Iterator<Pair<K, V>>, AutoC
         if (!hasNext()) {
             throw new NoSuchElementException();
         }
-
-        Pair<Pair<K, V>, Integer> minNode = minHeap.poll();
-        assert minNode != null;
-        Pair<K, V> result = minNode.key();
-        int index = minNode.value();
-
-        if (iterators.get(index).hasNext()) {
-            minHeap.add(new Pair<>(iterators.get(index).next(), index));
-        }
-
+        int winner = tree.winner();
+        Pair<K, V> result = heads[winner];
+        Iterator<Pair<K, V>> source = iterators.get(winner);
+        heads[winner] = source.hasNext() ? source.next() : null;
+        tree.replay();
         return result;
     }
 
@@ -0,0 +1,104 @@
+package ru.nsu.mr.sources;
+
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/** Записи бинарного формата (длина в varint + байты ключа, то же для значения) без декодирования. */
+public class RawBinaryRecordIterator implements RawRecordIterator {
+    private final InputStream inputStream;
+    private byte[] buffer = new byte[256];
+    private int recordLength;
+    private int keyOffset;
+    private int keyLength;
+
+    public RawBinaryRecordIterator(Path filePath) throws IOException {
+        this(KeyValueFileIterator.openInputStream(filePath));
+    }
+
+    public RawBinaryRecordIterator(InputStream inputStream) {
+        this.inputStream = new BufferedInputStream(inputStream);
+    }
+
+    @Override
+    public boolean advance() throws IOException {
+        recordLength = 0;
+        int length = copyLength(true);
+        if (length == -1) {
+            return false;
+        }
+        keyOffset = recordLength;
+        keyLength = length;
+        copyBytes(keyLength);
+        copyBytes(copyLength(false));
+        return true;
+    }
+
+    /** Копирует в буфер varint длины и возвращает её; -1 при чистом конце потока перед записью. */
+    private int copyLength(boolean recordStart) throws IOException {
+        int value = 0;
+        int shift = 0;
+        int current;
+        do {
+            current = inputStream.read();
+            if (current == -1) {
+                if (recordStart && shift == 0) {
+                    return -1;
+                }
+                throw new EOFException(
+                        shift == 0 ? "Record value is missing" : "Truncated varint length");
+            }
+            if (shift > 28) {
+                throw new IOException("Malformed varint length");
+            }
+            ensureCapacity(recordLength + 1);
+            buffer[recordLength++] = (byte) current;
+            value |= (current & 0x7F) << shift;
+            shift += 7;
+        } while ((current & 0x80) != 0);
+        return value;
+    }
+
+    private void copyBytes(int length) throws IOException {
+        ensureCapacity(recordLength + length);
+        int read = inputStream.readNBytes(buffer, recordLength, length);
+        if (read != length) {
+            throw new EOFException("Truncated record: expected " + length + " bytes");
+        }
+        recordLength += length;
+    }
+
+    private void ensureCapacity(int required) {
+        if (required > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(required, buffer.length * 2));
+        }
+    }
+
+    @Override
+    public byte[] buffer() {
+        return buffer;
+    }
+
+    @Override
+    public int recordLength() {
+        return recordLength;
+    }
+
+    @Override
+    public int keyOffset() {
+        return keyOffset;
+    }
+
+    @Override
+    public int keyLength() {
+        return keyLength;
+    }
+
+    @Override
+    public void close() throws IOException {
+        inputStream.close();
+    }
+}
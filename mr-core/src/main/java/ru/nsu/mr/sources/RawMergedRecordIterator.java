@@ -0,0 +1,89 @@
+package ru.nsu.mr.sources;
+
+import ru.nsu.mr.RawComparator;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Слияние отсортированных сериализованных источников через дерево проигравших: ключи сравниваются
+ * {@link RawComparator} прямо в буферах источников. Текущая запись — запись источника-победителя.
+ * Записи с равными ключами выдаются в порядке номеров источников.
+ */
+public class RawMergedRecordIterator implements RawRecordIterator {
+    private final List<RawRecordIterator> sources;
+    private final RawComparator comparator;
+    private final boolean[] exhausted;
+    private final LoserTree tree;
+    private RawRecordIterator current;
+
+    public RawMergedRecordIterator(List<RawRecordIterator> sources, RawComparator comparator)
+            throws IOException {
+        this.sources = sources;
+        this.comparator = comparator;
+        this.exhausted = new boolean[sources.size()];
+        for (int i = 0; i < sources.size(); i++) {
+            exhausted[i] = !sources.get(i).advance();
+        }
+        this.tree = new LoserTree(sources.size(), this::less);
+    }
+
+    private boolean less(int a, int b) {
+        if (exhausted[a]) {
+            return false;
+        }
+        if (exhausted[b]) {
+            return true;
+        }
+        RawRecordIterator left = sources.get(a);
+        RawRecordIterator right = sources.get(b);
+        int cmp =
+                comparator.compare(
+                        left.buffer(), left.keyOffset(), left.keyLength(),
+                        right.buffer(), right.keyOffset(), right.keyLength());
+        return cmp < 0 || (cmp == 0 && a < b);
+    }
+
+    @Override
+    public boolean advance() throws IOException {
+        if (sources.isEmpty()) {
+            return false;
+        }
+        if (current != null) {
+            // Запись победителя выдана, сдвигаем его источник
+            int winner = tree.winner();
+            exhausted[winner] = !current.advance();
+            tree.replay();
+        }
+        int winner = tree.winner();
+        current = exhausted[winner] ? null : sources.get(winner);
+        return current != null;
+    }
+
+    @Override
+    public byte[] buffer() {
+        return current.buffer();
+    }
+
+    @Override
+    public int recordLength() {
+        return current.recordLength();
+    }
+
+    @Override
+    public int keyOffset() {
+        return current.keyOffset();
+    }
+
+    @Override
+    public int keyLength() {
+        return current.keyLength();
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (RawRecordIterator source : sources) {
+            source.close();
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package ru.nsu.mr.sources;
+
+import java.io.IOException;
+
+/**
+ * Источник записей в сериализованном виде, в той кодировке, в которой их пишет
+ * {@link ru.nsu.mr.formats.KeyValueFormat#writeRecord}. Ни ключ, ни значение не десериализуются.
+ * Буфер текущей записи переиспользуется и действителен только до следующего {@link #advance()}.
+ */
+public interface RawRecordIterator extends AutoCloseableSource {
+    /** Переходит к следующей записи; false, если записи кончились. */
+    boolean advance() throws IOException;
+
+    /** Буфер с текущей записью, запись начинается с нулевого байта. */
+    byte[] buffer();
+
+    int recordLength();
+
+    int keyOffset();
+
+    int keyLength();
+}
@@ -0,0 +1,109 @@
+package ru.nsu.mr.sources;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Строки текстового формата "key value" без декодирования: запись — строка вместе с переводом
+ * строки, ключ — байты до первого пробела. Последней строке без перевода строки он дописывается.
+ */
+public class RawTextRecordIterator implements RawRecordIterator {
+    private static final byte[] LINE_SEPARATOR =
+            System.lineSeparator().getBytes(StandardCharsets.UTF_8);
+
+    private final InputStream inputStream;
+    private final byte[] chunk = new byte[8192];
+    private int chunkPosition = 0;
+    private int chunkLimit = 0;
+    private byte[] buffer = new byte[256];
+    private int recordLength;
+    private int keyLength;
+
+    public RawTextRecordIterator(Path filePath) throws IOException {
+        this(KeyValueFileIterator.openInputStream(filePath));
+    }
+
+    public RawTextRecordIterator(InputStream inputStream) {
+        this.inputStream = inputStream;
+    }
+
+    @Override
+    public boolean advance() throws IOException {
+        recordLength = 0;
+        keyLength = -1;
+        boolean lineEnded = false;
+        while (!lineEnded) {
+            if (chunkPosition == chunkLimit && !fillChunk()) {
+                break;
+            }
+            int end = chunkPosition;
+            while (end < chunkLimit && chunk[end] != '\n') {
+                if (chunk[end] == ' ' && keyLength < 0) {
+                    keyLength = recordLength + end - chunkPosition;
+                }
+                end++;
+            }
+            if (end < chunkLimit) {
+                end++;
+                lineEnded = true;
+            }
+            append(chunk, chunkPosition, end - chunkPosition);
+            chunkPosition = end;
+        }
+        if (recordLength == 0) {
+            return false;
+        }
+        if (!lineEnded) {
+            append(LINE_SEPARATOR, 0, LINE_SEPARATOR.length);
+        }
+        if (keyLength < 0) {
+            throw new IOException(
+                    "Invalid key-value pair: "
+                            + new String(buffer, 0, recordLength, StandardCharsets.UTF_8).strip());
+        }
+        return true;
+    }
+
+    private boolean fillChunk() throws IOException {
+        int read = inputStream.read(chunk);
+        chunkPosition = 0;
+        chunkLimit = Math.max(read, 0);
+        return read > 0;
+    }
+
+    private void append(byte[] bytes, int offset, int length) {
+        if (recordLength + length > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(recordLength + length, buffer.length * 2));
+        }
+        System.arraycopy(bytes, offset, buffer, recordLength, length);
+        recordLength += length;
+    }
+
+    @Override
+    public byte[] buffer() {
+        return buffer;
+    }
+
+    @Override
+    public int recordLength() {
+        return recordLength;
+    }
+
+    @Override
+    public int keyOffset() {
+        return 0;
+    }
+
+    @Override
+    public int keyLength() {
+        return keyLength;
+    }
+
+    @Override
+    public void close() throws IOException {
+        inputStream.close();
+    }
+}
@@ -0,0 +1,334 @@
+package ru.nsu.mr.sources;
+
+import ru.nsu.mr.Pair;
+import ru.nsu.mr.RawComparator;
+import ru.nsu.mr.Reducer;
+import ru.nsu.mr.formats.KeyValueFormat;
+import ru.nsu.mr.sinks.RawRecordSink;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+
+/**
+ * Слияние отсортированных сегментов, при котором одновременно открыто не больше
+ * {@code mergeFactor} файлов. Если сегментов больше, промежуточные раунды сливают самые маленькие
+ * из них во временные файлы. Размер первого раунда подобран так, чтобы каждый следующий был
+ * полным: так повторно записывается меньше всего байтов.
+ *
+ * <p>Если задан {@link RawComparator}, сегменты читаются без декодирования и сравниваются по
+ * байтам ключей. Промежуточные раунды без combiner'а и {@link MergedSegments#writeTo} копируют
+ * записи как есть; декодируется только то, что отдаётся как {@link Pair}.
+ */
+public class SegmentMerger<K, V> {
+    /**
+     * Отсортированный сегмент: весь файл (читается форматом, в том числе из zip) или диапазон
+     * байтов несжатого файла.
+     */
+    public record Segment(Path path, long offset, long length, boolean wholeFile) {
+        public static Segment wholeFile(Path path) throws IOException {
+            return new Segment(path, 0, Files.size(path), true);
+        }
+
+        public static Segment range(Path path, long offset, long length) {
+            return new Segment(path, offset, length, false);
+        }
+    }
+
+    private final KeyValueFormat<K, V> format;
+    private final Comparator<K> comparator;
+    private final RawComparator rawComparator;
+    private final Reducer<K, V, K, V> combiner;
+    private final int mergeFactor;
+
+    public SegmentMerger(
+            KeyValueFormat<K, V> format,
+            Comparator<K> comparator,
+            Reducer<K, V, K, V> combiner,
+            int mergeFactor) {
+        this(format, comparator, null, combiner, mergeFactor);
+    }
+
+    public SegmentMerger(
+            KeyValueFormat<K, V> format,
+            Comparator<K> comparator,
+            RawComparator rawComparator,
+            Reducer<K, V, K, V> combiner,
+            int mergeFactor) {
+        if (mergeFactor < 2) {
+            throw new IllegalArgumentException("Merge factor must be at least 2: " + mergeFactor);
+        }
+        this.format = format;
+        this.comparator = comparator;
+        this.rawComparator = rawComparator;
+        this.combiner = combiner;
+        this.mergeFactor = mergeFactor;
+    }
+
+    /**
+     * Возвращает итератор по всем записям сегментов в порядке ключей. Промежуточные файлы
+     * удаляются при его закрытии. Записи с равными ключами идут в порядке сегментов; сегменты,
+     * слитые в промежуточные файлы, идут после остальных в порядке раундов.
+     */
+    public MergedSegments<K, V> merge(List<Segment> segments) throws IOException {
+        List<Path> intermediateFiles = new ArrayList<>();
+        try {
+            List<Segment> remaining = mergeIntermediate(segments, intermediateFiles);
+            if (rawComparator != null) {
+                return new MergedSegments<>(
+                        format,
+                        new RawMergedRecordIterator(openRaw(remaining), rawComparator),
+                        intermediateFiles);
+            }
+            return new MergedSegments<>(
+                    new MergedKeyValueIterator<>(open(remaining), comparator), intermediateFiles);
+        } catch (IOException | RuntimeException e) {
+            deleteFiles(intermediateFiles);
+            throw e;
+        }
+    }
+
+    /**
+     * Сливает за один проход уже открытые отсортированные потоки, например выходы мапперов в
+     * памяти. Потоки не держат файлов открытыми, поэтому фактор слияния к ним не применяется.
+     */
+    public MergedSegments<K, V> mergeStreams(List<InputStream> streams) throws IOException {
+        if (rawComparator != null) {
+            List<RawRecordIterator> iterators = new ArrayList<>();
+            for (InputStream stream : streams) {
+                iterators.add(format.createRawIterator(stream));
+            }
+            return new MergedSegments<>(
+                    format, new RawMergedRecordIterator(iterators, rawComparator), List.of());
+        }
+        List<Iterator<Pair<K, V>>> iterators = new ArrayList<>();
+        for (InputStream stream : streams) {
+            iterators.add(format.createIterator(stream));
+        }
+        return new MergedSegments<>(new MergedKeyValueIterator<>(iterators, comparator), List.of());
+    }
+
+    private int firstRoundSize(int segmentsCount) {
+        int size = (segmentsCount - 1) % (mergeFactor - 1) + 1;
+        return size == 1 ? mergeFactor : size;
+    }
+
+    private List<Segment> mergeIntermediate(List<Segment> segments, List<Path> intermediateFiles)
+            throws IOException {
+        if (segments.size() <= mergeFactor) {
+            return segments;
+        }
+        // Место сегмента в итоговом слиянии: исходные сегменты по порядку, затем промежуточные файлы
+        Map<Segment, Integer> order = new IdentityHashMap<>();
+        for (Segment segment : segments) {
+            order.put(segment, order.size());
+        }
+        PriorityQueue<Segment> bySize = new PriorityQueue<>(Comparator.comparingLong(Segment::length));
+        bySize.addAll(segments);
+        int roundSize = firstRoundSize(segments.size());
+        while (bySize.size() > mergeFactor) {
+            List<Segment> round = new ArrayList<>();
+            for (int i = 0; i < roundSize; i++) {
+                round.add(bySize.poll());
+            }
+            Path output = Files.createTempFile("merge_" + intermediateFiles.size(), ".txt");
+            intermediateFiles.add(output);
+            writeMerged(round, output);
+            Segment merged = Segment.wholeFile(output);
+            order.put(merged, order.size());
+            bySize.add(merged);
+            roundSize = mergeFactor;
+        }
+        List<Segment> remaining = new ArrayList<>(bySize);
+        remaining.sort(Comparator.comparingInt(order::get));
+        return remaining;
+    }
+
+    private void writeMerged(List<Segment> round, Path output) throws IOException {
+        try (RawRecordSink<K, V> sink = format.createSink(output);
+                MergedSegments<K, V> merged = mergeRound(round)) {
+            if (combiner == null) {
+                merged.writeTo(sink);
+                return;
+            }
+            GroupedKeyValuesIterator<K, V> groups = new GroupedKeyValuesIterator<>(merged);
+            while (groups.hasNext()) {
+                Pair<K, Iterator<V>> group = groups.next();
+                combiner.reduce(
+                        group.key(),
+                        group.value(),
+                        (key, value) -> {
+                            try {
+                                sink.put(key, value);
+                            } catch (IOException e) {
+                                throw new RuntimeException(e);
+                            }
+                        });
+            }
+        }
+    }
+
+    private MergedSegments<K, V> mergeRound(List<Segment> round) throws IOException {
+        if (rawComparator != null) {
+            return new MergedSegments<>(
+                    format, new RawMergedRecordIterator(openRaw(round), rawComparator), List.of());
+        }
+        return new MergedSegments<>(new MergedKeyValueIterator<>(open(round), comparator), List.of());
+    }
+
+    private List<RawRecordIterator> openRaw(List<Segment> segments) throws IOException {
+        List<RawRecordIterator> iterators = new ArrayList<>();
+        try {
+            for (Segment segment : segments) {
+                iterators.add(
+                        segment.wholeFile()
+                                ? format.createRawIterator(segment.path())
+                                : format.createRawIterator(openRange(segment)));
+            }
+            return iterators;
+        } catch (IOException | RuntimeException e) {
+            for (RawRecordIterator iterator : iterators) {
+                iterator.close();
+            }
+            throw e;
+        }
+    }
+
+    private List<Iterator<Pair<K, V>>> open(List<Segment> segments) throws IOException {
+        List<Iterator<Pair<K, V>>> iterators = new ArrayList<>();
+        try {
+            for (Segment segment : segments) {
+                iterators.add(
+                        segment.wholeFile()
+                                ? format.createIterator(segment.path())
+                                : format.createIterator(openRange(segment)));
+            }
+        } catch (IOException | RuntimeException e) {
+            for (Iterator<Pair<K, V>> iterator : iterators) {
+                if (iterator instanceof AutoCloseableSource source) {
+                    source.close();
+                }
+            }
+            throw e;
+        }
+        return iterators;
+    }
+
+    private static InputStream openRange(Segment segment) throws IOException {
+        FileChannel channel = FileChannel.open(segment.path());
+        channel.position(segment.offset());
+        return new BoundedInputStream(Channels.newInputStream(channel), segment.length());
+    }
+
+    private static void deleteFiles(List<Path> files) throws IOException {
+        for (Path file : files) {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    /**
+     * Итог слияния; при закрытии удаляет промежуточные файлы. При сравнении по байтам записи
+     * декодируются только в {@link #next()}.
+     */
+    public static class MergedSegments<K, V> implements Iterator<Pair<K, V>>, AutoCloseableSource {
+        private final MergedKeyValueIterator<K, V> merged;
+        private final KeyValueFormat<K, V> format;
+        private final RawRecordIterator rawMerged;
+        private final List<Path> intermediateFiles;
+        // Для rawMerged: текущая запись прочитана, но ещё не выдана
+        private boolean rawReady = false;
+        private boolean rawHasNext = false;
+
+        private MergedSegments(MergedKeyValueIterator<K, V> merged, List<Path> intermediateFiles) {
+            this.merged = merged;
+            this.format = null;
+            this.rawMerged = null;
+            this.intermediateFiles = intermediateFiles;
+        }
+
+        private MergedSegments(
+                KeyValueFormat<K, V> format,
+                RawRecordIterator rawMerged,
+                List<Path> intermediateFiles) {
+            this.merged = null;
+            this.format = format;
+            this.rawMerged = rawMerged;
+            this.intermediateFiles = intermediateFiles;
+        }
+
+        public int getIntermediateFilesCount() {
+            return intermediateFiles.size();
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (merged != null) {
+                return merged.hasNext();
+            }
+            if (!rawReady) {
+                try {
+                    rawHasNext = rawMerged.advance();
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+                rawReady = true;
+            }
+            return rawHasNext;
+        }
+
+        @Override
+        public Pair<K, V> next() {
+            if (merged != null) {
+                return merged.next();
+            }
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            rawReady = false;
+            try {
+                return format.readRecord(rawMerged.buffer(), 0, rawMerged.recordLength());
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        /** Переписывает оставшиеся записи в sink; при сравнении по байтам — без декодирования. */
+        public void writeTo(RawRecordSink<K, V> sink) throws IOException {
+            if (merged != null) {
+                while (merged.hasNext()) {
+                    Pair<K, V> record = merged.next();
+                    sink.put(record.key(), record.value());
+                }
+                return;
+            }
+            while (hasNext()) {
+                sink.putRaw(rawMerged.buffer(), 0, rawMerged.recordLength());
+                rawReady = false;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                if (merged != null) {
+                    merged.close();
+                } else {
+                    rawMerged.close();
+                }
+            } finally {
+                deleteFiles(intermediateFiles);
+            }
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package ru.nsu.mr.sources;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Диапазон байтов входного файла, строки которого читает {@link LineSplitIterator}: локальный
+ * файл ({@link FileSplit}) или объект в хранилище, читаемый потоком.
+ */
+public interface SplitSource {
+    /** Имя входного файла; маппер получает его ключом каждой строки. */
+    String name();
+
+    long offset();
+
+    long length();
+
+    /**
+     * Открывает поток, начинающийся с байта {@code offset - 1} (с начала файла, если offset равен
+     * нулю). Поток должен продолжаться за границей диапазона, пока не закончится последняя строка.
+     */
+    InputStream open() throws IOException;
+}
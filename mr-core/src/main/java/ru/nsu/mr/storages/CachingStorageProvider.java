@@ -0,0 +1,77 @@
+package ru.nsu.mr.storages;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Хранилище, которое скачивает объекты целиком через {@link ObjectCache}. Чтение диапазонов и
+ * потоков, запись и листинг идут напрямую; {@code close()} закрывает исходное хранилище.
+ */
+public class CachingStorageProvider implements StorageProvider {
+    private final StorageProvider storage;
+    private final String connectionString;
+    private final ObjectCache cache;
+
+    public CachingStorageProvider(StorageProvider storage, String connectionString, ObjectCache cache) {
+        this.storage = storage;
+        this.connectionString = connectionString == null ? "" : connectionString.trim();
+        this.cache = cache;
+    }
+
+    @Override
+    public void get(String key, Path destination) throws IOException {
+        cache.get(connectionString, storage, key, destination);
+    }
+
+    @Override
+    public void get(String key, long offset, long length, Path destination) throws IOException {
+        storage.get(key, offset, length, destination);
+    }
+
+    @Override
+    public InputStream openInputStream(String key) throws IOException {
+        return storage.openInputStream(key);
+    }
+
+    @Override
+    public InputStream openInputStream(String key, long offset, long length) throws IOException {
+        return storage.openInputStream(key, offset, length);
+    }
+
+    @Override
+    public void put(Path source, String key) throws IOException {
+        storage.put(source, key);
+    }
+
+    @Override
+    public StorageOutputStream openOutputStream(String key) throws IOException {
+        return storage.openOutputStream(key);
+    }
+
+    @Override
+    public List<String> list(String key) throws IOException {
+        return storage.list(key);
+    }
+
+    @Override
+    public List<StorageObject> listWithMetadata(String key) throws IOException {
+        return storage.listWithMetadata(key);
+    }
+
+    @Override
+    public long getFileSize(String key) throws IOException {
+        return storage.getFileSize(key);
+    }
+
+    @Override
+    public StorageObject stat(String key) throws IOException {
+        return storage.stat(key);
+    }
+
+    @Override
+    public void close() throws Exception {
+        storage.close();
+    }
+}
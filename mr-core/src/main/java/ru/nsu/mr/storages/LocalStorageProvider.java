@@ -1,14 +1,26 @@
 package ru.nsu.mr.storages;
 
+import ru.nsu.mr.sources.BoundedInputStream;
+
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.UUID;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 public class LocalStorageProvider implements StorageProvider {
+    // Суффикс файлов, которые ещё пишутся через openOutputStream и не видны в list()
+    private static final String PARTIAL_SUFFIX = ".upload-";
 
     @Override
     public void get(String key, Path destination) throws IOException {
@@ -19,6 +31,34 @@ public class LocalStorageProvider implements StorageProvider {
         Files.copy(source, destination, StandardCopyOption.REPLACE_EXISTING);
     }
 
+    @Override
+    public void get(String key, long offset, long length, Path destination) throws IOException {
+        if (destination.getParent() != null) {
+            Files.createDirectories(destination.getParent());
+        }
+        try (FileChannel source = FileChannel.open(Path.of(key));
+                FileChannel target = FileChannel.open(destination,
+                        StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            long end = Math.min(offset + length, source.size());
+            long position = offset;
+            while (position < end) {
+                position += source.transferTo(position, end - position, target);
+            }
+        }
+    }
+
+    @Override
+    public InputStream openInputStream(String key) throws IOException {
+        return Files.newInputStream(Path.of(key));
+    }
+
+    @Override
+    public InputStream openInputStream(String key, long offset, long length) throws IOException {
+        FileChannel channel = FileChannel.open(Path.of(key));
+        channel.position(offset);
+        return new BoundedInputStream(Channels.newInputStream(channel), Math.max(length, 0));
+    }
+
     @Override
     public void put(Path source, String key) throws IOException {
         Path destination = Path.of(key);
@@ -28,21 +68,90 @@ public class LocalStorageProvider implements StorageProvider {
         Files.copy(source, destination, StandardCopyOption.REPLACE_EXISTING);
     }
 
+    @Override
+    public StorageOutputStream openOutputStream(String key) throws IOException {
+        Path destination = Path.of(key);
+        if (destination.getParent() != null) {
+            Files.createDirectories(destination.getParent());
+        }
+        // Пишем рядом с итоговым файлом, чтобы commit() был переименованием в той же директории
+        Path partial = Path.of(key + PARTIAL_SUFFIX + UUID.randomUUID());
+        OutputStream outputStream = Files.newOutputStream(partial);
+        return new StorageOutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                ensureOpen();
+                outputStream.write(b);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                ensureOpen();
+                outputStream.write(b, off, len);
+            }
+
+            @Override
+            protected void finishWriting() throws IOException {
+                outputStream.close();
+            }
+
+            @Override
+            protected void doCommit() throws IOException {
+                try {
+                    Files.move(partial, destination,
+                            StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(partial, destination, StandardCopyOption.REPLACE_EXISTING);
+                }
+            }
+
+            @Override
+            protected void doAbort() throws IOException {
+                outputStream.close();
+                Files.deleteIfExists(partial);
+            }
+        };
+    }
+
     @Override
     public List<String> list(String key) throws IOException {
+        try (Stream<Path> stream = listFiles(key)) {
+            return stream.map(Path::toString).collect(Collectors.toList());
+        }
+    }
+
+    @Override
+    public List<StorageObject> listWithMetadata(String key) throws IOException {
+        List<StorageObject> objects = new ArrayList<>();
+        try (Stream<Path> stream = listFiles(key)) {
+            for (Path path : (Iterable<Path>) stream::iterator) {
+                objects.add(stat(path));
+            }
+        }
+        return objects;
+    }
+
+    @Override
+    public StorageObject stat(String key) throws IOException {
+        return stat(Path.of(key));
+    }
+
+    private static StorageObject stat(Path path) throws IOException {
+        return new StorageObject(
+                path.toString(), Files.size(path), Files.getLastModifiedTime(path).toString());
+    }
+
+    private Stream<Path> listFiles(String key) throws IOException {
         Path directory = Path.of(key);
         if (!Files.exists(directory)) {
             Files.createDirectories(directory);
-            return List.of();
+            return Stream.empty();
         } else if (!Files.isDirectory(directory)) {
             throw new IllegalArgumentException("Provided key is not a directory: " + key);
         }
-        try (Stream<Path> stream = Files.list(directory)) {
-            return stream
-                    .filter(Files::isRegularFile)
-                    .map(Path::toString)
-                    .collect(Collectors.toList());
-        }
+        return Files.list(directory)
+                .filter(Files::isRegularFile)
+                .filter(path -> !path.getFileName().toString().contains(PARTIAL_SUFFIX));
     }
 
     @Override
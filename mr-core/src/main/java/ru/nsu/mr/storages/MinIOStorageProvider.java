@@ -2,22 +2,40 @@ package ru.nsu.mr.storages;
 
 import io.minio.MinioClient;
 import io.minio.DownloadObjectArgs;
+import io.minio.GetObjectArgs;
+import io.minio.PutObjectArgs;
 import io.minio.UploadObjectArgs;
 import io.minio.ListObjectsArgs;
 import io.minio.MakeBucketArgs;
 import io.minio.BucketExistsArgs;
 import io.minio.Result;
+import io.minio.StatObjectResponse;
 import io.minio.messages.Item;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.util.Map;
 import java.util.HashMap;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
 
 public class MinIOStorageProvider implements StorageProvider {
+    // Размер части multipart-загрузки объекта заранее неизвестного размера
+    private static final long PART_BYTES = 8 * 1024 * 1024;
+    // Сколько кусков записанных данных может ждать отправки, прежде чем запись заблокируется
+    private static final int PENDING_CHUNKS = 64;
+    private static final int CHUNK_BYTES = 256 * 1024;
+
     private final MinioClient minioClient;
     private final String bucketName;
 
@@ -69,6 +87,60 @@ public class MinIOStorageProvider implements StorageProvider {
         }
     }
 
+    @Override
+    public void get(String key, long offset, long length, Path destination) throws IOException {
+        if (destination.getParent() != null) {
+            Files.createDirectories(destination.getParent());
+        }
+        if (length <= 0) {
+            Files.deleteIfExists(destination);
+            Files.createFile(destination);
+            return;
+        }
+        try (InputStream stream = minioClient.getObject(
+                GetObjectArgs.builder()
+                        .bucket(bucketName)
+                        .object(key)
+                        .offset(offset)
+                        .length(length)
+                        .build())) {
+            Files.copy(stream, destination, StandardCopyOption.REPLACE_EXISTING);
+        } catch (Exception e) {
+            throw new IOException("Error downloading object range from MinIO", e);
+        }
+    }
+
+    @Override
+    public InputStream openInputStream(String key) throws IOException {
+        try {
+            return minioClient.getObject(
+                    GetObjectArgs.builder()
+                            .bucket(bucketName)
+                            .object(key)
+                            .build());
+        } catch (Exception e) {
+            throw new IOException("Error opening object from MinIO", e);
+        }
+    }
+
+    @Override
+    public InputStream openInputStream(String key, long offset, long length) throws IOException {
+        if (length <= 0) {
+            return InputStream.nullInputStream();
+        }
+        try {
+            return minioClient.getObject(
+                    GetObjectArgs.builder()
+                            .bucket(bucketName)
+                            .object(key)
+                            .offset(offset)
+                            .length(length)
+                            .build());
+        } catch (Exception e) {
+            throw new IOException("Error opening object range from MinIO", e);
+        }
+    }
+
     @Override
     public void put(Path source, String key) throws IOException {
         try {
@@ -84,9 +156,32 @@ public class MinIOStorageProvider implements StorageProvider {
         }
     }
 
+    @Override
+    public StorageOutputStream openOutputStream(String key) {
+        return new StreamingUpload(key);
+    }
+
     @Override
     public List<String> list(String key) throws IOException {
         List<String> objects = new ArrayList<>();
+        for (Item item : listObjects(key)) {
+            objects.add(item.objectName());
+        }
+        return objects;
+    }
+
+    @Override
+    public List<StorageObject> listWithMetadata(String key) throws IOException {
+        List<StorageObject> objects = new ArrayList<>();
+        for (Item item : listObjects(key)) {
+            objects.add(new StorageObject(item.objectName(), item.size(), item.etag()));
+        }
+        return objects;
+    }
+
+    // Итератор клиента MinIO сам запрашивает следующие страницы листинга
+    private List<Item> listObjects(String key) throws IOException {
+        List<Item> items = new ArrayList<>();
         try {
             Iterable<Result<Item>> results = minioClient.listObjects(
                     ListObjectsArgs.builder()
@@ -96,12 +191,12 @@ public class MinIOStorageProvider implements StorageProvider {
                             .build()
             );
             for (Result<Item> result : results) {
-                objects.add(result.get().objectName());
+                items.add(result.get());
             }
         } catch (Exception e) {
             throw new IOException("Error listing objects in MinIO", e);
         }
-        return objects;
+        return items;
     }
 
     @Override
@@ -122,4 +217,166 @@ public class MinIOStorageProvider implements StorageProvider {
             throw new IOException("Failed to get file size from MinIO", e);
         }
     }
+
+    @Override
+    public StorageObject stat(String key) throws IOException {
+        try {
+            StatObjectResponse response = minioClient.statObject(
+                    io.minio.StatObjectArgs.builder()
+                            .bucket(bucketName)
+                            .object(key)
+                            .build()
+            );
+            return new StorageObject(key, response.size(), response.etag());
+        } catch (Exception e) {
+            throw new IOException("Failed to get object metadata from MinIO", e);
+        }
+    }
+
+    /**
+     * Загрузка объекта заранее неизвестного размера: клиент MinIO в фоновом потоке читает
+     * записанные данные и сам делит их на части. Конец потока он получает только при commit(),
+     * поэтому до этого объект не завершается и не виден; abort() обрывает чтение ошибкой, и клиент
+     * отменяет загрузку.
+     */
+    private class StreamingUpload extends StorageOutputStream {
+        private static final byte[] END = new byte[0];
+        private static final byte[] ABORTED = new byte[0];
+
+        private final String key;
+        private final BlockingQueue<byte[]> chunks = new ArrayBlockingQueue<>(PENDING_CHUNKS);
+        private final FutureTask<Void> upload;
+        private byte[] chunk = new byte[CHUNK_BYTES];
+        private int size = 0;
+
+        StreamingUpload(String key) {
+            this.key = key;
+            this.upload = new FutureTask<>(() -> {
+                minioClient.putObject(
+                        PutObjectArgs.builder()
+                                .bucket(bucketName)
+                                .object(key)
+                                .stream(new ChunksInputStream(), -1, PART_BYTES)
+                                .build());
+                return null;
+            });
+            Thread thread = new Thread(upload, "minio-uploader");
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            ensureOpen();
+            if (size == chunk.length) {
+                flushChunk();
+            }
+            chunk[size++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            ensureOpen();
+            while (len > 0) {
+                if (size == chunk.length) {
+                    flushChunk();
+                }
+                int count = Math.min(len, chunk.length - size);
+                System.arraycopy(b, off, chunk, size, count);
+                size += count;
+                off += count;
+                len -= count;
+            }
+        }
+
+        private void flushChunk() throws IOException {
+            if (size == 0) {
+                return;
+            }
+            enqueue(size == chunk.length ? chunk : Arrays.copyOf(chunk, size));
+            chunk = new byte[CHUNK_BYTES];
+            size = 0;
+        }
+
+        private void enqueue(byte[] bytes) throws IOException {
+            try {
+                // Если загрузка уже упала, её никто не читает: не ждём места в очереди вечно
+                while (!chunks.offer(bytes, 100, TimeUnit.MILLISECONDS)) {
+                    if (upload.isDone()) {
+                        awaitUpload();
+                        throw new IOException("Upload of " + key + " stopped reading data.");
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while uploading " + key);
+            }
+        }
+
+        private void awaitUpload() throws IOException {
+            try {
+                upload.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while uploading " + key);
+            } catch (ExecutionException e) {
+                throw new IOException("Error uploading object to MinIO", e.getCause());
+            }
+        }
+
+        @Override
+        protected void finishWriting() throws IOException {
+            flushChunk();
+        }
+
+        @Override
+        protected void doCommit() throws IOException {
+            enqueue(END);
+            awaitUpload();
+        }
+
+        @Override
+        protected void doAbort() {
+            chunks.clear();
+            chunks.offer(ABORTED);
+            upload.cancel(true);
+        }
+
+        private class ChunksInputStream extends InputStream {
+            private byte[] current = new byte[0];
+            private int position = 0;
+
+            @Override
+            public int read() throws IOException {
+                byte[] single = new byte[1];
+                return read(single, 0, 1) == -1 ? -1 : single[0] & 0xff;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                if (len == 0) {
+                    return 0;
+                }
+                while (position == current.length) {
+                    if (current == END) {
+                        return -1;
+                    }
+                    try {
+                        current = chunks.take();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new InterruptedIOException("Upload of " + key + " has been aborted.");
+                    }
+                    if (current == ABORTED) {
+                        throw new IOException("Upload of " + key + " has been aborted.");
+                    }
+                    position = 0;
+                }
+                int count = Math.min(len, current.length - position);
+                System.arraycopy(current, position, b, off, count);
+                position += count;
+                return count;
+            }
+        }
+    }
 }
@@ -0,0 +1,221 @@
+package ru.nsu.mr.storages;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.stream.Stream;
+
+/**
+ * Кэш скачанных объектов на диске воркера, общий для всех его задач. Запись определяется строкой
+ * подключения, ключом, etag и размером объекта, поэтому изменённый объект скачивается заново.
+ * Суммарный размер записей ограничен, при переполнении вытесняются давно не использованные.
+ *
+ * <p>Файл из кэша отдаётся жёсткой ссылкой (или копией, если ссылку создать нельзя), поэтому
+ * вытеснение не затрагивает уже выданные файлы, а сами они должны только читаться. Если объект
+ * одновременно нужен нескольким задачам, скачивает его одна, остальные ждут.
+ */
+public class ObjectCache implements AutoCloseable {
+    public static final long DEFAULT_CAPACITY_BYTES = 10L * 1024 * 1024 * 1024;
+
+    private record Entry(Path path, long size) {}
+
+    private final Path directory;
+    private final long capacityBytes;
+    // Порядок доступа: первой идёт запись, которая дольше всех не использовалась
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<String, CompletableFuture<Void>> downloads = new HashMap<>();
+    private long sizeBytes = 0;
+    private long hits = 0;
+    private long misses = 0;
+    private long evictions = 0;
+
+    public ObjectCache(Path directory, long capacityBytes) throws IOException {
+        if (capacityBytes <= 0) {
+            throw new IllegalArgumentException("Cache capacity must be positive: " + capacityBytes);
+        }
+        this.directory = Files.createDirectories(directory);
+        this.capacityBytes = capacityBytes;
+    }
+
+    /**
+     * Кладёт объект в destination. Из хранилища он скачивается, только если этой версии объекта
+     * нет в кэше; объекты больше всего кэша скачиваются напрямую.
+     */
+    public void get(String connectionString, StorageProvider storage, String key, Path destination)
+            throws IOException {
+        StorageObject object = storage.stat(key);
+        if (object.size() > capacityBytes) {
+            download(storage, key, destination);
+            return;
+        }
+        String cacheKey = cacheKey(connectionString, key, object);
+        CompletableFuture<Void> download;
+        boolean downloader = false;
+        synchronized (this) {
+            if (linkIfPresent(cacheKey, destination)) {
+                hits++;
+                return;
+            }
+            download = downloads.get(cacheKey);
+            if (download == null) {
+                download = new CompletableFuture<>();
+                downloads.put(cacheKey, download);
+                downloader = true;
+            }
+        }
+        if (downloader) {
+            try {
+                fetch(storage, key, object, cacheKey);
+                download.complete(null);
+            } catch (IOException | RuntimeException e) {
+                download.completeExceptionally(e);
+                throw e;
+            } finally {
+                synchronized (this) {
+                    downloads.remove(cacheKey);
+                }
+            }
+        } else {
+            awaitDownload(download);
+        }
+        synchronized (this) {
+            if (linkIfPresent(cacheKey, destination)) {
+                if (!downloader) {
+                    hits++;
+                }
+                return;
+            }
+        }
+        // Объект изменился во время скачивания, или запись уже вытеснена, или скачивание другой
+        // задачи не удалось: скачиваем сами, в обход кэша
+        download(storage, key, destination);
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    public synchronized long getSizeBytes() {
+        return sizeBytes;
+    }
+
+    public synchronized int getEntriesCount() {
+        return entries.size();
+    }
+
+    private void download(StorageProvider storage, String key, Path destination) throws IOException {
+        synchronized (this) {
+            misses++;
+        }
+        storage.get(key, destination);
+    }
+
+    private void fetch(StorageProvider storage, String key, StorageObject object, String cacheKey)
+            throws IOException {
+        synchronized (this) {
+            misses++;
+        }
+        Path partial = directory.resolve(UUID.randomUUID() + ".part");
+        try {
+            storage.get(key, partial);
+            long size = Files.size(partial);
+            if (size != object.size()) {
+                // Объект перезаписали после stat: под его etag содержимое класть нельзя
+                return;
+            }
+            Path path = directory.resolve(cacheKey);
+            Files.move(partial, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            add(cacheKey, new Entry(path, size));
+        } finally {
+            Files.deleteIfExists(partial);
+        }
+    }
+
+    private synchronized void add(String cacheKey, Entry entry) throws IOException {
+        entries.put(cacheKey, entry);
+        sizeBytes += entry.size();
+        Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+        while (sizeBytes > capacityBytes && iterator.hasNext()) {
+            Map.Entry<String, Entry> eldest = iterator.next();
+            if (eldest.getKey().equals(cacheKey)) {
+                continue;
+            }
+            iterator.remove();
+            sizeBytes -= eldest.getValue().size();
+            evictions++;
+            Files.deleteIfExists(eldest.getValue().path());
+        }
+    }
+
+    // Вызывается под блокировкой, чтобы запись не вытеснили, пока на неё создаётся ссылка
+    private boolean linkIfPresent(String cacheKey, Path destination) throws IOException {
+        Entry entry = entries.get(cacheKey);
+        if (entry == null) {
+            return false;
+        }
+        if (destination.getParent() != null) {
+            Files.createDirectories(destination.getParent());
+        }
+        Files.deleteIfExists(destination);
+        try {
+            Files.createLink(destination, entry.path());
+        } catch (IOException | UnsupportedOperationException e) {
+            Files.copy(entry.path(), destination);
+        }
+        return true;
+    }
+
+    private static void awaitDownload(CompletableFuture<Void> download) throws IOException {
+        try {
+            download.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a cached download");
+        } catch (ExecutionException e) {
+            // Повторим скачивание сами: у другой задачи ошибка могла быть своя
+        }
+    }
+
+    private static String cacheKey(String connectionString, String key, StorageObject object) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            String identity = connectionString + '\0' + key + '\0' + object.etag() + '\0' + object.size();
+            return HexFormat.of().formatHex(digest.digest(identity.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        entries.clear();
+        sizeBytes = 0;
+        try (Stream<Path> paths = Files.walk(directory)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+}
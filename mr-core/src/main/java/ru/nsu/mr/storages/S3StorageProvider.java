@@ -3,25 +3,43 @@ package ru.nsu.mr.storages;
 import java.nio.file.Path;
 import java.nio.file.Files;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.stream.Collectors;
 
 import software.amazon.awssdk.services.s3.S3Client;
 import software.amazon.awssdk.regions.Region;
 import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
 import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.services.s3.model.AbortMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompletedMultipartUpload;
+import software.amazon.awssdk.services.s3.model.CompletedPart;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadRequest;
 import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
 import software.amazon.awssdk.services.s3.model.PutObjectRequest;
 import software.amazon.awssdk.services.s3.model.ListObjectsV2Request;
 import software.amazon.awssdk.services.s3.model.ListObjectsV2Response;
 import software.amazon.awssdk.services.s3.model.S3Object;
+import software.amazon.awssdk.services.s3.model.UploadPartRequest;
+import software.amazon.awssdk.services.s3.model.UploadPartResponse;
 import software.amazon.awssdk.core.sync.RequestBody;
 import software.amazon.awssdk.core.sync.ResponseTransformer;
 
 public class S3StorageProvider implements StorageProvider {
+    // Размер части multipart-загрузки; все части, кроме последней, должны быть не меньше 5 МиБ
+    private static final int PART_BYTES = 8 * 1024 * 1024;
 
     private final S3Client s3Client;
     private final String bucketName;
@@ -73,6 +91,52 @@ public class S3StorageProvider implements StorageProvider {
         s3Client.getObject(getObjectRequest, ResponseTransformer.toFile(destination));
     }
 
+    @Override
+    public void get(String key, long offset, long length, Path destination) throws IOException {
+        Path parent = destination.getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        Files.deleteIfExists(destination);
+        if (length <= 0) {
+            Files.createFile(destination);
+            return;
+        }
+
+        GetObjectRequest getObjectRequest = GetObjectRequest.builder()
+                .bucket(bucketName)
+                .key(key)
+                .range("bytes=" + offset + "-" + (offset + length - 1))
+                .build();
+
+        s3Client.getObject(getObjectRequest, ResponseTransformer.toFile(destination));
+    }
+
+    @Override
+    public InputStream openInputStream(String key) {
+        GetObjectRequest getObjectRequest = GetObjectRequest.builder()
+                .bucket(bucketName)
+                .key(key)
+                .build();
+
+        return s3Client.getObject(getObjectRequest);
+    }
+
+    @Override
+    public InputStream openInputStream(String key, long offset, long length) {
+        if (length <= 0) {
+            return InputStream.nullInputStream();
+        }
+
+        GetObjectRequest getObjectRequest = GetObjectRequest.builder()
+                .bucket(bucketName)
+                .key(key)
+                .range("bytes=" + offset + "-" + (offset + length - 1))
+                .build();
+
+        return s3Client.getObject(getObjectRequest);
+    }
+
     @Override
     public void put(Path source, String key) {
         PutObjectRequest putObjectRequest = PutObjectRequest.builder()
@@ -82,18 +146,44 @@ public class S3StorageProvider implements StorageProvider {
         s3Client.putObject(putObjectRequest, RequestBody.fromFile(source));
     }
 
+    @Override
+    public StorageOutputStream openOutputStream(String key) {
+        return new MultipartOutputStream(key);
+    }
+
     @Override
     public List<String> list(String key) {
-        ListObjectsV2Request request = ListObjectsV2Request.builder()
-                .bucket(bucketName)
-                .prefix(key)
-                .build();
-        ListObjectsV2Response response = s3Client.listObjectsV2(request);
-        return response.contents().stream()
+        return listObjects(key).stream()
                 .map(S3Object::key)
                 .collect(Collectors.toList());
     }
 
+    @Override
+    public List<StorageObject> listWithMetadata(String key) {
+        return listObjects(key).stream()
+                .map(object -> new StorageObject(object.key(), object.size(), object.eTag()))
+                .collect(Collectors.toList());
+    }
+
+    // Один ответ ListObjectsV2 содержит не больше 1000 ключей: идём по страницам до конца
+    private List<S3Object> listObjects(String key) {
+        List<S3Object> objects = new ArrayList<>();
+        String continuationToken = null;
+        do {
+            ListObjectsV2Request request = ListObjectsV2Request.builder()
+                    .bucket(bucketName)
+                    .prefix(key)
+                    .continuationToken(continuationToken)
+                    .build();
+            ListObjectsV2Response response = s3Client.listObjectsV2(request);
+            objects.addAll(response.contents());
+            continuationToken = Boolean.TRUE.equals(response.isTruncated())
+                    ? response.nextContinuationToken()
+                    : null;
+        } while (continuationToken != null);
+        return objects;
+    }
+
     @Override
     public void close() throws Exception {
         if (s3Client != null) {
@@ -110,4 +200,154 @@ public class S3StorageProvider implements StorageProvider {
             throw new IOException("Failed to get file size from S3", e);
         }
     }
+
+    @Override
+    public StorageObject stat(String key) throws IOException {
+        try {
+            HeadObjectResponse response =
+                    s3Client.headObject(builder -> builder.bucket(bucketName).key(key));
+            return new StorageObject(key, response.contentLength(), response.eTag());
+        } catch (Exception e) {
+            throw new IOException("Failed to get object metadata from S3", e);
+        }
+    }
+
+    /**
+     * Загружает объект частями по {@link #PART_BYTES}: пока одна часть отправляется фоновым
+     * потоком, в следующую продолжается запись. Объект меньше одной части загружается одним
+     * запросом при commit().
+     */
+    private class MultipartOutputStream extends StorageOutputStream {
+        private final String key;
+        private final List<CompletedPart> parts = new ArrayList<>();
+        private final ExecutorService uploader =
+                Executors.newSingleThreadExecutor(
+                        runnable -> {
+                            Thread thread = new Thread(runnable, "s3-uploader");
+                            thread.setDaemon(true);
+                            return thread;
+                        });
+        private byte[] buffer = new byte[PART_BYTES];
+        private int size = 0;
+        private String uploadId;
+        private Future<?> pendingPart;
+
+        MultipartOutputStream(String key) {
+            this.key = key;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            ensureOpen();
+            if (size == buffer.length) {
+                uploadPart();
+            }
+            buffer[size++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            ensureOpen();
+            while (len > 0) {
+                if (size == buffer.length) {
+                    uploadPart();
+                }
+                int chunk = Math.min(len, buffer.length - size);
+                System.arraycopy(b, off, buffer, size, chunk);
+                size += chunk;
+                off += chunk;
+                len -= chunk;
+            }
+        }
+
+        private void uploadPart() throws IOException {
+            waitForPart();
+            if (uploadId == null) {
+                uploadId = s3Client.createMultipartUpload(
+                        CreateMultipartUploadRequest.builder()
+                                .bucket(bucketName)
+                                .key(key)
+                                .build()).uploadId();
+            }
+            int partNumber = parts.size() + 1;
+            byte[] part = buffer;
+            int partSize = size;
+            pendingPart = uploader.submit(() -> {
+                UploadPartResponse response = s3Client.uploadPart(
+                        UploadPartRequest.builder()
+                                .bucket(bucketName)
+                                .key(key)
+                                .uploadId(uploadId)
+                                .partNumber(partNumber)
+                                .build(),
+                        RequestBody.fromBytes(partSize == part.length ? part : Arrays.copyOf(part, partSize)));
+                parts.add(CompletedPart.builder().partNumber(partNumber).eTag(response.eTag()).build());
+            });
+            // Отправляемый буфер принадлежит фоновому потоку, пишем в новый
+            buffer = new byte[PART_BYTES];
+            size = 0;
+        }
+
+        private void waitForPart() throws IOException {
+            if (pendingPart == null) {
+                return;
+            }
+            try {
+                pendingPart.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while uploading part of " + key);
+            } catch (ExecutionException e) {
+                throw new IOException("Error uploading part of " + key, e.getCause());
+            } finally {
+                pendingPart = null;
+            }
+        }
+
+        @Override
+        protected void finishWriting() throws IOException {
+            try {
+                if (uploadId != null && size > 0) {
+                    uploadPart();
+                }
+                waitForPart();
+            } finally {
+                uploader.shutdown();
+            }
+        }
+
+        @Override
+        protected void doCommit() {
+            if (uploadId == null) {
+                s3Client.putObject(
+                        PutObjectRequest.builder()
+                                .bucket(bucketName)
+                                .key(key)
+                                .build(),
+                        RequestBody.fromBytes(Arrays.copyOf(buffer, size)));
+                return;
+            }
+            s3Client.completeMultipartUpload(
+                    CompleteMultipartUploadRequest.builder()
+                            .bucket(bucketName)
+                            .key(key)
+                            .uploadId(uploadId)
+                            .multipartUpload(CompletedMultipartUpload.builder().parts(parts).build())
+                            .build());
+        }
+
+        @Override
+        protected void doAbort() throws IOException {
+            uploader.shutdownNow();
+            buffer = null;
+            if (uploadId != null) {
+                s3Client.abortMultipartUpload(
+                        AbortMultipartUploadRequest.builder()
+                                .bucket(bucketName)
+                                .key(key)
+                                .uploadId(uploadId)
+                                .build());
+            }
+        }
+    }
 }
@@ -0,0 +1,8 @@
+package ru.nsu.mr.storages;
+
+/**
+ * Объект из листинга хранилища. Размер и etag берутся из самого ответа листинга, поэтому для них
+ * не нужен отдельный запрос на каждый объект. Локальное хранилище вместо etag отдаёт время
+ * последнего изменения файла.
+ */
+public record StorageObject(String key, long size, String etag) {}
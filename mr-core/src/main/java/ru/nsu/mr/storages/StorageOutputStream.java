@@ -0,0 +1,67 @@
+package ru.nsu.mr.storages;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Поток записи объекта в хранилище. Данные отправляются в хранилище по мере записи, но объект
+ * становится видимым только после {@link #commit()}: {@link #close()} лишь дописывает остаток.
+ * Если загрузку не нужно публиковать (задача упала или проиграла другой попытке), вызывается
+ * {@link #abort()}; после {@link #commit()} он ничего не делает, поэтому его удобно звать в finally.
+ */
+public abstract class StorageOutputStream extends OutputStream {
+    private boolean closed = false;
+    private boolean finished = false;
+    private boolean committed = false;
+    private boolean aborted = false;
+
+    /** Закрывает поток, если он ещё открыт, и публикует объект. */
+    public final synchronized void commit() throws IOException {
+        if (aborted) {
+            throw new IOException("Upload has already been aborted.");
+        }
+        if (committed) {
+            return;
+        }
+        close();
+        if (!finished) {
+            throw new IOException("Upload has not been written completely.");
+        }
+        doCommit();
+        committed = true;
+    }
+
+    /** Отменяет загрузку и освобождает занятые ею ресурсы хранилища. */
+    public final synchronized void abort() throws IOException {
+        if (committed || aborted) {
+            return;
+        }
+        aborted = true;
+        doAbort();
+    }
+
+    @Override
+    public final synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (!aborted) {
+            finishWriting();
+            finished = true;
+        }
+    }
+
+    protected final void ensureOpen() throws IOException {
+        if (closed || aborted) {
+            throw new IOException("Upload stream is closed.");
+        }
+    }
+
+    /** Отправляет в хранилище всё, что ещё не отправлено. */
+    protected abstract void finishWriting() throws IOException;
+
+    protected abstract void doCommit() throws IOException;
+
+    protected abstract void doAbort() throws IOException;
+}
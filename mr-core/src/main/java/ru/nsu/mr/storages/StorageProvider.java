@@ -1,12 +1,25 @@
 package ru.nsu.mr.storages;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.file.Path;
 import java.util.List;
 
 public interface StorageProvider extends AutoCloseable {
     void get(String key, Path destination) throws IOException;
+    // Скачивает не более length байтов объекта, начиная с offset
+    void get(String key, long offset, long length, Path destination) throws IOException;
+    // Поток с содержимым объекта; данные читаются по мере чтения потока, без записи на диск
+    InputStream openInputStream(String key) throws IOException;
+    // Поток не более чем из length байтов объекта, начиная с offset
+    InputStream openInputStream(String key, long offset, long length) throws IOException;
     void put(Path source, String key) throws IOException;
+    // Поток, который загружает объект по мере записи; объект появляется после commit()
+    StorageOutputStream openOutputStream(String key) throws IOException;
     List<String> list(String key) throws IOException;
+    // Объекты с размерами и etag за один листинг, со всеми страницами ответа
+    List<StorageObject> listWithMetadata(String key) throws IOException;
     long getFileSize(String key) throws IOException;  // Добавленный метод
+    // Размер и etag одного объекта
+    StorageObject stat(String key) throws IOException;
 }
\ No newline at end of file
@@ -1,7 +1,24 @@
 package ru.nsu.mr.storages;
 
+import java.time.Duration;
+
 public class StorageProviderFactory {
+    // Сколько клиент без аренд остаётся в кэше, прежде чем закрыться
+    private static final Duration IDLE_TIMEOUT = Duration.ofMinutes(1);
+
+    private static final StorageProviderPool POOL =
+            new StorageProviderPool(StorageProviderFactory::createStorageProvider, IDLE_TIMEOUT);
+
+    /**
+     * Возвращает аренду общего клиента для строки подключения. Клиенты создаются один раз и
+     * переиспользуются между задачами; {@code close()} аренды возвращает клиент в кэш.
+     */
     public static StorageProvider getStorageProvider(String connectionString) {
+        return POOL.acquire(connectionString == null ? "" : connectionString.trim());
+    }
+
+    /** Создаёт отдельный клиент в обход кэша; закрывать его должен вызывающий. */
+    public static StorageProvider createStorageProvider(String connectionString) {
         if (connectionString == null || connectionString.trim().isEmpty()
                 || connectionString.trim().equalsIgnoreCase("local")) {
             return new LocalStorageProvider();
@@ -0,0 +1,193 @@
+package ru.nsu.mr.storages;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+
+/**
+ * Кэш долгоживущих клиентов хранилища по строке подключения. {@link #acquire} возвращает аренду
+ * общего клиента, её {@code close()} только уменьшает счётчик ссылок. Клиент без аренд
+ * закрывается, если простоял дольше {@code idleTimeout}; так прогретые HTTP-соединения
+ * переиспользуются между задачами.
+ */
+public class StorageProviderPool {
+    private static class Entry {
+        private StorageProvider provider;
+        private int references = 0;
+        private long idleSinceNanos;
+    }
+
+    private final Function<String, StorageProvider> factory;
+    private final long idleTimeoutNanos;
+    private final Map<String, Entry> entries = new HashMap<>();
+    private ScheduledExecutorService evictor;
+
+    public StorageProviderPool(Function<String, StorageProvider> factory, Duration idleTimeout) {
+        this.factory = factory;
+        this.idleTimeoutNanos = idleTimeout.toNanos();
+    }
+
+    public StorageProvider acquire(String connectionString) {
+        Entry entry;
+        synchronized (this) {
+            entry = entries.computeIfAbsent(connectionString, key -> new Entry());
+            entry.references++;
+            startEvictor();
+        }
+        // Клиент создаётся вне общей блокировки: конструктор MinIO ходит в сеть
+        try {
+            synchronized (entry) {
+                if (entry.provider == null) {
+                    entry.provider = factory.apply(connectionString);
+                }
+            }
+        } catch (RuntimeException e) {
+            release(connectionString, entry);
+            throw e;
+        }
+        return new Lease(connectionString, entry);
+    }
+
+    private synchronized void release(String connectionString, Entry entry) {
+        entry.references--;
+        if (entry.references > 0) {
+            return;
+        }
+        entry.idleSinceNanos = System.nanoTime();
+        if (entry.provider == null) {
+            // Клиент не удалось создать, держать пустую запись незачем
+            entries.remove(connectionString, entry);
+        }
+    }
+
+    /** Закрывает клиенты без аренд, которые простояли дольше idleTimeout. */
+    public void evictIdle() {
+        List<StorageProvider> evicted = new ArrayList<>();
+        synchronized (this) {
+            long now = System.nanoTime();
+            Iterator<Entry> iterator = entries.values().iterator();
+            while (iterator.hasNext()) {
+                Entry entry = iterator.next();
+                if (entry.references == 0 && now - entry.idleSinceNanos >= idleTimeoutNanos) {
+                    iterator.remove();
+                    evicted.add(entry.provider);
+                }
+            }
+        }
+        for (StorageProvider provider : evicted) {
+            try {
+                provider.close();
+            } catch (Exception ignored) {
+                // Клиент уже не используется, ошибка закрытия ни на что не влияет
+            }
+        }
+    }
+
+    /** Число закэшированных клиентов, включая арендованные. */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    private void startEvictor() {
+        if (evictor != null) {
+            return;
+        }
+        evictor =
+                Executors.newSingleThreadScheduledExecutor(
+                        runnable -> {
+                            Thread thread = new Thread(runnable, "storage-evictor");
+                            thread.setDaemon(true);
+                            return thread;
+                        });
+        long periodMillis = Math.max(TimeUnit.NANOSECONDS.toMillis(idleTimeoutNanos) / 2, 1000);
+        evictor.scheduleAtFixedRate(this::evictIdle, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private class Lease implements StorageProvider {
+        private final String connectionString;
+        private final Entry entry;
+        private final AtomicBoolean closed = new AtomicBoolean(false);
+
+        Lease(String connectionString, Entry entry) {
+            this.connectionString = connectionString;
+            this.entry = entry;
+        }
+
+        private StorageProvider provider() {
+            if (closed.get()) {
+                throw new IllegalStateException("Storage provider lease is already closed.");
+            }
+            return entry.provider;
+        }
+
+        @Override
+        public void get(String key, Path destination) throws IOException {
+            provider().get(key, destination);
+        }
+
+        @Override
+        public void get(String key, long offset, long length, Path destination)
+                throws IOException {
+            provider().get(key, offset, length, destination);
+        }
+
+        @Override
+        public InputStream openInputStream(String key) throws IOException {
+            return provider().openInputStream(key);
+        }
+
+        @Override
+        public InputStream openInputStream(String key, long offset, long length)
+                throws IOException {
+            return provider().openInputStream(key, offset, length);
+        }
+
+        @Override
+        public void put(Path source, String key) throws IOException {
+            provider().put(source, key);
+        }
+
+        @Override
+        public StorageOutputStream openOutputStream(String key) throws IOException {
+            return provider().openOutputStream(key);
+        }
+
+        @Override
+        public List<String> list(String key) throws IOException {
+            return provider().list(key);
+        }
+
+        @Override
+        public List<StorageObject> listWithMetadata(String key) throws IOException {
+            return provider().listWithMetadata(key);
+        }
+
+        @Override
+        public long getFileSize(String key) throws IOException {
+            return provider().getFileSize(key);
+        }
+
+        @Override
+        public StorageObject stat(String key) throws IOException {
+            return provider().stat(key);
+        }
+
+        @Override
+        public void close() {
+            if (closed.compareAndSet(false, true)) {
+                release(connectionString, entry);
+            }
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package ru.nsu.mr.storages;
+
+import ru.nsu.mr.sources.SplitSource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+
+/**
+ * Сплит объекта в хранилище, который читается потоком, без скачивания на диск. Сначала читается
+ * сам диапазон (и байт перед ним), затем, если последняя строка выходит за его границу, её хвост
+ * дочитывается небольшими кусками: весь остаток объекта при этом не запрашивается. Размер
+ * объекта известен из листинга координатора, поэтому отдельный запрос за ним не нужен.
+ */
+public record StorageSplit(
+        StorageProvider storage, String key, long offset, long length, long fileSize)
+        implements SplitSource {
+    private static final long LINE_TAIL_CHUNK_BYTES = 64 * 1024;
+
+    @Override
+    public String name() {
+        return key;
+    }
+
+    @Override
+    public InputStream open() throws IOException {
+        long start = offset > 0 ? offset - 1 : 0;
+        long end = Math.min(offset + length, fileSize);
+        return new SequenceInputStream(
+                storage.openInputStream(key, start, end - start), new TailInputStream(end, fileSize));
+    }
+
+    /** Продолжение объекта после диапазона; куски запрашиваются, только когда до них дошло чтение. */
+    private class TailInputStream extends InputStream {
+        private final long fileSize;
+        private long position;
+        private InputStream chunk;
+
+        TailInputStream(long position, long fileSize) {
+            this.position = position;
+            this.fileSize = fileSize;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            return read(single, 0, 1) == -1 ? -1 : single[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            while (true) {
+                if (chunk == null) {
+                    if (position >= fileSize) {
+                        return -1;
+                    }
+                    long chunkLength = Math.min(LINE_TAIL_CHUNK_BYTES, fileSize - position);
+                    chunk = storage.openInputStream(key, position, chunkLength);
+                    position += chunkLength;
+                }
+                int read = chunk.read(b, off, len);
+                if (read != -1) {
+                    return read;
+                }
+                chunk.close();
+                chunk = null;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (chunk != null) {
+                chunk.close();
+                chunk = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package ru.nsu.mr;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+import ru.nsu.mr.Coordinator.JobWrapper;
+import ru.nsu.mr.Coordinator.Phase;
+import ru.nsu.mr.config.Configuration;
+import ru.nsu.mr.config.ConfigurationOption;
+import ru.nsu.mr.endpoints.dto.NewTaskDetails;
+import ru.nsu.mr.endpoints.dto.TaskInformation;
+import ru.nsu.mr.endpoints.dto.TaskType;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+
+class CoordinatorSchedulingTest {
+    private static final int AGING_SECONDS = 60;
+
+    private final Instant now = Instant.parse("2024-01-01T12:00:00Z");
+
+    @Test
+    public void testSlotsAreSplitByWeight() {
+        JobWrapper light = mapJob(1, 1, 0, 10);
+        JobWrapper heavy = mapJob(2, 3, 0, 10);
+
+        distribute(List.of(light, heavy), 8);
+
+        assertEquals(2, light.runningTasks);
+        assertEquals(6, heavy.runningTasks);
+    }
+
+    @Test
+    public void testHigherPriorityJobGetsSlotsFirst() {
+        JobWrapper normal = mapJob(1, 1, 0, 10);
+        JobWrapper urgent = mapJob(2, 1, 1, 3);
+
+        distribute(List.of(normal, urgent), 5);
+
+        // Слоты сверх задач приоритетного задания достаются остальным
+        assertEquals(3, urgent.runningTasks);
+        assertEquals(2, normal.runningTasks);
+    }
+
+    @Test
+    public void testAgedJobOvertakesHigherPriority() {
+        JobWrapper aged = mapJob(1, 1, 0, 10);
+        JobWrapper urgent = mapJob(2, 1, 1, 10);
+        aged.waitingSince = now.minus(Duration.ofSeconds(2 * AGING_SECONDS));
+
+        assertEquals(2, aged.effectivePriority(now));
+        assertSame(aged, Coordinator.nextJob(List.of(urgent, aged), Set.of(), 1, Coordinator.slotOrder(now), now));
+
+        // Ждавшее меньше одного периода задание приоритет не меняет
+        aged.waitingSince = now.minus(Duration.ofSeconds(AGING_SECONDS - 1));
+        assertSame(urgent, Coordinator.nextJob(List.of(urgent, aged), Set.of(), 1, Coordinator.slotOrder(now), now));
+    }
+
+    @Test
+    public void testReducerDoesNotTakeLastSlotDuringMapPhase() {
+        JobWrapper job = mapJob(1, 1, 0, 0);
+        job.finishedMappers = 9;
+        job.reduceTaskQueue.add(task(100, TaskType.REDUCE));
+        job.waitingSince = now.minusSeconds(10);
+
+        assertNull(Coordinator.dispatchQueue(job, 1));
+        assertSame(job.reduceTaskQueue, Coordinator.dispatchQueue(job, 2));
+        assertNull(Coordinator.nextJob(List.of(job), Set.of(), 1, Coordinator.slotOrder(now), now));
+        // Заданию нечего запускать, поэтому время ожидания слота не копится
+        assertEquals(now, job.waitingSince);
+
+        // До порога slow start редьюсеры не запускаются, сколько бы слотов ни было свободно
+        job.finishedMappers = 7;
+        assertNull(Coordinator.dispatchQueue(job, 4));
+    }
+
+    /** Раздаёт слоты так же, как цикл событий координатора, пока они есть и есть что запускать. */
+    private void distribute(List<JobWrapper> jobs, int freeSlots) {
+        Comparator<JobWrapper> order = Coordinator.slotOrder(now);
+        while (freeSlots > 0) {
+            JobWrapper next = Coordinator.nextJob(jobs, Set.of(), freeSlots, order, now);
+            if (next == null) {
+                return;
+            }
+            Queue<NewTaskDetails> queue = Coordinator.dispatchQueue(next, freeSlots);
+            queue.poll();
+            next.runningTasks++;
+            next.waitingSince = now;
+            freeSlots--;
+        }
+    }
+
+    private JobWrapper mapJob(int jobId, int weight, int priority, int mapTasks) {
+        Configuration config = new Configuration()
+                .set(ConfigurationOption.JOB_ID, jobId)
+                .set(ConfigurationOption.MAPPERS_COUNT, 10)
+                .set(ConfigurationOption.REDUCERS_COUNT, 1)
+                .set(ConfigurationOption.JOB_WEIGHT, weight)
+                .set(ConfigurationOption.JOB_PRIORITY, priority)
+                .set(ConfigurationOption.JOB_PRIORITY_AGING_SECONDS, AGING_SECONDS);
+        JobWrapper job = new JobWrapper(config);
+        job.phase = Phase.MAP;
+        job.waitingSince = now;
+        for (int i = 0; i < mapTasks; i++) {
+            job.mapTaskQueue.add(task(i, TaskType.MAP));
+        }
+        return job;
+    }
+
+    private static NewTaskDetails task(int taskId, TaskType type) {
+        return new NewTaskDetails(null, new TaskInformation(taskId, 0, type, List.of(), List.of(), "", ""));
+    }
+}
@@ -0,0 +1,166 @@
+package ru.nsu.mr;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+
+class JobClassCacheTest {
+    @TempDir
+    Path directory;
+
+    private final AtomicInteger downloads = new AtomicInteger();
+
+    @Test
+    public void testJarIsLoadedOncePerJob() throws Exception {
+        Path jar = createJar("first.jar", "1");
+        try (JobClassCache cache = new JobClassCache(directory.resolve("cache"))) {
+            JobClassCache.Lease first = cache.acquire(1, jar.toString(), source(jar));
+            JobClassCache.Lease second = cache.acquire(1, jar.toString(), source(jar));
+
+            assertEquals(1, downloads.get());
+            assertTrue(first.job() instanceof TestJob);
+            assertSame(first.job(), second.job());
+        }
+    }
+
+    @Test
+    public void testJobsWithDifferentJarsGetTheirOwnClasses() throws Exception {
+        Path firstJar = createJar("first.jar", "1");
+        Path secondJar = createJar("second.jar", "2");
+        Path copyOfFirstJar = Files.copy(firstJar, directory.resolve("copy.jar"));
+        try (JobClassCache cache = new JobClassCache(directory.resolve("cache"))) {
+            JobClassCache.Lease first = cache.acquire(1, firstJar.toString(), source(firstJar));
+            JobClassCache.Lease second = cache.acquire(2, secondJar.toString(), source(secondJar));
+            JobClassCache.Lease copy = cache.acquire(3, copyOfFirstJar.toString(), source(copyOfFirstJar));
+
+            assertNotSame(first.job(), second.job());
+            assertNotSame(first.job(), copy.job());
+            // Одинаковые по содержимому jar разных заданий разделяют загрузчик классов
+            assertEquals(2, cache.getLoadedJarsCount());
+
+            // Тот же идентификатор задания с jar из другого места загружается заново
+            JobClassCache.Lease replaced = cache.acquire(1, secondJar.toString(), source(secondJar));
+            assertNotSame(first.job(), replaced.job());
+            assertEquals(4, downloads.get());
+        }
+    }
+
+    @Test
+    public void testJarIsClosedAfterJobFinishedAndTasksReleased() throws Exception {
+        Path jar = createJar("first.jar", "1");
+        try (JobClassCache cache = new JobClassCache(directory.resolve("cache"))) {
+            JobClassCache.Lease lease = cache.acquire(1, jar.toString(), source(jar));
+            cache.evict(1);
+            assertFalse(cache.contains(1));
+            // Задача ещё выполняется, поэтому загрузчик остаётся открытым
+            assertEquals(1, cache.getLoadedJarsCount());
+            cache.release(lease);
+            cache.release(lease);
+            assertEquals(0, cache.getLoadedJarsCount());
+
+            cache.acquire(1, jar.toString(), source(jar));
+            assertEquals(2, downloads.get());
+        }
+    }
+
+    @Test
+    public void testSlowDownloadDoesNotBlockOtherJobs() throws Exception {
+        Path firstJar = createJar("first.jar", "1");
+        Path secondJar = createJar("second.jar", "2");
+        CountDownLatch downloadStarted = new CountDownLatch(1);
+        CountDownLatch downloadAllowed = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try (JobClassCache cache = new JobClassCache(directory.resolve("cache"))) {
+            Future<JobClassCache.Lease> slow = executor.submit(() -> cache.acquire(1, firstJar.toString(), destination -> {
+                downloadStarted.countDown();
+                downloadAllowed.await();
+                source(firstJar).download(destination);
+            }));
+            assertTrue(downloadStarted.await(10, TimeUnit.SECONDS));
+            // Другая задача того же задания ждёт окончания загрузки и не скачивает jar повторно
+            Future<JobClassCache.Lease> waiting = executor.submit(() -> cache.acquire(1, firstJar.toString(), source(firstJar)));
+
+            JobClassCache.Lease other = cache.acquire(2, secondJar.toString(), source(secondJar));
+            assertTrue(other.job() instanceof TestJob);
+            assertFalse(waiting.isDone());
+
+            downloadAllowed.countDown();
+            assertSame(slow.get(10, TimeUnit.SECONDS).job(), waiting.get(10, TimeUnit.SECONDS).job());
+            assertEquals(2, downloads.get());
+        } finally {
+            downloadAllowed.countDown();
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testServiceFileDeclaresJobClass() throws Exception {
+        Path jar = directory.resolve("service.jar");
+        try (JarOutputStream output = new JarOutputStream(Files.newOutputStream(jar))) {
+            output.putNextEntry(new JarEntry("META-INF/services/" + MapReduceJob.class.getName()));
+            output.write(("# задание\n" + TestJob.class.getName() + "\n").getBytes(StandardCharsets.UTF_8));
+            output.closeEntry();
+        }
+        JarFileParser parser = new JarFileParser(jar);
+        try {
+            assertEquals(TestJob.class, parser.findUsersSubClass(MapReduceJob.class));
+        } finally {
+            parser.close();
+        }
+    }
+
+    private JobClassCache.JarSource source(Path jar) {
+        return destination -> {
+            downloads.incrementAndGet();
+            Files.copy(jar, destination, StandardCopyOption.REPLACE_EXISTING);
+        };
+    }
+
+    private Path createJar(String name, String content) throws IOException {
+        Manifest manifest = new Manifest();
+        manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+        manifest.getMainAttributes().putValue(JarFileParser.JOB_CLASS_ATTRIBUTE, TestJob.class.getName());
+        Path jar = directory.resolve(name);
+        try (OutputStream file = Files.newOutputStream(jar);
+                JarOutputStream output = new JarOutputStream(file, manifest)) {
+            output.putNextEntry(new JarEntry("content.txt"));
+            output.write(content.getBytes(StandardCharsets.UTF_8));
+            output.closeEntry();
+        }
+        return jar;
+    }
+
+    public static class TestJob extends MapReduceJob<String, String, String, String> {
+        public TestJob() {
+            super(
+                    (input, output) -> input.forEachRemaining(pair -> output.put(pair.key(), pair.value())),
+                    (key, values, output) -> values.forEachRemaining(value -> output.put(key, value)),
+                    PredefinedFunctions.STRING_SERIALIZER,
+                    PredefinedFunctions.STRING_SERIALIZER,
+                    PredefinedFunctions.STRING_DESERIALIZER,
+                    PredefinedFunctions.STRING_DESERIALIZER,
+                    PredefinedFunctions.STRING_SERIALIZER,
+                    PredefinedFunctions.STRING_SERIALIZER,
+                    PredefinedFunctions.STRING_KEY_COMPARATOR,
+                    PredefinedFunctions.STRING_KEY_HASH);
+        }
+    }
+}
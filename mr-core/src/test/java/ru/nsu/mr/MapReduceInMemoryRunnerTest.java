@@ -0,0 +1,145 @@
+package ru.nsu.mr;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import static ru.nsu.mr.PredefinedFunctions.*;
+import static ru.nsu.mr.config.ConfigurationOption.*;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import ru.nsu.mr.config.Configuration;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+class MapReduceInMemoryRunnerTest {
+    private static final int MAPPERS_COUNT_VALUE = 4;
+    private static final int REDUCERS_COUNT_VALUE = 3;
+
+    private final List<Path> directories = new ArrayList<>();
+    private List<Path> inputFiles;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        Random random = new Random(5);
+        inputFiles = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            Path file = Files.createTempFile("InMemoryInput" + i, ".txt");
+            try (BufferedWriter writer = Files.newBufferedWriter(file)) {
+                for (int line = 0; line < 200; line++) {
+                    for (int word = 0; word < 10; word++) {
+                        writer.write("w" + random.nextInt(500) + " ");
+                    }
+                    writer.newLine();
+                }
+            }
+            inputFiles.add(file);
+        }
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        for (Path file : inputFiles) {
+            Files.deleteIfExists(file);
+        }
+        for (Path directory : directories) {
+            try (Stream<Path> pathStream = Files.walk(directory)) {
+                pathStream.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+            }
+        }
+    }
+
+    @Test
+    public void testOutputMatchesSequentialRunner() throws IOException {
+        Path expected = run(new MapReduceSequentialRunner(), new Configuration());
+        Path mappersOutput = Files.createTempDirectory("mappers_outputs");
+        directories.add(mappersOutput);
+        Path actual = run(new MapReduceInMemoryRunner(), new Configuration(), mappersOutput);
+        assertSameOutputs(expected, actual);
+        try (Stream<Path> files = Files.list(mappersOutput)) {
+            assertEquals(0, files.count());
+        }
+    }
+
+    @Test
+    public void testFallsBackToDiskWhenLimitIsExceeded() throws IOException {
+        Path expected = run(new MapReduceSequentialRunner(), new Configuration());
+        Path mappersOutput = Files.createTempDirectory("mappers_outputs");
+        directories.add(mappersOutput);
+        // Выход одного маппера — около 4000 записей, лимит кончается на втором
+        Path actual =
+                run(
+                        new MapReduceInMemoryRunner(),
+                        new Configuration().set(IN_MEMORY_MAX_BYTES, 300_000),
+                        mappersOutput);
+        assertSameOutputs(expected, actual);
+        for (int k = 0; k < MAPPERS_COUNT_VALUE; k++) {
+            for (int i = 0; i < REDUCERS_COUNT_VALUE; i++) {
+                assertTrue(Files.exists(mappersOutput.resolve("mapper-output-" + k + "-" + i + ".zip")));
+            }
+        }
+    }
+
+    private Path run(MapReduceRunner runner, Configuration configuration) throws IOException {
+        Path mappersOutput = Files.createTempDirectory("mappers_outputs");
+        directories.add(mappersOutput);
+        return run(runner, configuration, mappersOutput);
+    }
+
+    private Path run(MapReduceRunner runner, Configuration configuration, Path mappersOutput)
+            throws IOException {
+        Path output = Files.createTempDirectory("outputs");
+        directories.add(output);
+        MapReduceJob<String, Integer, String, Integer> job =
+                new MapReduceJob<>(
+                        (input, context) -> {
+                            while (input.hasNext()) {
+                                for (String word : input.next().value().split(" ")) {
+                                    context.put(word, 1);
+                                }
+                            }
+                        },
+                        MapReduceInMemoryRunnerTest::sum,
+                        STRING_SERIALIZER,
+                        INTEGER_SERIALIZER,
+                        STRING_DESERIALIZER,
+                        INTEGER_DESERIALIZER,
+                        STRING_SERIALIZER,
+                        INTEGER_SERIALIZER,
+                        STRING_KEY_COMPARATOR,
+                        STRING_KEY_HASH);
+        configuration
+                .set(MAPPERS_COUNT, MAPPERS_COUNT_VALUE)
+                .set(REDUCERS_COUNT, REDUCERS_COUNT_VALUE);
+        runner.run(job, inputFiles, configuration, mappersOutput, output);
+        return output;
+    }
+
+    private static void sum(String key, Iterator<Integer> values, OutputContext<String, Integer> output) {
+        int sum = 0;
+        while (values.hasNext()) {
+            sum += values.next();
+        }
+        output.put(key, sum);
+    }
+
+    private static void assertSameOutputs(Path expected, Path actual) throws IOException {
+        for (int i = 0; i < REDUCERS_COUNT_VALUE; i++) {
+            String name = "output-" + i + ".txt";
+            assertEquals(
+                    Files.readAllLines(expected.resolve(name)),
+                    Files.readAllLines(actual.resolve(name)));
+        }
+    }
+}
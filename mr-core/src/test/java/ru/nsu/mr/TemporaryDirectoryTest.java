@@ -0,0 +1,111 @@
+package ru.nsu.mr;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import ru.nsu.mr.storages.LocalStorageProvider;
+import ru.nsu.mr.storages.StorageProvider;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+class TemporaryDirectoryTest {
+    @TempDir
+    Path storageDir;
+
+    @Test
+    public void testGetDownloadsAllKeysInOrder() throws IOException {
+        List<String> keys = createFiles(40);
+        try (TemporaryDirectory tempDir = new TemporaryDirectory(new LocalStorageProvider(), 4, 0)) {
+            List<Path> localPaths = tempDir.get(keys, "input");
+            assertEquals(keys.size(), localPaths.size());
+            for (int i = 0; i < keys.size(); i++) {
+                assertEquals(Path.of(keys.get(i)).getFileName(), localPaths.get(i).getFileName());
+                assertEquals("content " + i, Files.readString(localPaths.get(i)));
+            }
+        }
+    }
+
+    @Test
+    public void testTransientFailuresAreRetried() throws IOException {
+        List<String> keys = createFiles(10);
+        FlakyStorageProvider storage = new FlakyStorageProvider(2, Set.of());
+        try (TemporaryDirectory tempDir = new TemporaryDirectory(storage, 4, 2)) {
+            List<Path> localPaths = tempDir.get(keys, "input");
+            for (int i = 0; i < keys.size(); i++) {
+                assertEquals("content " + i, Files.readString(localPaths.get(i)));
+            }
+            Path outputDir = Files.createDirectories(tempDir.getPath().resolve("output"));
+            Files.writeString(outputDir.resolve("part-0"), "result");
+            tempDir.put(outputDir, storageDir.resolve("uploaded").toString());
+        }
+        assertEquals("result", Files.readString(storageDir.resolve("uploaded").resolve("part-0")));
+        assertEquals(3 * (keys.size() + 1), storage.attempts.get());
+    }
+
+    @Test
+    public void testFailuresAreAggregated() throws IOException {
+        List<String> keys = createFiles(6);
+        FlakyStorageProvider storage = new FlakyStorageProvider(0, Set.of(keys.get(1), keys.get(4)));
+        try (TemporaryDirectory tempDir = new TemporaryDirectory(storage, 3, 1)) {
+            TemporaryDirectory.TransferException exception =
+                    assertThrows(TemporaryDirectory.TransferException.class, () -> tempDir.get(keys, "input"));
+            assertEquals(List.of(keys.get(1), keys.get(4)), exception.getFailedKeys());
+            assertEquals(2, exception.getSuppressed().length);
+        }
+        // Каждый из сломанных ключей запрошен дважды: исходная попытка и один повтор
+        assertEquals(keys.size() + 2, storage.attempts.get());
+    }
+
+    private List<String> createFiles(int count) throws IOException {
+        List<String> keys = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Path file = storageDir.resolve("file_" + i + ".txt");
+            Files.writeString(file, "content " + i);
+            keys.add(file.toString());
+        }
+        return keys;
+    }
+
+    /** Каждый ключ первые {@code failuresPerKey} раз не передаётся, а ключи из brokenKeys — никогда. */
+    private static class FlakyStorageProvider extends LocalStorageProvider {
+        private final int failuresPerKey;
+        private final Set<String> brokenKeys;
+        private final Map<String, AtomicInteger> failures = new ConcurrentHashMap<>();
+        final AtomicInteger attempts = new AtomicInteger();
+
+        FlakyStorageProvider(int failuresPerKey, Set<String> brokenKeys) {
+            this.failuresPerKey = failuresPerKey;
+            this.brokenKeys = brokenKeys;
+        }
+
+        @Override
+        public void get(String key, Path destination) throws IOException {
+            maybeFail(key);
+            super.get(key, destination);
+        }
+
+        @Override
+        public void put(Path source, String key) throws IOException {
+            maybeFail(key);
+            super.put(source, key);
+        }
+
+        private void maybeFail(String key) throws IOException {
+            attempts.incrementAndGet();
+            if (brokenKeys.contains(key)
+                    || failures.computeIfAbsent(key, k -> new AtomicInteger()).incrementAndGet() <= failuresPerKey) {
+                throw new IOException("Simulated failure for " + key);
+            }
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package ru.nsu.mr;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+class WorkerSlotsTest {
+    @Test
+    public void testAcquireTakesWorkerWithMostFreeSlots() {
+        WorkerSlots<String> slots = new WorkerSlots<>();
+        slots.add("small", 1);
+        slots.add("large", 3);
+        assertEquals(4, slots.freeSlots());
+
+        assertEquals("large", slots.acquire(worker -> true));
+        assertEquals("large", slots.acquire(worker -> true));
+        // Теперь у обоих по одному свободному слоту
+        assertNotNull(slots.acquire(worker -> true));
+        assertNotNull(slots.acquire(worker -> true));
+        assertNull(slots.acquire(worker -> true));
+        assertEquals(0, slots.freeSlots());
+
+        slots.release("small");
+        assertEquals(1, slots.freeSlots());
+        assertEquals("small", slots.acquire(worker -> true));
+    }
+
+    @Test
+    public void testUnsuitableWorkersAreSkipped() {
+        WorkerSlots<String> slots = new WorkerSlots<>();
+        slots.add("a", 4);
+        slots.add("b", 1);
+
+        assertEquals("b", slots.acquire(worker -> !worker.equals("a")));
+        assertNull(slots.acquire(worker -> !worker.equals("a")));
+        assertEquals(4, slots.freeSlots("a"));
+        assertEquals(0, slots.freeSlots("b"));
+    }
+
+    @Test
+    public void testUnavailableWorkerKeepsItsBusySlots() {
+        WorkerSlots<String> slots = new WorkerSlots<>();
+        slots.add("a", 2);
+        slots.acquire(worker -> true);
+
+        assertTrue(slots.setAvailable("a", false));
+        assertFalse(slots.setAvailable("a", false));
+        assertEquals(0, slots.freeSlots());
+        assertNull(slots.acquire(worker -> true));
+
+        slots.release("a");
+        assertEquals(0, slots.freeSlots());
+        assertTrue(slots.setAvailable("a", true));
+        assertEquals(2, slots.freeSlots());
+    }
+
+    @Test
+    public void testRemovedWorkerIsForgotten() {
+        WorkerSlots<String> slots = new WorkerSlots<>();
+        slots.add("a", 2);
+        slots.acquire(worker -> true);
+        slots.remove("a");
+
+        slots.release("a");
+        assertFalse(slots.contains("a"));
+        assertEquals(0, slots.freeSlots());
+        assertNull(slots.acquire(worker -> true));
+    }
+}
@@ -0,0 +1,64 @@
+package ru.nsu.mr.gateway;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import ru.nsu.mr.endpoints.dto.NewTaskDetails;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+
+class WorkerGatewayTest {
+    private HttpServer server;
+    private WorkerGateway gateway;
+    private volatile int status;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/tasks", exchange -> {
+            byte[] body = "no free slots".getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(status, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        });
+        server.start();
+        gateway = new WorkerGateway("http://localhost:" + server.getAddress().getPort());
+    }
+
+    @AfterEach
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    public void testClientErrorIsRejection() {
+        status = 400;
+        RequestRejectedException e = assertThrows(RequestRejectedException.class,
+                () -> gateway.createTask(new NewTaskDetails(null, null)));
+        assertEquals(400, e.getStatusCode());
+
+        status = 404;
+        assertThrows(RequestRejectedException.class, () -> gateway.cancelTask(1, 2, 3));
+    }
+
+    @Test
+    public void testServerErrorIsNotRejection() {
+        status = 500;
+        IOException e = assertThrows(IOException.class, () -> gateway.createTask(new NewTaskDetails(null, null)));
+        assertFalse(e instanceof RequestRejectedException);
+    }
+
+    @Test
+    public void testUnreachableWorkerIsNotRejection() {
+        server.stop(0);
+        IOException e = assertThrows(IOException.class, () -> gateway.cancelTask(1, 2, 3));
+        assertFalse(e instanceof RequestRejectedException);
+    }
+}
@@ -0,0 +1,273 @@
+package ru.nsu.mr.sinks;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import ru.nsu.mr.Pair;
+import ru.nsu.mr.PredefinedFunctions;
+import ru.nsu.mr.formats.BinaryKeyValueFormat;
+import ru.nsu.mr.formats.KeyValueFormat;
+import ru.nsu.mr.formats.TextKeyValueFormat;
+import ru.nsu.mr.sources.KeyValueFileIterator;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+class PartitionedSortedFileSinkTest {
+    private final int partitionsCount = 3;
+    private List<Path> outputPaths;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        outputPaths = new ArrayList<>();
+        for (int i = 0; i < partitionsCount; i++) {
+            outputPaths.add(Files.createTempFile("partition_" + i, ".zip"));
+        }
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        for (Path outputPath : outputPaths) {
+            Files.deleteIfExists(outputPath);
+        }
+    }
+
+    @Test
+    public void testSpillsAreSortedAndPartitioned() throws IOException {
+        PartitionedSortedFileSink<Integer, Integer> sink =
+                new PartitionedSortedFileSink<>(
+                        textFormat(), outputPaths, key -> key, Integer::compareTo, null, 4096, 1000);
+        List<Integer> numbers = new ArrayList<>();
+        for (int i = 0; i < 30000; i++) {
+            numbers.add(i);
+        }
+        Collections.shuffle(numbers);
+        for (Integer number : numbers) {
+            sink.put(number, number * 2);
+        }
+        sink.close();
+        assertTrue(sink.getSpillsCount() > 1);
+        assertTrue(sink.getSpillNanos() > 0);
+
+        int total = 0;
+        for (int partition = 0; partition < partitionsCount; partition++) {
+            Integer previous = null;
+            try (KeyValueFileIterator<Integer, Integer> iterator =
+                    new KeyValueFileIterator<>(
+                            outputPaths.get(partition), Integer::parseInt, Integer::parseInt)) {
+                while (iterator.hasNext()) {
+                    Pair<Integer, Integer> record = iterator.next();
+                    assertEquals(partition, record.key() % partitionsCount);
+                    assertEquals(record.key() * 2, record.value());
+                    if (previous != null) {
+                        assertTrue(previous < record.key());
+                    }
+                    previous = record.key();
+                    total++;
+                }
+            }
+        }
+        assertEquals(numbers.size(), total);
+    }
+
+    @Test
+    public void testCombinerAggregatesSpillsAndMerge() throws IOException {
+        PartitionedSortedFileSink<Integer, Integer> sink =
+                new PartitionedSortedFileSink<>(
+                        textFormat(),
+                        outputPaths,
+                        key -> key,
+                        Integer::compareTo,
+                        (key, values, output) -> {
+                            int sum = 0;
+                            while (values.hasNext()) {
+                                sum += values.next();
+                            }
+                            output.put(key, sum);
+                        },
+                        1 << 20,
+                        1000);
+        int keysCount = 10;
+        int recordsCount = 25000;
+        for (int i = 0; i < recordsCount; i++) {
+            sink.put(i % keysCount, 1);
+        }
+        sink.close();
+        assertTrue(sink.getSpillsCount() > 1);
+
+        int keysFound = 0;
+        for (int partition = 0; partition < partitionsCount; partition++) {
+            try (KeyValueFileIterator<Integer, Integer> iterator =
+                    new KeyValueFileIterator<>(
+                            outputPaths.get(partition), Integer::parseInt, Integer::parseInt)) {
+                while (iterator.hasNext()) {
+                    Pair<Integer, Integer> record = iterator.next();
+                    assertEquals(recordsCount / keysCount, record.value());
+                    keysFound++;
+                }
+            }
+        }
+        assertEquals(keysCount, keysFound);
+    }
+
+    @Test
+    public void testSmallMergeFactorMergesSpillsInRounds() throws IOException {
+        PartitionedSortedFileSink<Integer, Integer> sink =
+                new PartitionedSortedFileSink<>(
+                        textFormat(), outputPaths, key -> key, Integer::compareTo, null, 1 << 20, 100, 2);
+        int recordsCount = 5000;
+        for (int i = recordsCount - 1; i >= 0; i--) {
+            sink.put(i, i);
+        }
+        sink.close();
+        assertTrue(sink.getSpillsCount() > 2);
+
+        int total = 0;
+        for (int partition = 0; partition < partitionsCount; partition++) {
+            Integer previous = null;
+            try (KeyValueFileIterator<Integer, Integer> iterator =
+                    new KeyValueFileIterator<>(
+                            outputPaths.get(partition), Integer::parseInt, Integer::parseInt)) {
+                while (iterator.hasNext()) {
+                    Pair<Integer, Integer> record = iterator.next();
+                    if (previous != null) {
+                        assertTrue(previous < record.key());
+                    }
+                    previous = record.key();
+                    total++;
+                }
+            }
+        }
+        assertEquals(recordsCount, total);
+    }
+
+    @Test
+    public void testBackgroundSpillFailureIsRethrown() throws IOException {
+        PartitionedSortedFileSink<Integer, Integer> sink =
+                new PartitionedSortedFileSink<>(
+                        textFormat(),
+                        outputPaths,
+                        key -> key,
+                        Integer::compareTo,
+                        (key, values, output) -> {
+                            throw new IllegalStateException("combiner failed");
+                        },
+                        1 << 20,
+                        100);
+        RuntimeException exception =
+                assertThrows(
+                        RuntimeException.class,
+                        () -> {
+                            try (sink) {
+                                for (int i = 0; i < 1000; i++) {
+                                    sink.put(i, i);
+                                }
+                            }
+                        });
+        assertEquals("combiner failed", exception.getMessage());
+    }
+
+    @Test
+    public void testBinaryFormatKeepsSpacesAndNewlines() throws IOException {
+        KeyValueFormat<String, String> format =
+                new BinaryKeyValueFormat<>(
+                        PredefinedFunctions.STRING_BINARY_SERIALIZER,
+                        PredefinedFunctions.STRING_BINARY_SERIALIZER,
+                        PredefinedFunctions.STRING_BINARY_DESERIALIZER,
+                        PredefinedFunctions.STRING_BINARY_DESERIALIZER);
+        PartitionedSortedFileSink<String, String> sink =
+                new PartitionedSortedFileSink<>(
+                        format, outputPaths, String::length, String::compareTo, null, 512, 1000);
+        int recordsCount = 500;
+        for (int i = recordsCount - 1; i >= 0; i--) {
+            sink.put("key " + i, "line\n" + i);
+        }
+        sink.close();
+        assertTrue(sink.getSpillsCount() > 1);
+
+        int total = 0;
+        for (int partition = 0; partition < partitionsCount; partition++) {
+            String previous = null;
+            Iterator<Pair<String, String>> iterator =
+                    format.createIterator(outputPaths.get(partition));
+            while (iterator.hasNext()) {
+                Pair<String, String> record = iterator.next();
+                assertEquals(partition, record.key().length() % partitionsCount);
+                assertEquals("line\n" + record.key().substring(4), record.value());
+                if (previous != null) {
+                    assertTrue(previous.compareTo(record.key()) < 0);
+                }
+                previous = record.key();
+                total++;
+            }
+        }
+        assertEquals(recordsCount, total);
+    }
+
+    @Test
+    public void testRawComparatorOrdersLikeStringCompareTo() throws IOException {
+        KeyValueFormat<String, String> format =
+                new BinaryKeyValueFormat<>(
+                        PredefinedFunctions.STRING_BINARY_SERIALIZER,
+                        PredefinedFunctions.STRING_BINARY_SERIALIZER,
+                        PredefinedFunctions.STRING_BINARY_DESERIALIZER,
+                        PredefinedFunctions.STRING_BINARY_DESERIALIZER);
+        PartitionedSortedFileSink<String, String> sink =
+                new PartitionedSortedFileSink<>(
+                        format,
+                        outputPaths,
+                        String::length,
+                        PredefinedFunctions.STRING_KEY_COMPARATOR,
+                        PredefinedFunctions.STRING_RAW_COMPARATOR,
+                        null,
+                        1 << 20,
+                        100,
+                        2);
+        // Символы вне BMP и из U+E000..U+FFFF упорядочены в UTF-16 не так, как в UTF-8
+        String[] alphabet = {"a", "я", "\uFFFD", "\uE000", "\uD83D\uDE00", "\uD800\uDC00", " "};
+        Random random = new Random(3);
+        List<String> keys = new ArrayList<>();
+        for (int i = 0; i < 3000; i++) {
+            StringBuilder key = new StringBuilder();
+            for (int j = 0; j < 1 + random.nextInt(4); j++) {
+                key.append(alphabet[random.nextInt(alphabet.length)]);
+            }
+            keys.add(key.toString());
+            sink.put(key.toString(), "value " + i);
+        }
+        sink.close();
+        assertTrue(sink.getSpillsCount() > 2);
+
+        int total = 0;
+        for (int partition = 0; partition < partitionsCount; partition++) {
+            List<String> expected = new ArrayList<>();
+            for (String key : keys) {
+                if (key.length() % partitionsCount == partition) {
+                    expected.add(key);
+                }
+            }
+            Collections.sort(expected);
+            List<String> actual = new ArrayList<>();
+            Iterator<Pair<String, String>> iterator =
+                    format.createIterator(outputPaths.get(partition));
+            iterator.forEachRemaining(record -> actual.add(record.key()));
+            assertEquals(expected, actual);
+            total += actual.size();
+        }
+        assertEquals(keys.size(), total);
+    }
+
+    private static TextKeyValueFormat<Integer, Integer> textFormat() {
+        return new TextKeyValueFormat<>(
+                Object::toString, Object::toString, Integer::parseInt, Integer::parseInt);
+    }
+}
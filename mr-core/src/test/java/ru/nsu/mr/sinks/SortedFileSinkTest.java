@@ -6,6 +6,8 @@ import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import ru.nsu.mr.formats.TextKeyValueFormat;
+
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
@@ -54,6 +56,39 @@ class SortedFileSinkTest {
         }
     }
 
+    @Test
+    public void testCombinerAggregatesSpillsAndMerge() throws IOException {
+        SortedFileSink<Integer, Integer> combiningSink =
+                new SortedFileSink<>(
+                        new TextKeyValueFormat<>(
+                                Object::toString,
+                                Object::toString,
+                                Integer::parseInt,
+                                Integer::parseInt),
+                        outputFilePath,
+                        1000,
+                        Integer::compareTo,
+                        (key, values, output) -> {
+                            int sum = 0;
+                            while (values.hasNext()) {
+                                sum += values.next();
+                            }
+                            output.put(key, sum);
+                        });
+        int keysCount = 10;
+        int recordsCount = 25000;
+        for (int i = 0; i < recordsCount; i++) {
+            combiningSink.put(i % keysCount, 1);
+        }
+        combiningSink.close();
+
+        List<String> lines = readLinesFromFile(outputFilePath);
+        assertEquals(keysCount, lines.size());
+        for (int i = 0; i < keysCount; i++) {
+            assertEquals(i + " " + recordsCount / keysCount, lines.get(i));
+        }
+    }
+
     private List<Integer> generateMixedNumbers(int start, int end) {
         List<Integer> numbers = new ArrayList<>();
         for (int i = start; i <= end; i++) {
@@ -65,6 +100,15 @@ class SortedFileSinkTest {
 
     private List<Integer> readSortedNumbersFromFile(Path zipFilePath) throws IOException {
         List<Integer> numbers = new ArrayList<>();
+        for (String line : readLinesFromFile(zipFilePath)) {
+            String[] parts = line.split(" ");
+            numbers.add(Integer.parseInt(parts[0]));
+        }
+        return numbers;
+    }
+
+    private List<String> readLinesFromFile(Path zipFilePath) throws IOException {
+        List<String> lines = new ArrayList<>();
 
         try (ZipInputStream zipInputStream = new ZipInputStream(Files.newInputStream(zipFilePath))) {
             ZipEntry entry = zipInputStream.getNextEntry();
@@ -75,13 +119,12 @@ class SortedFileSinkTest {
             try (BufferedReader reader = new BufferedReader(new InputStreamReader(zipInputStream))) {
                 String line;
                 while ((line = reader.readLine()) != null) {
-                    String[] parts = line.split(" ");
-                    numbers.add(Integer.parseInt(parts[0]));
+                    lines.add(line);
                 }
             }
         }
 
-        return numbers;
+        return lines;
     }
 
 }
@@ -0,0 +1,85 @@
+package ru.nsu.mr.sources;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import static ru.nsu.mr.PredefinedFunctions.*;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import ru.nsu.mr.Pair;
+import ru.nsu.mr.sinks.BinaryFileSink;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+class BinaryKeyValueFileIteratorTest {
+    private Path tempDir;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        tempDir = Files.createTempDirectory("binaryKeyValue");
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        try (var paths = Files.list(tempDir)) {
+            for (Path path : paths.toList()) {
+                Files.deleteIfExists(path);
+            }
+        }
+        Files.deleteIfExists(tempDir);
+    }
+
+    @Test
+    public void testRoundTripPlainFile() throws IOException {
+        assertRoundTrip(tempDir.resolve("records.bin"));
+    }
+
+    @Test
+    public void testRoundTripZipFile() throws IOException {
+        assertRoundTrip(tempDir.resolve("records.zip"));
+    }
+
+    @Test
+    public void testEmptyFile() throws IOException {
+        Path path = tempDir.resolve("empty.bin");
+        new BinaryFileSink<>(STRING_BINARY_SERIALIZER, INTEGER_BINARY_SERIALIZER, path).close();
+        try (BinaryKeyValueFileIterator<String, Integer> iterator =
+                new BinaryKeyValueFileIterator<>(
+                        path, STRING_BINARY_DESERIALIZER, INTEGER_BINARY_DESERIALIZER)) {
+            assertFalse(iterator.hasNext());
+        }
+    }
+
+    private void assertRoundTrip(Path path) throws IOException {
+        List<Pair<String, Integer>> expected =
+                List.of(
+                        new Pair<>("plain", 1),
+                        new Pair<>("key with spaces", -2),
+                        new Pair<>("multi\nline\nkey", 300),
+                        new Pair<>("", 0),
+                        new Pair<>("x".repeat(1000), Integer.MAX_VALUE));
+
+        try (BinaryFileSink<String, Integer> sink =
+                new BinaryFileSink<>(STRING_BINARY_SERIALIZER, INTEGER_BINARY_SERIALIZER, path)) {
+            for (Pair<String, Integer> pair : expected) {
+                sink.put(pair.key(), pair.value());
+            }
+        }
+
+        List<Pair<String, Integer>> actual = new ArrayList<>();
+        try (BinaryKeyValueFileIterator<String, Integer> iterator =
+                new BinaryKeyValueFileIterator<>(
+                        path, STRING_BINARY_DESERIALIZER, INTEGER_BINARY_DESERIALIZER)) {
+            while (iterator.hasNext()) {
+                actual.add(iterator.next());
+            }
+        }
+        assertEquals(expected, actual);
+    }
+}
@@ -0,0 +1,97 @@
+package ru.nsu.mr.sources;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import ru.nsu.mr.storages.LocalStorageProvider;
+import ru.nsu.mr.storages.StorageProvider;
+import ru.nsu.mr.storages.StorageSplit;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+class LineSplitIteratorTest {
+    private Path inputFile;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        inputFile = Files.createTempFile("split_input", ".txt");
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(inputFile);
+    }
+
+    @Test
+    public void testWholeFile() throws IOException {
+        Files.writeString(inputFile, "first line\r\n\nпоследняя строка", StandardCharsets.UTF_8);
+        assertEquals(
+                List.of("first line", "", "последняя строка"),
+                readLines(FileSplit.wholeFile(inputFile)));
+    }
+
+    @Test
+    public void testEveryLineIsReadByExactlyOneSplit() throws IOException {
+        List<String> expected = List.of("alpha", "", "beta gamma", "delta", "epsilon zeta eta");
+        Files.writeString(inputFile, String.join("\n", expected) + "\n", StandardCharsets.UTF_8);
+        long fileSize = Files.size(inputFile);
+
+        for (long splitSize = 1; splitSize <= fileSize; splitSize++) {
+            List<String> actual = new ArrayList<>();
+            for (long offset = 0; offset < fileSize; offset += splitSize) {
+                long length = Math.min(splitSize, fileSize - offset);
+                actual.addAll(readLines(new FileSplit(inputFile, offset, length)));
+            }
+            assertEquals(expected, actual, "split size " + splitSize);
+        }
+    }
+
+    @Test
+    public void testSplitStartingInsideLineSkipsIt() throws IOException {
+        Files.writeString(inputFile, "0123\n5678\nabcd", StandardCharsets.UTF_8);
+        assertEquals(List.of("0123", "5678"), readLines(new FileSplit(inputFile, 0, 6)));
+        assertEquals(List.of("abcd"), readLines(new FileSplit(inputFile, 6, 8)));
+        assertEquals(List.of("5678"), readLines(new FileSplit(inputFile, 5, 1)));
+        assertEquals(List.of(), readLines(new FileSplit(inputFile, 6, 4)));
+    }
+
+    @Test
+    public void testStorageSplitReadsSameLinesAsLocalFile() throws IOException {
+        // Последняя строка длиннее куска, которым дочитывается хвост
+        List<String> expected = List.of("alpha", "beta gamma", "x".repeat(200_000), "delta");
+        Files.writeString(inputFile, String.join("\n", expected), StandardCharsets.UTF_8);
+        long fileSize = Files.size(inputFile);
+        StorageProvider storage = new LocalStorageProvider();
+
+        for (long splitSize : new long[] {1000, 65_536, 150_000, fileSize}) {
+            List<String> actual = new ArrayList<>();
+            for (long offset = 0; offset < fileSize; offset += splitSize) {
+                long length = Math.min(splitSize, fileSize - offset);
+                StorageSplit split =
+                        new StorageSplit(storage, inputFile.toString(), offset, length, fileSize);
+                List<String> lines = readLines(split);
+                assertEquals(readLines(new FileSplit(inputFile, offset, length)), lines);
+                actual.addAll(lines);
+            }
+            assertEquals(expected, actual, "split size " + splitSize);
+        }
+    }
+
+    private static List<String> readLines(SplitSource split) throws IOException {
+        List<String> lines = new ArrayList<>();
+        try (LineSplitIterator iterator = new LineSplitIterator(split)) {
+            while (iterator.hasNext()) {
+                lines.add(iterator.next());
+            }
+        }
+        return lines;
+    }
+}
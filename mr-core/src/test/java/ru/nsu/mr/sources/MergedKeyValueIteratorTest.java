@@ -55,4 +55,40 @@ class MergedKeyValueIteratorTest {
             index++;
         }
     }
+
+    @Test
+    public void testMergeMatchesSortForManySources() {
+        Random random = new Random(42);
+        for (int sourcesCount : new int[] {0, 1, 2, 3, 7, 64, 129}) {
+            List<Iterator<Pair<Integer, Integer>>> sources = new ArrayList<>();
+            List<Integer> allKeys = new ArrayList<>();
+            for (int i = 0; i < sourcesCount; i++) {
+                List<Pair<Integer, Integer>> source = new ArrayList<>();
+                int size = random.nextInt(50);
+                for (int j = 0; j < size; j++) {
+                    int key = random.nextInt(100);
+                    source.add(new Pair<>(key, i));
+                    allKeys.add(key);
+                }
+                source.sort(Comparator.comparing(Pair::key));
+                sources.add(source.iterator());
+            }
+            Collections.sort(allKeys);
+
+            MergedKeyValueIterator<Integer, Integer> merged =
+                    new MergedKeyValueIterator<>(sources, Comparator.naturalOrder());
+            List<Integer> mergedKeys = new ArrayList<>();
+            Pair<Integer, Integer> previous = null;
+            while (merged.hasNext()) {
+                Pair<Integer, Integer> record = merged.next();
+                if (previous != null && previous.key().equals(record.key())) {
+                    assertTrue(previous.value() <= record.value());
+                }
+                mergedKeys.add(record.key());
+                previous = record;
+            }
+            assertEquals(allKeys, mergedKeys);
+            assertThrows(NoSuchElementException.class, merged::next);
+        }
+    }
 }
@@ -0,0 +1,202 @@
+package ru.nsu.mr.sources;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import ru.nsu.mr.Pair;
+import ru.nsu.mr.PredefinedFunctions;
+import ru.nsu.mr.formats.TextKeyValueFormat;
+import ru.nsu.mr.sinks.FileSystemSink;
+import ru.nsu.mr.sources.SegmentMerger.Segment;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+class SegmentMergerTest {
+    private final TextKeyValueFormat<Integer, Integer> format =
+            new TextKeyValueFormat<>(
+                    Object::toString, Object::toString, Integer::parseInt, Integer::parseInt);
+    private List<Path> segmentFiles;
+
+    @BeforeEach
+    public void setUp() {
+        segmentFiles = new ArrayList<>();
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        for (Path file : segmentFiles) {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    public void testMultiPassMergeKeepsAllRecordsSorted() throws IOException {
+        Random random = new Random(7);
+        List<Segment> segments = new ArrayList<>();
+        List<Integer> expectedKeys = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            List<Integer> keys = new ArrayList<>();
+            for (int j = 0; j < 10 + random.nextInt(100); j++) {
+                keys.add(random.nextInt(1000));
+            }
+            expectedKeys.addAll(keys);
+            segments.add(Segment.wholeFile(writeSegment(keys)));
+        }
+        Collections.sort(expectedKeys);
+
+        List<Integer> mergedKeys = new ArrayList<>();
+        List<Path> filesBefore = listMergeFiles();
+        List<Path> intermediateFiles;
+        try (SegmentMerger.MergedSegments<Integer, Integer> merged =
+                new SegmentMerger<>(format, Integer::compareTo, null, 3).merge(segments)) {
+            // 10 сегментов при факторе 3: первый раунд сливает 2 сегмента, затем три полных раунда
+            assertEquals(4, merged.getIntermediateFilesCount());
+            intermediateFiles = new ArrayList<>(listMergeFiles());
+            intermediateFiles.removeAll(filesBefore);
+            assertEquals(4, intermediateFiles.size());
+            while (merged.hasNext()) {
+                mergedKeys.add(merged.next().key());
+            }
+        }
+        assertEquals(expectedKeys, mergedKeys);
+        for (Path file : intermediateFiles) {
+            assertFalse(Files.exists(file));
+        }
+    }
+
+    @Test
+    public void testIntermediateRoundsApplyCombiner() throws IOException {
+        List<Segment> segments = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            segments.add(Segment.wholeFile(writeSegment(List.of(1, 2, 3))));
+        }
+        SegmentMerger<Integer, Integer> merger =
+                new SegmentMerger<>(
+                        format,
+                        Integer::compareTo,
+                        (key, values, output) -> {
+                            int sum = 0;
+                            while (values.hasNext()) {
+                                sum += values.next();
+                            }
+                            output.put(key, sum);
+                        },
+                        2);
+        int total = 0;
+        try (SegmentMerger.MergedSegments<Integer, Integer> merged = merger.merge(segments)) {
+            while (merged.hasNext()) {
+                Pair<Integer, Integer> record = merged.next();
+                total += record.value();
+            }
+        }
+        assertEquals(5 * 3, total);
+    }
+
+    @Test
+    public void testFewSegmentsAreMergedInOnePass() throws IOException {
+        List<Segment> segments = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            segments.add(Segment.wholeFile(writeSegment(List.of(i, i + 10))));
+        }
+        try (SegmentMerger.MergedSegments<Integer, Integer> merged =
+                new SegmentMerger<>(format, Integer::compareTo, null, 3).merge(segments)) {
+            assertEquals(0, merged.getIntermediateFilesCount());
+            List<Integer> keys = new ArrayList<>();
+            while (merged.hasNext()) {
+                keys.add(merged.next().key());
+            }
+            assertEquals(List.of(0, 1, 2, 10, 11, 12), keys);
+        }
+    }
+
+    @Test
+    public void testEqualKeysKeepSegmentOrder() throws IOException {
+        // При факторе 3 первый раунд сливает два самых маленьких сегмента
+        List<Segment> segments = List.of(
+                Segment.wholeFile(writeSegment(Collections.nCopies(5, 0), 0)),
+                Segment.wholeFile(writeSegment(List.of(0), 1)),
+                Segment.wholeFile(writeSegment(List.of(0, 0), 2)),
+                Segment.wholeFile(writeSegment(Collections.nCopies(5, 0), 3)));
+        List<Integer> values = new ArrayList<>();
+        try (SegmentMerger.MergedSegments<Integer, Integer> merged =
+                new SegmentMerger<>(format, Integer::compareTo, null, 3).merge(segments)) {
+            assertEquals(1, merged.getIntermediateFilesCount());
+            while (merged.hasNext()) {
+                values.add(merged.next().value());
+            }
+        }
+        assertEquals(List.of(0, 0, 0, 0, 0, 3, 3, 3, 3, 3, 1, 2, 2), values);
+    }
+
+    @Test
+    public void testRawComparatorMergeMatchesObjectMerge() throws IOException {
+        Random random = new Random(11);
+        List<Segment> segments = new ArrayList<>();
+        for (int i = 0; i < 7; i++) {
+            List<Integer> keys = new ArrayList<>();
+            for (int j = 0; j < 50; j++) {
+                keys.add(random.nextInt(2001) - 1000);
+            }
+            segments.add(Segment.wholeFile(writeSegment(keys)));
+        }
+
+        List<Pair<Integer, Integer>> expected = new ArrayList<>();
+        try (SegmentMerger.MergedSegments<Integer, Integer> merged =
+                new SegmentMerger<>(format, Integer::compareTo, null, 3).merge(segments)) {
+            merged.forEachRemaining(expected::add);
+        }
+        List<Pair<Integer, Integer>> actual = new ArrayList<>();
+        try (SegmentMerger.MergedSegments<Integer, Integer> merged =
+                new SegmentMerger<>(
+                                format,
+                                Integer::compareTo,
+                                PredefinedFunctions.INTEGER_TEXT_RAW_COMPARATOR,
+                                null,
+                                3)
+                        .merge(segments)) {
+            assertTrue(merged.getIntermediateFilesCount() > 0);
+            merged.forEachRemaining(actual::add);
+        }
+        assertEquals(expected, actual);
+    }
+
+    @Test
+    public void testMergeFactorMustAllowMerging() {
+        assertThrows(
+                IllegalArgumentException.class,
+                () -> new SegmentMerger<>(format, Integer::compareTo, null, 1));
+    }
+
+    private Path writeSegment(List<Integer> keys) throws IOException {
+        return writeSegment(keys, 1);
+    }
+
+    private Path writeSegment(List<Integer> keys, int value) throws IOException {
+        List<Integer> sorted = new ArrayList<>(keys);
+        Collections.sort(sorted);
+        Path file = Files.createTempFile("segment", ".txt");
+        segmentFiles.add(file);
+        try (FileSystemSink<Integer, Integer> sink = format.createSink(file)) {
+            for (Integer key : sorted) {
+                sink.put(key, value);
+            }
+        }
+        return file;
+    }
+
+    private static List<Path> listMergeFiles() throws IOException {
+        Path tempDirectory = Path.of(System.getProperty("java.io.tmpdir"));
+        try (var files = Files.list(tempDirectory)) {
+            return files.filter(file -> file.getFileName().toString().startsWith("merge_")).toList();
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package ru.nsu.mr.storages;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+class LocalStorageProviderTest {
+    private final LocalStorageProvider storage = new LocalStorageProvider();
+
+    @TempDir
+    Path storageDir;
+
+    @Test
+    public void testRangedInputStream() throws IOException {
+        Path file = storageDir.resolve("input.txt");
+        Files.writeString(file, "0123456789");
+        try (InputStream stream = storage.openInputStream(file.toString(), 3, 4)) {
+            assertEquals("3456", new String(stream.readAllBytes(), StandardCharsets.UTF_8));
+        }
+        try (InputStream stream = storage.openInputStream(file.toString(), 8, 100)) {
+            assertEquals("89", new String(stream.readAllBytes(), StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    public void testOutputStreamIsVisibleOnlyAfterCommit() throws IOException {
+        Path target = storageDir.resolve("output").resolve("output-0.txt");
+        try (StorageOutputStream output = storage.openOutputStream(target.toString())) {
+            output.write("first ".getBytes(StandardCharsets.UTF_8));
+            output.close();
+            assertFalse(Files.exists(target));
+            assertEquals(List.of(), storage.list(target.getParent().toString()));
+            output.commit();
+        }
+        assertEquals("first ", Files.readString(target));
+
+        StorageOutputStream aborted = storage.openOutputStream(target.toString());
+        aborted.write("second".getBytes(StandardCharsets.UTF_8));
+        aborted.close();
+        aborted.abort();
+        assertThrows(IOException.class, aborted::commit);
+        assertEquals("first ", Files.readString(target));
+        assertEquals(List.of(target.toString()), storage.list(target.getParent().toString()));
+    }
+
+    @Test
+    public void testListWithMetadataReturnsSizesOfCommittedFiles() throws IOException {
+        Path small = storageDir.resolve("small.txt");
+        Path large = storageDir.resolve("large.txt");
+        Files.writeString(small, "abc");
+        Files.writeString(large, "x".repeat(5000));
+        StorageOutputStream partial = storage.openOutputStream(storageDir.resolve("partial.txt").toString());
+        partial.write(1);
+
+        List<StorageObject> objects = new ArrayList<>(storage.listWithMetadata(storageDir.toString()));
+        objects.sort(Comparator.comparing(StorageObject::key));
+        assertEquals(
+                List.of(
+                        new StorageObject(large.toString(), 5000, etag(large)),
+                        new StorageObject(small.toString(), 3, etag(small))),
+                objects);
+        partial.abort();
+    }
+
+    private static String etag(Path file) throws IOException {
+        return Files.getLastModifiedTime(file).toString();
+    }
+}
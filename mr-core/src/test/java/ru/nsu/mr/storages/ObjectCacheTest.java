@@ -0,0 +1,104 @@
+package ru.nsu.mr.storages;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicInteger;
+
+class ObjectCacheTest {
+    @TempDir
+    Path storageDir;
+
+    @TempDir
+    Path workDir;
+
+    private final CountingStorageProvider storage = new CountingStorageProvider();
+
+    @Test
+    public void testRepeatedGetIsServedFromCache() throws Exception {
+        Path source = createFile("input.txt", 100);
+        try (ObjectCache cache = new ObjectCache(workDir.resolve("cache"), 1000);
+                StorageProvider cached = new CachingStorageProvider(storage, "local", cache)) {
+            cached.get(source.toString(), workDir.resolve("first").resolve("input.txt"));
+            cached.get(source.toString(), workDir.resolve("second").resolve("input.txt"));
+
+            assertEquals(1, storage.downloads.get());
+            assertEquals(1, cache.getMisses());
+            assertEquals(1, cache.getHits());
+            assertEquals(Files.readString(source), Files.readString(workDir.resolve("second").resolve("input.txt")));
+        }
+    }
+
+    @Test
+    public void testChangedObjectIsDownloadedAgain() throws Exception {
+        Path source = createFile("input.txt", 100);
+        try (ObjectCache cache = new ObjectCache(workDir.resolve("cache"), 1000)) {
+            cache.get("local", storage, source.toString(), workDir.resolve("first"));
+            Files.writeString(source, "changed");
+            Files.setLastModifiedTime(source, FileTime.from(Instant.now().plusSeconds(60)));
+            cache.get("local", storage, source.toString(), workDir.resolve("second"));
+
+            assertEquals(2, storage.downloads.get());
+            assertEquals("changed", Files.readString(workDir.resolve("second")));
+        }
+    }
+
+    @Test
+    public void testLeastRecentlyUsedEntryIsEvicted() throws Exception {
+        Path first = createFile("first.txt", 400);
+        Path second = createFile("second.txt", 400);
+        Path third = createFile("third.txt", 400);
+        try (ObjectCache cache = new ObjectCache(workDir.resolve("cache"), 1000)) {
+            cache.get("local", storage, first.toString(), workDir.resolve("a"));
+            cache.get("local", storage, second.toString(), workDir.resolve("b"));
+            // first использован позже second, поэтому вытесняется second
+            cache.get("local", storage, first.toString(), workDir.resolve("c"));
+            cache.get("local", storage, third.toString(), workDir.resolve("d"));
+
+            assertEquals(1, cache.getEvictions());
+            assertEquals(800, cache.getSizeBytes());
+            cache.get("local", storage, first.toString(), workDir.resolve("e"));
+            assertEquals(3, storage.downloads.get());
+            cache.get("local", storage, second.toString(), workDir.resolve("f"));
+            assertEquals(4, storage.downloads.get());
+            // Выданный ранее файл переживает вытеснение своей записи
+            assertEquals(Files.readString(second), Files.readString(workDir.resolve("b")));
+        }
+    }
+
+    @Test
+    public void testObjectLargerThanCacheIsNotCached() throws Exception {
+        Path source = createFile("large.txt", 2000);
+        try (ObjectCache cache = new ObjectCache(workDir.resolve("cache"), 1000)) {
+            cache.get("local", storage, source.toString(), workDir.resolve("first"));
+            cache.get("local", storage, source.toString(), workDir.resolve("second"));
+
+            assertEquals(2, storage.downloads.get());
+            assertEquals(0, cache.getEntriesCount());
+            assertEquals(2000, Files.size(workDir.resolve("second")));
+        }
+    }
+
+    private Path createFile(String name, int size) throws IOException {
+        Path file = storageDir.resolve(name);
+        Files.writeString(file, name.charAt(0) + "x".repeat(size - 1));
+        return file;
+    }
+
+    private static class CountingStorageProvider extends LocalStorageProvider {
+        final AtomicInteger downloads = new AtomicInteger();
+
+        @Override
+        public void get(String key, Path destination) throws IOException {
+            downloads.incrementAndGet();
+            super.get(key, destination);
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package ru.nsu.mr.storages;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+class StorageProviderPoolTest {
+    private static class CountingProvider extends LocalStorageProvider {
+        private boolean closed = false;
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+
+    private final List<CountingProvider> created = new ArrayList<>();
+
+    private StorageProviderPool pool(Duration idleTimeout) {
+        return new StorageProviderPool(
+                connectionString -> {
+                    CountingProvider provider = new CountingProvider();
+                    created.add(provider);
+                    return provider;
+                },
+                idleTimeout);
+    }
+
+    @Test
+    public void testProviderIsSharedBetweenLeases() throws Exception {
+        StorageProviderPool pool = pool(Duration.ofMinutes(1));
+        try (StorageProvider first = pool.acquire("local");
+                StorageProvider second = pool.acquire("local")) {
+            assertEquals(1, created.size());
+        }
+        try (StorageProvider third = pool.acquire("local")) {
+            assertEquals(1, created.size());
+        }
+        try (StorageProvider other = pool.acquire("other")) {
+            assertEquals(2, created.size());
+        }
+        assertEquals(2, pool.size());
+    }
+
+    @Test
+    public void testOnlyIdleProvidersAreEvicted() throws Exception {
+        StorageProviderPool pool = pool(Duration.ZERO);
+        StorageProvider leased = pool.acquire("leased");
+        try (StorageProvider released = pool.acquire("released")) {
+            assertEquals(2, created.size());
+        }
+        pool.evictIdle();
+        assertEquals(1, pool.size());
+        assertFalse(created.get(0).closed);
+        assertTrue(created.get(1).closed);
+
+        leased.close();
+        pool.evictIdle();
+        assertEquals(0, pool.size());
+        assertTrue(created.get(0).closed);
+    }
+
+    @Test
+    public void testClosedLeaseCannotBeUsed() throws Exception {
+        StorageProviderPool pool = pool(Duration.ofMinutes(1));
+        StorageProvider lease = pool.acquire("local");
+        lease.close();
+        lease.close();
+        assertThrows(IllegalStateException.class, () -> lease.list("key"));
+        try (StorageProvider next = pool.acquire("local")) {
+            assertNotNull(next.list("."));
+        }
+    }
+}